@@ -141,8 +141,8 @@ public class Chat {
             }
             return new IterableString(new String(chars));
         };
-        IDictionary<NGram, IDictionary<IterableString, Integer>> newOuter = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
-        Supplier<IDictionary<IterableString, Integer>> newInner = () -> new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        IDictionary<NGram, IDictionary<IterableString, Integer>> newOuter = new ProbingHashDictionary<>();
+        Supplier<IDictionary<IterableString, Integer>> newInner = ProbingHashDictionary::new;
         return new NGramMap(in, N, newOuter, newInner);
     }
 }
@@ -3,6 +3,7 @@ package beaverchat;
 import java.io.*;
 import java.net.InetSocketAddress;
 
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
@@ -10,10 +11,11 @@ import edu.caltech.cs2.types.Item;
 
 import java.awt.Desktop;
 import java.net.URI;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
 
 public class Main {
 
@@ -190,21 +192,98 @@ public class Main {
     }
   }
 
+  /**
+   * Serves one static file from memory. The file is read and gzipped once, when the handler is
+   * created, and sent as-is: gzipped if the client sends Accept-Encoding: gzip, and as a 304 with
+   * no body if its If-None-Match holds the current ETag.
+   */
   static class LocalFile implements HttpHandler {
-    private String name;
+    private final byte[] plain;
+    private final byte[] gzipped;
+    private final String etag;
+    private final String gzipEtag;
+    private final String contentType;
 
-    public LocalFile(String name) {
-      this.name = name;
+    public LocalFile(String name) throws IOException {
+      this.plain = Files.readAllBytes(Paths.get(name));
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(this.plain.length / 2);
+      try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+        gzip.write(this.plain);
+      }
+      // small files can come out bigger, in which case only the plain copy is served
+      this.gzipped = buffer.size() < this.plain.length ? buffer.toByteArray() : null;
+      CRC32 crc = new CRC32();
+      crc.update(this.plain);
+      String tag = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(this.plain.length);
+      this.etag = "\"" + tag + "\"";
+      this.gzipEtag = "\"" + tag + "-gzip\"";
+      if (name.endsWith(".html")) {
+        this.contentType = "text/html; charset=utf-8";
+      }
+      else if (name.endsWith(".css")) {
+        this.contentType = "text/css; charset=utf-8";
+      }
+      else if (name.endsWith(".js")) {
+        this.contentType = "application/javascript; charset=utf-8";
+      }
+      else {
+        this.contentType = "application/octet-stream";
+      }
     }
 
     @Override
     public void handle(HttpExchange t) throws IOException {
-      String response = new String(Files.readAllBytes(Paths.get(this.name)), StandardCharsets.UTF_8);
-      t.sendResponseHeaders(200, response.length());
+      Headers request = t.getRequestHeaders();
+      boolean gzip = this.gzipped != null && acceptsGzip(request.getFirst("Accept-Encoding"));
+      String tag = gzip ? this.gzipEtag : this.etag;
+      Headers headers = t.getResponseHeaders();
+      headers.set("Content-Type", this.contentType);
+      headers.set("ETag", tag);
+      headers.set("Vary", "Accept-Encoding");
+      if (matches(request.getFirst("If-None-Match"), tag)) {
+        t.sendResponseHeaders(304, -1);
+        t.close();
+        return;
+      }
+      byte[] response = gzip ? this.gzipped : this.plain;
+      if (gzip) {
+        headers.set("Content-Encoding", "gzip");
+      }
+      t.sendResponseHeaders(200, response.length);
       OutputStream os = t.getResponseBody();
-      os.write(response.getBytes());
+      os.write(response);
       os.close();
     }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+      if (acceptEncoding == null) {
+        return false;
+      }
+      for (String option : acceptEncoding.split(",")) {
+        String[] parts = option.split(";");
+        if (parts[0].trim().equalsIgnoreCase("gzip")) {
+          // "gzip;q=0" means the client refuses gzip
+          return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+        }
+      }
+      return false;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+      if (ifNoneMatch == null) {
+        return false;
+      }
+      for (String candidate : ifNoneMatch.split(",")) {
+        candidate = candidate.trim();
+        if (candidate.startsWith("W/")) {
+          candidate = candidate.substring(2);
+        }
+        if (candidate.equals("*") || candidate.equals(etag)) {
+          return true;
+        }
+      }
+      return false;
+    }
   }
 
 }
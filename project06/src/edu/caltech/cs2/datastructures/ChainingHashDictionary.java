@@ -1,188 +1,239 @@
 package edu.caltech.cs2.datastructures;
 
 import edu.caltech.cs2.interfaces.ICollection;
-import edu.caltech.cs2.interfaces.IDeque;
 import edu.caltech.cs2.interfaces.IDictionary;
-import edu.caltech.cs2.interfaces.IQueue;
-//import edu.caltech.cs2.misc.primeTable;
 
-import java.lang.Math;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
 
+/**
+ * A hash dictionary whose buckets are separate chains, each one an IDictionary made by the
+ * supplied factory.
+ *
+ * The table length is always a prime: once the dictionary holds as many keys as the table has
+ * buckets, it grows to the smallest prime above twice its length, found by trial division when
+ * it is needed, so there is no limit on the size and nothing to precompute. Growing is
+ * incremental: the new table is allocated at once, but the keys move over BUCKETS_PER_STEP old
+ * buckets at a time during later puts and removes, so no single operation rehashes the whole
+ * dictionary. While a resize is in progress, a key lives in the old table until its old bucket
+ * has been moved (moved buckets are set to null), and in the new table after that.
+ */
 public class ChainingHashDictionary<K, V> implements IDictionary<K, V> {
-    private final int INITIAL_TABLE_SIZE = 7;
-//    // theoretically no upper bound, but just so our table doesn't go berserk
-//    private final int UPPER_BOUND = 900000;
-    // tableSizes should come from primeTable
-    private final int[] tableSizes = new int[] {
-            7,
-            17,
-            37,
-            79,
-            163,
-            331,
-            673,
-            1361,
-            2729,
-            5471,
-            10949,
-            21911,
-            43853,
-            87719,
-            175447,
-            350899,
-            701819
-    };
-
+    private static final int INITIAL_TABLE_SIZE = 7;
+    // old buckets moved to the new table by every put or remove while a resize is in progress; a resize
+    // is over before the dictionary has grown by another eighth
+    private static final int BUCKETS_PER_STEP = 8;
+    // the largest table; arrays can't be much longer than this
+    private static final int MAX_TABLE_SIZE = Integer.MAX_VALUE - 8;
 
     // use chain.get() every time you want to make a chain; functional programming
     private Supplier<IDictionary<K, V>> chain;
 
-    // size and capacity together compute lambda
     private int size = 0;
-    private int capacity = INITIAL_TABLE_SIZE;
 
     // use array of dictionaries; the dictionaries represent the separate chains
-    private IDictionary<K, V>[] hashTable = new IDictionary[INITIAL_TABLE_SIZE];
+    private IDictionary<K, V>[] hashTable = newTable(INITIAL_TABLE_SIZE);
+    // the table being emptied into hashTable by an incremental resize, or null
+    private IDictionary<K, V>[] oldTable;
+    // buckets of oldTable below this index have all been moved
+    private int migrated;
 
 
     public ChainingHashDictionary(Supplier<IDictionary<K, V>> chain) {
-//        primeTable primeStructure = new primeTable(INITIAL_TABLE_SIZE, UPPER_BOUND);
-//        this.tableSizes = primeStructure.getTableSizes();
         this.chain = chain;
     }
 
     /**
-     * @param key key to find
-     * @return value corresponding to key
+     * @return a new table of the given length, with every bucket empty
      */
-    @Override
-    public V get(K key) {
-        // figure out the address of the key based on hashcode modding of table length
-        int address = Math.abs(key.hashCode() % this.capacity);
+    @SuppressWarnings("unchecked")
+    private static <K, V> IDictionary<K, V>[] newTable(int length) {
+        return (IDictionary<K, V>[]) new IDictionary<?, ?>[length];
+    }
 
-        // make sure there is a dictionary at the address and it isn't empty
-        if (this.hashTable[address] == null || this.hashTable[address].isEmpty()) {
-            return null;
+    private static int address(int hash, int capacity) {
+        return Math.abs(hash % capacity);
+    }
+
+    /**
+     * @return the length of the table that replaces one of the given length: the smallest prime
+     * greater than twice it
+     */
+    static int nextTableSize(int capacity) {
+        if (capacity > (MAX_TABLE_SIZE - 1) / 2) {
+            return MAX_TABLE_SIZE;
+        }
+        int candidate = 2 * capacity + 1;
+        while (!isPrime(candidate)) {
+            candidate += 2;
         }
+        return candidate;
+    }
 
-        // we know there is a dictionary, so if the key exists, it must exist at that address
-        // use get function of Supplier dictionary
-        return this.hashTable[address].get(key);
+    private static boolean isPrime(int n) {
+        if (n % 2 == 0) {
+            return n == 2;
+        }
+        for (int d = 3; d <= n / d; d += 2) {
+            if (n % d == 0) {
+                return false;
+            }
+        }
+        return n > 1;
+    }
 
+    /**
+     * @param key key to find
+     * @return value corresponding to key
+     */
+    @Override
+    public V get(K key) {
+        IDictionary<K, V> bucket = this.bucket(key.hashCode());
+        return bucket == null ? null : bucket.get(key);
+    }
 
-//        // iterate thru dictionary via iterator
-//        for (K existingKey : this.hashTable[address]) {
-//            // check for key equality; not sorted, so no comparison here
-//            if (existingKey.equals(key)) {
-//                // this get is the Supplier dict's get function; not the chainingHashDictionary
-//                return this.hashTable[address].get(existingKey);
-//            }
-//        }
-        // if get here, key doesn't exist in separate chained dictionary
-//        return null;
+    @Override
+    public V peek(K key) {
+        IDictionary<K, V> bucket = this.bucket(key.hashCode());
+        return bucket == null ? null : bucket.peek(key);
+    }
 
+    /**
+     * @return the chain that holds the keys with this hash for lookups, which may be in either table during
+     * a resize, or null if there is none
+     */
+    private IDictionary<K, V> bucket(int hash) {
+        IDictionary<K, V> bucket = null;
+        // a key whose old bucket hasn't been moved yet is still in the old table
+        if (this.oldTable != null) {
+            bucket = this.oldTable[address(hash, this.oldTable.length)];
         }
-
+        if (bucket == null) {
+            bucket = this.hashTable[address(hash, this.hashTable.length)];
+        }
+        return bucket;
+    }
 
     @Override
     public V remove(K key) {
-        // for return
-        V value = this.get(key);
-
-        // don't go further if the key doesn't exist
-        if (value == null) {
+        int hash = key.hashCode();
+        this.prepare(hash);
+        IDictionary<K, V> bucket = this.hashTable[address(hash, this.hashTable.length)];
+        if (bucket == null) {
             return null;
         }
-
-        // key must exist
-        // get table address via hashcode
-        int address = Math.abs(key.hashCode() % this.capacity);
-
-        // remove using Supplier's remove function
-        this.hashTable[address].remove(key);
-
-        // decrement size
-        this.size--;
-
+        V value = bucket.remove(key);
+        if (value != null) {
+            this.size--;
+        }
         return value;
-
     }
 
-    private void resize() {
-        // lambda = size / capacity; resize when lambda >= 1
-        if (this.size / this.capacity >= 1) {
-            // what should our next capacity be? (make sure prime, > 2 * current capacity + 1
-            int nextCapacity = this.capacity;
-
-            // iterate thru our table sizes
-            for (int tableSize : this.tableSizes) {
-                // must be greater than 2 times our current table length
-                // already hard coded (as in, only double + 1 in the table, but make sure twice)
-                if (tableSize > 2 * this.capacity + 1) {
-                    nextCapacity = tableSize;
-                    break;
-                }
-            }
-
-            // create new hashTable as an array of iDictionary
-            IDictionary<K, V>[] newHashTable = new IDictionary[nextCapacity];
-            // iterate thru previous hash table and separate chains to put into new hash table
-            for (int i = 0; i < this.capacity; i++) { // this.capacity is the previous capacity
-                // only add if there exists a separate chain within the table cell
-                if (this.hashTable[i] != null) { // see if there is null pointer exception
-                    for (K key : this.hashTable[i]) {
-                        int newAddress =Math.abs(key.hashCode() % nextCapacity);
-                        // insert into the new hash table
-                        // check if dictionary already exists there
-                        if (newHashTable[newAddress] == null) {
-                            // if not, use supplier to initialize a new one
-                            newHashTable[newAddress] = chain.get();
-                        }
-                        // add key / value into new dictionary
-                        newHashTable[newAddress].put(key, this.hashTable[i].get(key));
-                    }
-                }
-            }
-
-            // make the this.hashTable the one we just created
-            this.hashTable = newHashTable;
-            this.capacity = nextCapacity;
-            // none of the other fields should change
-
-
+    @Override
+    public V put(K key, V value) {
+        IDictionary<K, V> bucket = this.writableBucket(key.hashCode());
+        V prevValue = bucket.put(key, value);
+        if (prevValue == null) {
+            this.size++;
+            this.growIfFull();
+        }
+        return prevValue;
+    }
 
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        IDictionary<K, V> bucket = this.writableBucket(key.hashCode());
+        int bucketSize = bucket.size();
+        V value = bucket.computeIfAbsent(key, mappingFunction);
+        if (bucket.size() != bucketSize) {
+            this.size++;
+            this.growIfFull();
         }
+        return value;
     }
 
     @Override
-    public V put(K key, V value) {
-        this.resize();
-        // see if previously had a value for return
-        // will only decrement if key previously existed
-        V prevValue = this.remove(key);
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        IDictionary<K, V> bucket = this.writableBucket(key.hashCode());
+        int bucketSize = bucket.size();
+        V newValue = bucket.merge(key, value, remappingFunction);
+        this.size += bucket.size() - bucketSize;
+        this.growIfFull();
+        return newValue;
+    }
 
-        // get table address via hashcode
-        int address = Math.abs(key.hashCode() % this.capacity);
+    /**
+     * @return the chain in the new table that a key with this hash is written to, made if there isn't one yet
+     */
+    private IDictionary<K, V> writableBucket(int hash) {
+        this.prepare(hash);
+        int address = address(hash, this.hashTable.length);
 
         // if no dictionary is there, make one
         if (this.hashTable[address] == null) {
-            this.hashTable[address] = chain.get();
+            this.hashTable[address] = this.chain.get();
         }
+        return this.hashTable[address];
+    }
 
-        // go to address and add key/value pair
-        this.hashTable[address].put(key, value);
-        this.size++;
+    /**
+     * Starts a resize if the dictionary has as many keys as the table has buckets (lambda = size / capacity
+     * reaches 1), unless one is already in progress.
+     */
+    private void growIfFull() {
+        if (this.oldTable == null && this.size >= this.hashTable.length && this.hashTable.length < MAX_TABLE_SIZE) {
+            this.oldTable = this.hashTable;
+            this.hashTable = newTable(nextTableSize(this.oldTable.length));
+            this.migrated = 0;
+        }
+    }
 
-        return prevValue;
+    /**
+     * Advances a resize in progress, and makes sure the keys that share hash's old bucket are in the new table,
+     * so that a put or remove of a key with this hash only has to look at the new table.
+     */
+    private void prepare(int hash) {
+        for (int step = 0; this.oldTable != null && step < BUCKETS_PER_STEP; step++) {
+            this.moveBucket(this.migrated);
+            this.migrated++;
+            if (this.migrated == this.oldTable.length) {
+                this.oldTable = null;
+            }
+        }
+        if (this.oldTable != null) {
+            this.moveBucket(address(hash, this.oldTable.length));
+        }
+    }
+
+    /**
+     * Rehashes the keys of one bucket of the old table into the new table, and empties that bucket.
+     */
+    private void moveBucket(int oldAddress) {
+        IDictionary<K, V> bucket = this.oldTable[oldAddress];
+        // chains emptied by removes are dropped rather than moved
+        if (bucket == null || bucket.isEmpty()) {
+            this.oldTable[oldAddress] = null;
+            return;
+        }
+        bucket.forEach((key, value) -> {
+            int newAddress = address(key.hashCode(), this.hashTable.length);
+            // check if dictionary already exists there
+            if (this.hashTable[newAddress] == null) {
+                // if not, use supplier to initialize a new one
+                this.hashTable[newAddress] = this.chain.get();
+            }
+            this.hashTable[newAddress].put(key, value);
+        });
+        this.oldTable[oldAddress] = null;
     }
 
     @Override
     public boolean containsKey(K key) {
-
-        return this.get(key) != null;
+        return this.peek(key) != null;
     }
 
     /**
@@ -192,7 +243,13 @@ public class ChainingHashDictionary<K, V> implements IDictionary<K, V> {
      */
     @Override
     public boolean containsValue(V value) {
-        return this.values().contains(value);
+        for (Iterator<V> values = this.valueIterator(); values.hasNext(); ) {
+            V v = values.next();
+            if (value == null ? v == null : value.equals(v)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -205,41 +262,119 @@ public class ChainingHashDictionary<K, V> implements IDictionary<K, V> {
 
     @Override
     public ICollection<K> keys() {
-        // declare / initialize keys deque
         LinkedDeque<K> keysDeque = new LinkedDeque<>();
-
-        // go thru each cell in the table
-        for (int address = 0; address < this.capacity; address++) {
-            // make sure not null and not empty
-            if (this.hashTable[address] != null && !this.hashTable[address].isEmpty()) {
-                // add all keys in a cell at once
-                keysDeque.addAll(this.hashTable[address].keys());
-            }
+        for (K key : this) {
+            keysDeque.addBack(key);
         }
         return keysDeque;
     }
 
     @Override
     public ICollection<V> values() {
-        // declare / initialize keys deque
         LinkedDeque<V> valuesDeque = new LinkedDeque<>();
+        for (Iterator<V> values = this.valueIterator(); values.hasNext(); ) {
+            valuesDeque.addBack(values.next());
+        }
+        return valuesDeque;
+    }
 
-        // go thru each cell in the table
-        for (int address = 0; address < this.capacity; address++) {
-            // make sure not null and not empty
-            if (this.hashTable[address] != null && !this.hashTable[address].isEmpty()) {
-                // add all keys in a cell at once
-                valuesDeque.addAll(this.hashTable[address].values());
+    /**
+     * The tables that hold keys are the current one, then the old one while a resize is in progress.
+     * @return the table that holds keys after table, or null if it is the last
+     */
+    private IDictionary<K, V>[] tableAfter(IDictionary<K, V>[] table) {
+        return table == this.hashTable ? this.oldTable : null;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (IDictionary<K, V>[] table = this.hashTable; table != null; table = this.tableAfter(table)) {
+            for (IDictionary<K, V> bucket : table) {
+                if (bucket != null) {
+                    bucket.forEach(action);
+                }
             }
         }
-        return valuesDeque;
     }
 
     /**
-     * @return An iterator for all entries in the HashDictionary
+     * @return An iterator for all keys in the HashDictionary
      */
     @Override
     public Iterator<K> iterator() {
-        return this.keys().iterator();
+        return new ChainIterator<K>() {
+            @Override
+            protected Iterator<K> open(IDictionary<K, V> chain) {
+                return chain.iterator();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<V> valueIterator() {
+        return new ChainIterator<V>() {
+            @Override
+            protected Iterator<V> open(IDictionary<K, V> chain) {
+                return chain.valueIterator();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> entryIterator() {
+        return new ChainIterator<Entry<K, V>>() {
+            @Override
+            protected Iterator<Entry<K, V>> open(IDictionary<K, V> chain) {
+                return chain.entryIterator();
+            }
+        };
+    }
+
+    // walks the chains in place, through each chain's own iterator, instead of copying them
+    private abstract class ChainIterator<T> implements Iterator<T> {
+        // the table being walked, or null once every table has been
+        private IDictionary<K, V>[] table = ChainingHashDictionary.this.hashTable;
+        private int bucket = 0;
+        // the iterator of the current chain, which always has an element left; null at the end
+        private Iterator<T> chainIterator;
+
+        ChainIterator() {
+            this.advance();
+        }
+
+        /**
+         * @return the iterator over chain of the kind this iterator returns
+         */
+        protected abstract Iterator<T> open(IDictionary<K, V> chain);
+
+        private void advance() {
+            for (; this.table != null; this.table = ChainingHashDictionary.this.tableAfter(this.table), this.bucket = 0) {
+                while (this.bucket < this.table.length) {
+                    IDictionary<K, V> chain = this.table[this.bucket++];
+                    if (chain != null && !chain.isEmpty()) {
+                        this.chainIterator = this.open(chain);
+                        return;
+                    }
+                }
+            }
+            this.chainIterator = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.chainIterator != null;
+        }
+
+        @Override
+        public T next() {
+            if (this.chainIterator == null) {
+                throw new NoSuchElementException();
+            }
+            T element = this.chainIterator.next();
+            if (!this.chainIterator.hasNext()) {
+                this.advance();
+            }
+            return element;
+        }
     }
 }
@@ -20,7 +20,7 @@ public class MinFourHeap<E> implements IPriorityQueue<E> {
     public MinFourHeap() {
         this.size = 0;
         this.data = new PQElement[DEFAULT_CAPACITY];
-        this.keyToIndexMap = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        this.keyToIndexMap = new ProbingHashDictionary<>();
 
     }
 
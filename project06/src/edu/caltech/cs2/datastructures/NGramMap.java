@@ -7,6 +7,7 @@ import edu.caltech.cs2.interfaces.ITrieMap;
 import edu.caltech.cs2.sorts.TopKSort;
 import edu.caltech.cs2.types.NGram;
 
+import java.util.Iterator;
 import java.util.Random;
 import java.util.Scanner;
 import java.util.function.Supplier;
@@ -59,30 +60,16 @@ public class NGramMap {
 
     public void updateCount(NGram ngram, String nexts) {
         IterableString next = new IterableString(nexts);
-        // Check if the key already exists in map
-        if (map.containsKey(ngram)) {
-            IDictionary<IterableString, Integer> follows = map.get(ngram);
-
-            // Check if the inner map already has next as a key
-            if (follows.containsKey(next)) {
-                follows.put(next, follows.get(next) + 1);
-            } else {
-                follows.put(next, 1);
-            }
-        } else {
-            IDictionary<IterableString, Integer> follows = inner.get();
-            follows.put(next, 1);
-            map.put(ngram, follows);
-        }
+        // one probe for the ngram's inner map (made if it is new), and one to increment the count of next in it
+        map.computeIfAbsent(ngram, k -> inner.get()).merge(next, 1, Integer::sum);
     }
 
     public String getRandomNext(NGram ngram) {
-        if (!map.containsKey(ngram)) {
+        IDictionary<IterableString, Integer> suffixes = map.peek(ngram);
+        if (suffixes == null) {
             return "No information regarding this prefix.";
         }
 
-        IDictionary<IterableString, Integer> suffixes = map.get(ngram);
-
         int i = 0;
         int idx = RANDOM.nextInt(suffixes.size());
 
@@ -113,14 +100,14 @@ public class NGramMap {
      */
     public IPriorityQueue.PQElement<String>[] getCountsAfter(NGram ngram) {
         //get the map of iterable strings to word counts
-        IDictionary<IterableString, Integer> nGramInner = map.get(ngram);
+        IDictionary<IterableString, Integer> nGramInner = map.peek(ngram);
         if (nGramInner != null) {
             IPriorityQueue.PQElement<String>[] nGramQueue = new IPriorityQueue.PQElement[nGramInner.size()];
-            int index = 0;
-            for (IterableString str : nGramInner.keys()) {
-                IPriorityQueue.PQElement element = new IPriorityQueue.PQElement(str.toString(), nGramInner.get(str));
-                nGramQueue[index] = (element);
-                index++;
+            // walk the entries in place, rather than copying the keys and looking each one up again
+            Iterator<IDictionary.Entry<IterableString, Integer>> entries = nGramInner.entryIterator();
+            for (int index = 0; index < nGramQueue.length; index++) {
+                IDictionary.Entry<IterableString, Integer> entry = entries.next();
+                nGramQueue[index] = new IPriorityQueue.PQElement<>(entry.key.toString(), entry.value);
             }
             return nGramQueue;
         }
@@ -2,6 +2,11 @@ package edu.caltech.cs2.interfaces;
 
 import edu.caltech.cs2.datastructures.LinkedDeque;
 
+import java.util.Iterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
 public interface IDictionary<K, V> extends Iterable<K> {
 
     public static class Entry<K, V> {
@@ -24,6 +29,17 @@ public interface IDictionary<K, V> extends Iterable<K> {
      */
     public V get(K key);
 
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this map contains no mapping for the key, without
+     * changing the map in any way. Self-organizing maps reorder themselves
+     * on {@link #get}; this lookup never does, so it is safe to share
+     * between readers.
+     */
+    default public V peek(K key) {
+        return this.get(key);
+    }
+
     /**
      * Removes the mapping for the specified key from this map if present.
      *
@@ -45,6 +61,52 @@ public interface IDictionary<K, V> extends Iterable<K> {
      */
     public V put(K key, V value);
 
+    /**
+     * If the specified key is not already mapped to a value, computes its
+     * value with the given function and enters it into this map, unless it
+     * is {@code null}.
+     *
+     * @param key key with which the value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         {@code key}, or {@code null} if the computed value is null
+     */
+    default public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = this.peek(key);
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            if (value != null) {
+                this.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * If the specified key is not already mapped to a value, associates it
+     * with the given value. Otherwise, replaces the value with the result of
+     * the given remapping function, or removes the mapping if the result is
+     * {@code null}.
+     *
+     * @param key key with which the resulting value is to be associated
+     * @param value the value to use if there is no existing value
+     * @param remappingFunction the function to combine the existing value
+     *                          and the given value
+     * @return the new value associated with {@code key}, or {@code null}
+     *         if no value is associated with it
+     */
+    default public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        V oldValue = this.peek(key);
+        V newValue = oldValue == null ? value : remappingFunction.apply(oldValue, value);
+        if (newValue == null) {
+            this.remove(key);
+        }
+        else {
+            this.put(key, newValue);
+        }
+        return newValue;
+    }
+
     /**
      * Returns {@code true} if this map contains a mapping for the
      * specified key.
@@ -97,10 +159,66 @@ public interface IDictionary<K, V> extends Iterable<K> {
      */
     public ICollection<V> values();
 
+    /**
+     * Returns an iterator over the values contained in this map, in the same
+     * order as {@link #iterator()} returns their keys.
+     *
+     * @return an iterator over the values contained in this map
+     */
+    default public Iterator<V> valueIterator() {
+        Iterator<Entry<K, V>> entries = this.entryIterator();
+        return new Iterator<V>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public V next() {
+                return entries.next().value;
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator over the key-value mappings contained in this map.
+     * Setting the value of a returned entry does not change the map.
+     *
+     * @return an iterator over the mappings contained in this map
+     */
+    default public Iterator<Entry<K, V>> entryIterator() {
+        Iterator<K> keys = this.iterator();
+        return new Iterator<Entry<K, V>>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public Entry<K, V> next() {
+                K key = keys.next();
+                return new Entry<>(key, IDictionary.this.peek(key));
+            }
+        };
+    }
+
+    /**
+     * Performs the given action for each key-value mapping in this map, in
+     * the same order as {@link #iterator()} returns the keys.
+     *
+     * @param action the action to be performed for each mapping
+     */
+    default public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Iterator<Entry<K, V>> entries = this.entryIterator(); entries.hasNext(); ) {
+            Entry<K, V> entry = entries.next();
+            action.accept(entry.key, entry.value);
+        }
+    }
+
     default public ICollection<Entry<K, V>> entrySet() {
-        IDeque<Entry<K, V>> entries = new LinkedDeque<Entry<K,V>>();
-        for (K key : keys()) {
-            entries.add(new Entry(key, this.get(key)));
+        IDeque<Entry<K, V>> entries = new LinkedDeque<>();
+        for (Iterator<Entry<K, V>> it = this.entryIterator(); it.hasNext(); ) {
+            entries.add(it.next());
         }
         return entries;
     }
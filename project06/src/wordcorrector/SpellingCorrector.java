@@ -1,10 +1,9 @@
 package wordcorrector;
 
 import edu.caltech.cs2.datastructures.ArrayDeque;
-import edu.caltech.cs2.datastructures.ChainingHashDictionary;
 import edu.caltech.cs2.datastructures.IterableString;
-import edu.caltech.cs2.datastructures.MoveToFrontDictionary;
 import edu.caltech.cs2.datastructures.NGramMap;
+import edu.caltech.cs2.datastructures.ProbingHashDictionary;
 import edu.caltech.cs2.interfaces.ICollection;
 import edu.caltech.cs2.interfaces.IDeque;
 import edu.caltech.cs2.interfaces.IDictionary;
@@ -61,26 +60,20 @@ public class SpellingCorrector {
     public ICollection<CorrectionChoice> getPossibleCorrections(String segment) {
         // recursively obtain all possible corrections
         IDictionary<String, IDictionary<String, CorrectionChoice>> correctionMap =
-                new ChainingHashDictionary<String, IDictionary<String, CorrectionChoice>>(MoveToFrontDictionary::new);
+                new ProbingHashDictionary<String, IDictionary<String, CorrectionChoice>>();
         getPossibleCorrections(segment, 1, correctionMap);
 
         // now collapse the possible corrections into one list of corrections using a hashset
         // additionally, we must ensure that our words can be found in the dictionary
-        IDictionary<String, CorrectionChoice> allCorrections = new ChainingHashDictionary<String, CorrectionChoice>(MoveToFrontDictionary::new);
+        IDictionary<String, CorrectionChoice> allCorrections = new ProbingHashDictionary<String, CorrectionChoice>();
         for (IDictionary<String, CorrectionChoice> l : correctionMap.values()) {
             for (CorrectionChoice c : l.values()) {
                 AutoCompleteTrie.Word dictionaryWord = dictionary.get(new IterableString(c.word));
                 if (dictionaryWord != null) {
                     int dictPosition = dictionaryWord.dictionaryIndex;
-                    if (allCorrections.containsKey(c.word)) {
-                        CorrectionChoice existing = allCorrections.get(c.word);
-                        if (existing.editDistance > c.editDistance) {
-                            allCorrections.put(c.word, new CorrectionChoice(c.word, c.editDistance, dictPosition));
-                        }
-                    }
-                    else {
-                        allCorrections.put(c.word, new CorrectionChoice(c.word, c.editDistance, dictPosition));
-                    }
+                    // keep whichever choice for the word needs the fewest edits
+                    allCorrections.merge(c.word, new CorrectionChoice(c.word, c.editDistance, dictPosition),
+                            (existing, choice) -> existing.editDistance > choice.editDistance ? choice : existing);
                 }
             }
         }
@@ -104,14 +97,13 @@ public class SpellingCorrector {
         }
 
         // create the list of possible corrections for this segment
-        possibleCorrections.put(segment, new ChainingHashDictionary<String, CorrectionChoice>(MoveToFrontDictionary::new));
+        IDictionary<String, CorrectionChoice> corrections = new ProbingHashDictionary<String, CorrectionChoice>();
+        possibleCorrections.put(segment, corrections);
 
         // get possible edits for the segment
         IDeque<String> edits = getPossibleEdits(segment);
         for (String edit : edits) {
-            if (!possibleCorrections.get(segment).containsKey(edit)) {
-                possibleCorrections.get(segment).put(edit, new CorrectionChoice(edit, numEdits, -1));
-            }
+            corrections.computeIfAbsent(edit, e -> new CorrectionChoice(e, numEdits, -1));
             // call recursively to get next round of edits
             getPossibleCorrections(edit, numEdits + 1, possibleCorrections);
         }
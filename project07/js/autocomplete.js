@@ -1,9 +1,11 @@
 $(function() {
+        // lets the server continue each keystroke's completion from the previous one
+        var session = Math.random().toString(36).substring(2);
         var movies = new Bloodhound({
           datumTokenizer: Bloodhound.tokenizers.obj.whitespace('value'),
           queryTokenizer: Bloodhound.tokenizers.whitespace,
           remote: {
-            url: '/autocomplete?query=%QUERY',
+            url: '/autocomplete?session=' + session + '&query=%QUERY',
             wildcard: '%QUERY'
           }
         });
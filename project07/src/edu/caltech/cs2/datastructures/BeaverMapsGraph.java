@@ -1,26 +1,52 @@
 package edu.caltech.cs2.datastructures;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
 import edu.caltech.cs2.interfaces.IDeque;
 import edu.caltech.cs2.interfaces.IDictionary;
+import edu.caltech.cs2.interfaces.IGraph;
 import edu.caltech.cs2.interfaces.ISet;
 import edu.caltech.cs2.interfaces.IPriorityQueue;
 
-import java.io.FileReader;
-import java.io.IOException;
-
-
-
-public class BeaverMapsGraph extends Graph<Long, Double> {
-    private IDictionary<Long, Location> ids;
+/**
+ * The map of buildings, waypoints and the roads between them, keyed by OSM id.
+ *
+ * Ids are primitive longs throughout: the locations and the adjacency are LongObjectMaps and each
+ * vertex's out-edges are a LongDoubleMap from neighbor id to length, so storing or looking up a
+ * vertex or an edge boxes nothing. Only the IGraph methods, whose signatures use Long and Double,
+ * box at the boundary.
+ *
+ * Once the graph is frozen into its CompactGraph (by loading it, or by the first query after a
+ * change), the compact graph is its only copy: the maps are dropped, reads are answered from the
+ * CSR arrays, and the first change rebuilds the maps from it.
+ */
+public class BeaverMapsGraph implements IGraph<Long, Double> {
+    // null while the graph is frozen, like adjacency
+    private LongObjectMap<Location> ids;
+    // vertex id -> (neighbor id -> edge length); every vertex has a (possibly empty) row.
+    // null while the graph is frozen into compact
+    private LongObjectMap<LongDoubleMap> adjacency;
+    // name -> every location with that name, so a lookup by name touches only the matches
+    private IDictionary<String, IDeque<Location>> names;
     private ISet<Location> buildings;
+    // frozen CSR copy used by the queries; null whenever the graph has changed since it was built,
+    // and the only copy of the vertices and edges while adjacency is null
+    private CompactGraph compact;
+    private RoutingEngine router;
+    private GraphView view;
+    // bumped by every vertex or edge change, so caches can tell when they are stale
+    private int version;
 
     public BeaverMapsGraph() {
-        super();
+        this(0);
+    }
+
+    /**
+     * @param expectedVertices the number of vertices the graph can hold before its maps resize
+     */
+    private BeaverMapsGraph(int expectedVertices) {
         this.buildings = new ChainingHashSet<>();
-        this.ids = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        this.ids = new LongObjectMap<>(expectedVertices);
+        this.adjacency = new LongObjectMap<>(expectedVertices);
+        this.names = new ProbingHashDictionary<>();
     }
 
     /**
@@ -31,40 +57,253 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
      * @param roadsFileName the roads filename
      */
     public BeaverMapsGraph(String buildingsFileName, String waypointsFileName, String roadsFileName) {
-        this();
-        JsonElement bs = fromFile(buildingsFileName);
-        for (JsonElement b : bs.getAsJsonArray()) {
-            Location loc = new Location(b.getAsJsonObject());
-            //System.out.println("One of the locations is " + loc);
+        // the files are streamed concurrently; see GraphLoader
+        this(new GraphLoader(buildingsFileName, waypointsFileName, roadsFileName));
+    }
+
+    private BeaverMapsGraph(GraphLoader loader) {
+        this(loader.buildings().length + loader.waypoints().length);
+        for (Location loc : loader.buildings()) {
             this.ids.put(loc.id, loc);
+            this.indexName(loc);
             this.buildings.add(loc);
             this.addVertex(loc.id);
         }
-        JsonElement waypoint = fromFile(waypointsFileName);
-        for (JsonElement w : waypoint.getAsJsonArray()) {
-            Location loc = new Location(w.getAsJsonObject());
-            //System.out.println("One of the waypoints is " + loc);
+        for (Location loc : loader.waypoints()) {
             this.ids.put(loc.id, loc);
+            this.indexName(loc);
             this.addVertex(loc.id);
         }
-        ISet<Long> verticesSet = this.vertices();
-        JsonElement road = fromFile(roadsFileName);
-        for (JsonElement r : road.getAsJsonArray()) {
-            JsonArray roadIDs = r.getAsJsonArray();
-            long prev = 0;
-            for (JsonElement o : roadIDs) {
-                long curr = o.getAsLong();
-                if (prev != 0) {
-                    double distance = this.ids.get(curr).getDistance(this.ids.get(prev));
-                    this.addEdge(curr, prev, distance);
-                    this.addEdge(prev, curr, distance);
+        loader.addRoads(this.adjacency, this.ids);
+        this.compactGraph();
+    }
+
+    /**
+     * Builds a graph from a frozen CSR copy (e.g. one read by GraphSnapshot), which is kept
+     * as this graph's compact graph instead of being rebuilt.
+     * @param compact the vertices, locations and edges of the new graph
+     */
+    BeaverMapsGraph(CompactGraph compact) {
+        this.buildings = new ChainingHashSet<>();
+        this.names = new ProbingHashDictionary<>();
+        for (int i = 0; i < compact.size(); i++) {
+            Location loc = compact.location(i);
+            if (loc != null) {
+                this.indexName(loc);
+                if (loc.type == Location.Type.BUILDING) {
+                    this.buildings.add(loc);
                 }
-                prev = curr;
             }
-            //
-            //System.out.println("One of the waypoints is " + loc);
         }
+        this.compact = compact;
+    }
 
+    /**
+     * Returns the frozen CSR representation of this graph, rebuilding it first
+     * if a vertex or edge was added or removed since it was last built. The graph
+     * stays frozen (its maps are dropped) until the next change.
+     * @return the compact view of this graph
+     */
+    public CompactGraph compactGraph() {
+        if (this.compact == null) {
+            this.compact = CompactGraph.of(this.adjacency, this.ids);
+        }
+        this.ids = null;
+        this.adjacency = null;
+        return this.compact;
+    }
+
+    /**
+     * Rebuilds the maps from the compact graph if the graph is frozen, so that it can be changed.
+     */
+    private void thaw() {
+        if (this.adjacency != null) {
+            return;
+        }
+        CompactGraph g = this.compact;
+        this.ids = new LongObjectMap<>(g.size());
+        this.adjacency = new LongObjectMap<>(g.size());
+        for (int i = 0; i < g.size(); i++) {
+            if (g.location(i) != null) {
+                this.ids.put(g.id(i), g.location(i));
+            }
+            LongDoubleMap edges = new LongDoubleMap(g.endEdge(i) - g.firstEdge(i));
+            for (int edge = g.firstEdge(i); edge < g.endEdge(i); edge++) {
+                edges.put(g.id(g.target(edge)), g.weight(edge));
+            }
+            this.adjacency.put(g.id(i), edges);
+        }
+    }
+
+    /**
+     * Returns a routing engine over the current compact graph. The engine is shared
+     * between callers and is replaced whenever the graph changes.
+     * @return the routing engine for this graph
+     */
+    public RoutingEngine router() {
+        CompactGraph g = this.compactGraph();
+        RoutingEngine r = this.router;
+        if (r == null || r.graph() != g) {
+            r = new RoutingEngine(g);
+            this.router = r;
+        }
+        return r;
+    }
+
+    /**
+     * Returns a read-only view of the current graph that is safe to query from many threads.
+     * The view does not see later changes to this graph; call view() again after changing it.
+     * @return a thread-safe view of this graph
+     */
+    public GraphView view() {
+        RoutingEngine r = this.router();
+        GraphView v = this.view;
+        if (v == null || v.router() != r) {
+            v = new GraphView(r);
+            this.view = v;
+        }
+        return v;
+    }
+
+    /**
+     * Returns a number that changes whenever a vertex or edge is added to or removed from this graph,
+     * or an edge's weight changes.
+     * @return the current version of this graph
+     */
+    public int version() {
+        return this.version;
+    }
+
+    /**
+     * Drops the compact graph (and with it the routing engine, view and cached routes built on it)
+     * after the graph has actually changed.
+     */
+    private void changed() {
+        this.compact = null;
+        this.version++;
+    }
+
+    @Override
+    public boolean addVertex(Long vertex) {
+        if (this.adjacency != null ? this.adjacency.containsKey(vertex) : this.compact.indexOf(vertex) >= 0) {
+            return false;
+        }
+        this.thaw();
+        this.adjacency.put(vertex, new LongDoubleMap());
+        this.changed();
+        return true;
+    }
+
+    @Override
+    public boolean addEdge(Long src, Long dest, Double e) {
+        LongDoubleMap edges = this.edges(src, dest);
+        int degree = edges.size();
+        double previous = edges.put(dest, e);
+        boolean added = edges.size() != degree;
+        // putting an edge back with the weight it already has changes nothing
+        if (added || Double.compare(previous, e) != 0) {
+            this.changed();
+        }
+        return added;
+    }
+
+    @Override
+    public boolean addUndirectedEdge(Long n1, Long n2, Double e) {
+        boolean didNotExist1 = this.addEdge(n1, n2, e);
+        boolean didNotExist2 = this.addEdge(n2, n1, e);
+        return didNotExist1 && didNotExist2;
+    }
+
+    @Override
+    public boolean removeEdge(Long src, Long dest) {
+        LongDoubleMap edges = this.edges(src, dest);
+        int degree = edges.size();
+        edges.remove(dest);
+        if (edges.size() == degree) {
+            return false;
+        }
+        this.changed();
+        return true;
+    }
+
+    /**
+     * @return the out-edges of src, after checking that both src and dest are vertices
+     */
+    private LongDoubleMap edges(long src, long dest) {
+        this.thaw();
+        LongDoubleMap edges = this.adjacency.get(src);
+        if (edges == null || !this.adjacency.containsKey(dest)) {
+            throw new IllegalArgumentException("vertices not present in graph");
+        }
+        return edges;
+    }
+
+    /**
+     * Returns the ids of every vertex. The set is a copy, so changing it does not change the graph.
+     * @return a set of the vertex ids
+     */
+    @Override
+    public ISet<Long> vertices() {
+        if (this.adjacency == null) {
+            CompactGraph g = this.compact;
+            ISet<Long> vertices = ISet.getBackingSet(new ProbingHashDictionary<>(g.size()));
+            for (int i = 0; i < g.size(); i++) {
+                vertices.add(g.id(i));
+            }
+            return vertices;
+        }
+        ISet<Long> vertices = ISet.getBackingSet(new ProbingHashDictionary<>(this.adjacency.size()));
+        this.adjacency.forEach((id, edges) -> vertices.add(id));
+        return vertices;
+    }
+
+    @Override
+    public Double adjacent(Long i, Long j) {
+        if (this.adjacency == null) {
+            CompactGraph g = this.compact;
+            int src = g.indexOf(i);
+            int dest = g.indexOf(j);
+            if (src < 0 || dest < 0) {
+                throw new IllegalArgumentException("vertices not present in graph");
+            }
+            for (int edge = g.firstEdge(src); edge < g.endEdge(src); edge++) {
+                if (g.target(edge) == dest) {
+                    return g.weight(edge);
+                }
+            }
+            return null;
+        }
+        // edge lengths are never NaN, so the missing value marks a missing edge
+        double weight = this.edges(i, j).get(j);
+        return Double.isNaN(weight) ? null : weight;
+    }
+
+    /**
+     * Returns the ids of the neighbors of vertex. The set is a copy, so changing it does not change the graph.
+     * @param vertex the id of the vertex
+     * @return a set of the ids that vertex has an edge to
+     */
+    @Override
+    public ISet<Long> neighbors(Long vertex) {
+        if (this.adjacency == null) {
+            CompactGraph g = this.compact;
+            int index = g.indexOf(vertex);
+            if (index < 0) {
+                throw new IllegalArgumentException("vertex not present in graph");
+            }
+            ISet<Long> neighbors = ISet.getBackingSet(new ProbingHashDictionary<>(g.endEdge(index) - g.firstEdge(index)));
+            for (int edge = g.firstEdge(index); edge < g.endEdge(index); edge++) {
+                neighbors.add(g.id(g.target(edge)));
+            }
+            return neighbors;
+        }
+        LongDoubleMap edges = this.adjacency.get(vertex);
+        if (edges == null) {
+            throw new IllegalArgumentException("vertex not present in graph");
+        }
+        ISet<Long> neighbors = ISet.getBackingSet(new ProbingHashDictionary<>(edges.size()));
+        edges.forEach((id, weight) -> neighbors.add(id));
+        return neighbors;
     }
 
     /**
@@ -74,20 +313,38 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
      */
     public IDeque<Location> getLocationByName(String locName) {
         IDeque<Location> allLocations = new ArrayDeque<>();
-        for (Location loc : this.ids.values()) {
-            if (loc.name != null && loc.name.equals(locName)) {
+        IDeque<Location> named = locName == null ? null : this.names.get(locName);
+        if (named != null) {
+            for (Location loc : named) {
                 allLocations.add(loc);
             }
         }
         return allLocations;
     }
 
+    private void indexName(Location loc) {
+        if (loc.name == null) {
+            return;
+        }
+        IDeque<Location> named = this.names.get(loc.name);
+        if (named == null) {
+            // most names belong to a single location
+            named = new ArrayDeque<>(1);
+            this.names.put(loc.name, named);
+        }
+        named.add(loc);
+    }
+
     /**
      * Returns the Location object corresponding to the provided id
      * @param id the id of the object to return
      * @return the location identified by id
      */
     public Location getLocationByID(long id) {
+        if (this.ids == null) {
+            int index = this.compact.indexOf(id);
+            return index < 0 ? null : this.compact.location(index);
+        }
         return this.ids.get(id);
     }
 
@@ -97,13 +354,18 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
      * @return true if n is a new location and false otherwise
      */
     public boolean addVertex(Location n) {
-        if (this.ids.containsKey(n.id)) {
+        if (this.getLocationByID(n.id) != null) {
             return false;
         }
         else {
+            this.thaw();
             this.ids.put(n.id, n);
-            this.addVertex(n.id);
-            if (n.type.equals("building")) {
+            this.indexName(n);
+            // the vertex may already be there without a location, which the compact graph records too
+            if (!this.addVertex(n.id)) {
+                this.changed();
+            }
+            if (n.type == Location.Type.BUILDING) {
                 this.buildings.add(n);
             }
             return true;
@@ -117,16 +379,30 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
      * @return the building closest to (lat, lon)
      */
     public Location getClosestBuilding(double lat, double lon) {
-        Location closest = null;
-        double min = Double.MAX_VALUE;
-        for (Location building : this.buildings) {
-            double curr = building.getDistance(lat, lon);
-            if (curr < min) {
-                min = curr;
-                closest = building;
-            }
-        }
-        return closest;
+        return this.compactGraph().buildingIndex().nearest(lat, lon);
+    }
+
+    /**
+     * Returns the k closest buildings to the location (lat, lon), nearest first
+     * @param lat the latitude of the location to search near
+     * @param lon the longitude of the location to search near
+     * @param k the number of buildings to return
+     * @return the (at most) k buildings closest to (lat, lon)
+     */
+    public IDeque<Location> getClosestBuildings(double lat, double lon, int k) {
+        return this.compactGraph().buildingIndex().nearest(lat, lon, k);
+    }
+
+    /**
+     * Returns the buildings inside a latitude/longitude box
+     * @param minLat the southern edge of the box
+     * @param minLon the western edge of the box
+     * @param maxLat the northern edge of the box
+     * @param maxLon the eastern edge of the box
+     * @return every building whose coordinates lie in the box (edges included)
+     */
+    public IDeque<Location> getBuildingsInBox(double minLat, double minLon, double maxLat, double maxLon) {
+        return this.compactGraph().buildingIndex().within(minLat, minLon, maxLat, maxLon);
     }
 
     /**
@@ -136,36 +412,41 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
      * @return
      */
     public ISet<Location> dfs(Location start, double threshold) {
-        long current = start.id;
-        ISet<Location> reachableLocations = new ChainingHashSet<>();
-        LinkedDeque<Long> nodeStack = new LinkedDeque<>();
-        nodeStack.push(start.id);
-        ISet<Long> visited = new ChainingHashSet<>();
-        while(!nodeStack.isEmpty()) {
-            current = nodeStack.pop();
-             if (start.getDistance(this.ids.get(current)) <= threshold){
-                reachableLocations.add(this.ids.get(current));
-                for (Long vertex : neighbors(current)) {
-                    if (!reachableLocations.contains(this.ids.get(vertex))) {
-                        nodeStack.push(vertex);
-                    }
-                }
-            }
-        }
-        return reachableLocations;
-    }
-//    public void solveDFSIterative() {
-//
-//        //selectPoint(current);
-//
-//        while (!current.equals(this.end)) {
-//            for (Point p : neighbors(current)) {
-//                pointsStack.push(p);
-//            }
-//            current = pointsStack.pop();
-//            selectPoint(current);
-//        }
-//    }
+        return this.view().dfs(start, threshold);
+    }
+
+    /**
+     * Returns the buildings within walking distance of start, following roads rather than a straight line
+     * @param start the location to search around
+     * @param distance the maximum walking distance in feet
+     * @return the buildings (other than start) reachable within distance feet, nearest first
+     */
+    public IDeque<Location> isochrone(Location start, double distance) {
+        return this.router().isochrone(start, distance);
+    }
+
+    /**
+     * Returns the shortest paths from start to every location, so a path to each of many
+     * targets costs one search plus a parent-pointer walk. Trees are cached per start id
+     * until the graph changes.
+     * @param start the location to start the paths from
+     * @return the shortest-path tree of start, or null if start is not in the graph
+     */
+    public ShortestPathTree shortestPathTree(Location start) {
+        return this.router().tree(start);
+    }
+
+    /**
+     * Returns the walking distance from every source to every target, computing the rows in parallel.
+     * @param sources the locations to measure from
+     * @param targets the locations to measure to
+     * @return matrix[i][j] is the length of a shortest path from sources[i] to targets[j],
+     *         or infinity if there is none
+     */
+    public double[][] distanceMatrix(Location[] sources, Location[] targets) {
+        return this.router().distanceMatrix(sources, targets);
+    }
+
     /**
      * Returns a list of Locations corresponding to
      * buildings in the current map.
@@ -188,72 +469,55 @@ public class BeaverMapsGraph extends Graph<Long, Double> {
             path.add(start);
             return path;
         }
-        // create dictionary of distances
-        ChainingHashDictionary<Long, Double> distanceDict = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
-        ChainingHashDictionary<Long, Long> parentDict = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        CompactGraph g = this.compactGraph();
+        int source = g.indexOf(start.id);
+        int sink = g.indexOf(target.id);
+        if (source < 0 || sink < 0) {
+            return null;
+        }
+
+        // distances and parents indexed by dense vertex index; -1 marks "no parent"
+        double[] distance = new double[g.size()];
+        int[] parent = new int[g.size()];
 
         // worklist of locations where the distance in the priority
-        MinFourHeap<Long> workList = new MinFourHeap();
+        MinFourHeap<Integer> workList = new MinFourHeap<>();
 
-        // populate distanceDict; iterate thru vertices (waypoints / buildings)
-        for (Long vertex : this.vertices()) {
-            if (vertex.equals(start.id)) {
-                distanceDict.put(vertex, 0.0);
-            }
-            else {
-                distanceDict.put(vertex, Double.MAX_VALUE);
-            }
-            //
-            workList.enqueue(new IPriorityQueue.PQElement<Long>(vertex, distanceDict.get(vertex)));
+        for (int vertex = 0; vertex < g.size(); vertex++) {
+            distance[vertex] = vertex == source ? 0.0 : Double.MAX_VALUE;
+            parent[vertex] = -1;
+            workList.enqueue(new IPriorityQueue.PQElement<>(vertex, distance[vertex]));
         }
 
         // now Dijkstra
-        while (!workList.peek().data.equals(target.id) && workList.size() != 0) {
-            IPriorityQueue.PQElement<Long> vertex = workList.dequeue();
-            for (Long neighbor : neighbors(vertex.data)) {
-                if (!neighbor.equals(target.id) && ids.get(neighbor).type == Location.Type.BUILDING) {
+        while (workList.size() != 0 && workList.peek().data != sink) {
+            int vertex = workList.dequeue().data;
+            for (int edge = g.firstEdge(vertex); edge < g.endEdge(vertex); edge++) {
+                int neighbor = g.target(edge);
+                if (neighbor != sink && g.isBuilding(neighbor)) {
                     continue;
                 }
                 // if distance changes
-                double potentialDistance = distanceDict.get(vertex.data) + adjacent(vertex.data, neighbor);
-                if (distanceDict.get(neighbor) > potentialDistance) {
-                    parentDict.put(neighbor, vertex.data);
-                    distanceDict.put(neighbor, potentialDistance);
-                    workList.decreaseKey(new IPriorityQueue.PQElement<Long>(neighbor, distanceDict.get(neighbor)));
+                double potentialDistance = distance[vertex] + g.weight(edge);
+                if (distance[neighbor] > potentialDistance) {
+                    parent[neighbor] = vertex;
+                    distance[neighbor] = potentialDistance;
+                    workList.decreaseKey(new IPriorityQueue.PQElement<>(neighbor, potentialDistance));
                 }
-//                double min = Math.min(
-//                        distanceDict.get(neighbor),
-//                        distanceDict.get(vertex.data) + adjacent(vertex.data, neighbor)
-//                );
-//                distanceDict.put(neighbor, min);
             }
         }
 
         LinkedDeque<Location> path = new LinkedDeque<>();
-        Long current = target.id;
+        int current = sink;
         path.addFront(target);
-        while (!current.equals(start.id)) {
-            if (!parentDict.containsKey(current)) {
+        while (current != source) {
+            if (parent[current] < 0) {
                 return null;
             }
-            path.addFront(ids.get(parentDict.get(current)));
-            current = parentDict.get(current);
+            current = parent[current];
+            path.addFront(g.location(current));
         }
 
         return path;
     }
-
-    /**
-     * Returns a JsonElement corresponding to the data in the file
-     * with the filename filename
-     * @param filename the name of the file to return the data from
-     * @return the JSON data from filename
-     */
-    private static JsonElement fromFile(String filename) {
-        try (FileReader reader = new FileReader(filename)) {
-            return JsonParser.parseReader(reader);
-        } catch (IOException e) {
-            return null;
-        }
-    }
 }
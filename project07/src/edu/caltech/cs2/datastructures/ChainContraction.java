@@ -0,0 +1,508 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * The degree-2 waypoint chains of a CompactGraph, and the smaller graph you get by replacing
+ * each chain with one edge.
+ *
+ * A waypoint v is a chain interior when it has exactly two neighbours u != w and its only edges
+ * are u -> v, v -> u, w -> v and v -> w, as at a bend in a road that meets no other road. A
+ * maximal run of interiors between two other vertices A and B (its ends, possibly the same
+ * vertex) is a chain. The reduced graph keeps every vertex that is not an interior; its edge
+ * A -> B has the total weight of the chain's edges in that direction (if several chains or an
+ * original edge join A to B, only the cheapest is kept). Interiors are never buildings, so every
+ * path of the reduced graph expands to a path of the original graph with the same length and
+ * the same buildings.
+ *
+ * A route that starts or ends at an interior leaves or enters the reduced graph at the ends of
+ * its chain: departures() and arrivals() give those ends and their distances, and expand() turns
+ * a path of the reduced graph back into the path of the original graph it stands for.
+ */
+public class ChainContraction {
+    private final CompactGraph original;
+    private final CompactGraph reduced;
+    // original index -> reduced index (-1 for interiors), and back
+    private final int[] toReduced;
+    private final int[] toOriginal;
+
+    // chain c is pool[chainStart[c]] (its end A), the interiors in order, then pool[chainStart[c + 1] - 1] (its end B)
+    private final int[] chainStart;
+    private final int[] pool;
+    // weights of the edges pool[i] -> pool[i + 1] and pool[i + 1] -> pool[i] (unused at the last slot of a chain)
+    private final double[] forward;
+    private final double[] backward;
+    // original index -> chain and position in pool, for interiors
+    private final int[] chainOf;
+    private final int[] positionOf;
+    // reduced edge -> 2 * chain for A -> B, 2 * chain + 1 for B -> A, -1 for an edge of the original graph
+    private final int[] edgeChain;
+
+    public ChainContraction(CompactGraph graph) {
+        int n = graph.size();
+        this.original = graph;
+
+        boolean[] interior = new boolean[n];
+        int interiors = 0;
+        for (int v = 0; v < n; v++) {
+            interior[v] = isInterior(graph, v);
+            interiors += interior[v] ? 1 : 0;
+        }
+
+        // every chain has at least one interior and two end slots
+        int[] starts = new int[interiors + 1];
+        int[] slots = new int[3 * interiors];
+        this.chainOf = new int[n];
+        this.positionOf = new int[n];
+        Arrays.fill(this.chainOf, -1);
+        int chains = 0;
+        int used = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int a = 0; a < n; a++) {
+                if (pass == 1 && interior[a] && this.chainOf[a] < 0) {
+                    // a cycle made only of interiors has no end, so keep one of its vertices as both ends
+                    interior[a] = false;
+                    interiors--;
+                }
+                if (interior[a]) {
+                    continue;
+                }
+                for (int edge = graph.firstEdge(a); edge < graph.endEdge(a); edge++) {
+                    int next = graph.target(edge);
+                    if (!interior[next] || this.chainOf[next] >= 0) {
+                        continue;
+                    }
+                    starts[chains] = used;
+                    slots[used++] = a;
+                    int previous = a;
+                    while (interior[next]) {
+                        this.chainOf[next] = chains;
+                        this.positionOf[next] = used;
+                        slots[used++] = next;
+                        int first = graph.target(graph.firstEdge(next));
+                        int after = first == previous ? graph.target(graph.firstEdge(next) + 1) : first;
+                        previous = next;
+                        next = after;
+                    }
+                    slots[used++] = next;
+                    chains++;
+                }
+            }
+        }
+        this.chainStart = Arrays.copyOf(starts, chains + 1);
+        this.chainStart[chains] = used;
+        this.pool = Arrays.copyOf(slots, used);
+        this.forward = new double[used];
+        this.backward = new double[used];
+        for (int c = 0; c < chains; c++) {
+            for (int i = this.chainStart[c]; i < this.chainStart[c + 1] - 1; i++) {
+                this.forward[i] = weight(graph, this.pool[i], this.pool[i + 1]);
+                this.backward[i] = weight(graph, this.pool[i + 1], this.pool[i]);
+            }
+        }
+
+        this.toReduced = new int[n];
+        this.toOriginal = new int[n - interiors];
+        long[] ids = new long[n - interiors];
+        Location[] locations = new Location[n - interiors];
+        int r = 0;
+        for (int v = 0; v < n; v++) {
+            if (interior[v]) {
+                this.toReduced[v] = -1;
+            }
+            else {
+                this.toReduced[v] = r;
+                this.toOriginal[r] = v;
+                ids[r] = graph.id(v);
+                locations[r] = graph.location(v);
+                r++;
+            }
+        }
+
+        // the edges out of each kept vertex, with every chain followed to its other end
+        int[] offsets = new int[r + 1];
+        int[] targets = new int[graph.edgeCount()];
+        double[] weights = new double[graph.edgeCount()];
+        int[] codes = new int[graph.edgeCount()];
+        int m = 0;
+        for (r = 0; r < this.toOriginal.length; r++) {
+            int a = this.toOriginal[r];
+            int rowStart = m;
+            for (int edge = graph.firstEdge(a); edge < graph.endEdge(a); edge++) {
+                int y = graph.target(edge);
+                int to;
+                double w;
+                int code;
+                if (!interior[y]) {
+                    to = y;
+                    w = graph.weight(edge);
+                    code = -1;
+                }
+                else {
+                    int c = this.chainOf[y];
+                    int start = this.chainStart[c];
+                    int end = this.chainStart[c + 1];
+                    if (this.positionOf[y] == start + 1 && this.pool[start] == a) {
+                        to = this.pool[end - 1];
+                        w = this.sumForward(start, end - 1);
+                        code = 2 * c;
+                    }
+                    else {
+                        to = this.pool[start];
+                        w = this.sumBackward(end - 1, start);
+                        code = 2 * c + 1;
+                    }
+                }
+                if (to == a) {
+                    continue;
+                }
+                int target = this.toReduced[to];
+                int existing = rowStart;
+                while (existing < m && targets[existing] != target) {
+                    existing++;
+                }
+                if (existing == m) {
+                    targets[m] = target;
+                    weights[m] = w;
+                    codes[m] = code;
+                    m++;
+                }
+                else if (w < weights[existing]) {
+                    weights[existing] = w;
+                    codes[existing] = code;
+                }
+            }
+            offsets[r + 1] = m;
+        }
+        this.edgeChain = Arrays.copyOf(codes, m);
+        this.reduced = new CompactGraph(ids, locations, offsets, Arrays.copyOf(targets, m), Arrays.copyOf(weights, m));
+    }
+
+    private static boolean isInterior(CompactGraph graph, int v) {
+        if (graph.isBuilding(v) || graph.endEdge(v) - graph.firstEdge(v) != 2
+                || graph.endReverseEdge(v) - graph.firstReverseEdge(v) != 2) {
+            return false;
+        }
+        int u = graph.target(graph.firstEdge(v));
+        int w = graph.target(graph.firstEdge(v) + 1);
+        int p = graph.source(graph.firstReverseEdge(v));
+        int q = graph.source(graph.firstReverseEdge(v) + 1);
+        return u != w && u != v && w != v && ((p == u && q == w) || (p == w && q == u));
+    }
+
+    /**
+     * @return the weight of the cheapest edge from -> to
+     */
+    private static double weight(CompactGraph graph, int from, int to) {
+        double w = Double.POSITIVE_INFINITY;
+        for (int edge = graph.firstEdge(from); edge < graph.endEdge(from); edge++) {
+            if (graph.target(edge) == to) {
+                w = Math.min(w, graph.weight(edge));
+            }
+        }
+        return w;
+    }
+
+    /**
+     * @return the length of the walk pool[from] -> pool[from + 1] -> ... -> pool[to], for from <= to
+     */
+    private double sumForward(int from, int to) {
+        double d = 0.0;
+        for (int i = from; i < to; i++) {
+            d += this.forward[i];
+        }
+        return d;
+    }
+
+    /**
+     * @return the length of the walk pool[from] -> pool[from - 1] -> ... -> pool[to], for from >= to
+     */
+    private double sumBackward(int from, int to) {
+        double d = 0.0;
+        for (int i = from - 1; i >= to; i--) {
+            d += this.backward[i];
+        }
+        return d;
+    }
+
+    /**
+     * @return the graph this contraction was built from
+     */
+    public CompactGraph original() {
+        return this.original;
+    }
+
+    /**
+     * @return the graph with every chain replaced by an edge
+     */
+    public CompactGraph reduced() {
+        return this.reduced;
+    }
+
+    /**
+     * @return the index in the reduced graph of original vertex v, or -1 if v is a chain interior
+     */
+    public int reducedIndex(int v) {
+        return this.toReduced[v];
+    }
+
+    /**
+     * @return the index in the original graph of reduced vertex r
+     */
+    public int originalIndex(int r) {
+        return this.toOriginal[r];
+    }
+
+    /**
+     * @return the number of chains
+     */
+    public int chainCount() {
+        return this.chainStart.length - 1;
+    }
+
+    /**
+     * Gives the reduced vertices a route from original vertex v can start at: v itself if it was
+     * kept, otherwise the two ends of its chain (A as side 0, B as side 1).
+     * @param v the original index of the start
+     * @param vertex filled with the reduced index of each side's end
+     * @param distance filled with the distance from v to each side's end
+     * @return the number of sides (1 or 2)
+     */
+    public int departures(int v, int[] vertex, double[] distance) {
+        if (this.toReduced[v] >= 0) {
+            vertex[0] = this.toReduced[v];
+            distance[0] = 0.0;
+            return 1;
+        }
+        int c = this.chainOf[v];
+        int start = this.chainStart[c];
+        int end = this.chainStart[c + 1] - 1;
+        vertex[0] = this.toReduced[this.pool[start]];
+        distance[0] = this.sumBackward(this.positionOf[v], start);
+        vertex[1] = this.toReduced[this.pool[end]];
+        distance[1] = this.sumForward(this.positionOf[v], end);
+        return 2;
+    }
+
+    /**
+     * Gives the reduced vertices a route to original vertex v can end at, as departures() does for starts.
+     * @param v the original index of the target
+     * @param vertex filled with the reduced index of each side's end
+     * @param distance filled with the distance from each side's end to v
+     * @return the number of sides (1 or 2)
+     */
+    public int arrivals(int v, int[] vertex, double[] distance) {
+        if (this.toReduced[v] >= 0) {
+            vertex[0] = this.toReduced[v];
+            distance[0] = 0.0;
+            return 1;
+        }
+        int c = this.chainOf[v];
+        int start = this.chainStart[c];
+        int end = this.chainStart[c + 1] - 1;
+        vertex[0] = this.toReduced[this.pool[start]];
+        distance[0] = this.sumForward(start, this.positionOf[v]);
+        vertex[1] = this.toReduced[this.pool[end]];
+        distance[1] = this.sumBackward(end, this.positionOf[v]);
+        return 2;
+    }
+
+    /**
+     * @return the length of the walk from s to t inside their chain, or infinity unless both are interiors of the same chain
+     */
+    public double alongChain(int s, int t) {
+        if (this.toReduced[s] >= 0 || this.toReduced[t] >= 0 || this.chainOf[s] != this.chainOf[t]) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int from = this.positionOf[s];
+        int to = this.positionOf[t];
+        return from <= to ? this.sumForward(from, to) : this.sumBackward(from, to);
+    }
+
+    /**
+     * Finds the shortest route from source to target once a search of the reduced graph from the
+     * departure ends of source has settled every arrival end of target. An end that is a building
+     * other than source does not count, since the route would have to pass through it.
+     * @param source the original index of the start
+     * @param target the original index of the end
+     * @param distance the search's distance to each reduced vertex (infinity if unreached)
+     * @param side filled with the side of target the route arrives from, or -1 if it stays inside the chain
+     * @return the length of the route, or infinity if there is none
+     */
+    public double distanceTo(int source, int target, IntToDoubleFunction distance, int[] side) {
+        double best = this.alongChain(source, target);
+        side[0] = -1;
+        int r = this.toReduced[target];
+        if (r >= 0) {
+            double d = distance.applyAsDouble(r);
+            if (d <= best) {
+                best = d;
+                side[0] = 0;
+            }
+            return best;
+        }
+        int c = this.chainOf[target];
+        int[] ends = {this.pool[this.chainStart[c]], this.pool[this.chainStart[c + 1] - 1]};
+        for (int i = 0; i < 2; i++) {
+            int end = this.toReduced[ends[i]];
+            if (this.original.isBuilding(ends[i]) && ends[i] != source) {
+                continue;
+            }
+            double d = distance.applyAsDouble(end) + (i == 0
+                    ? this.sumForward(this.chainStart[c], this.positionOf[target])
+                    : this.sumBackward(this.chainStart[c + 1] - 1, this.positionOf[target]));
+            if (d < best) {
+                best = d;
+                side[0] = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the side (as numbered by departures()) on which v reaches end at the given distance
+     */
+    public int departureSide(int v, int end, double distance) {
+        if (this.toReduced[v] >= 0) {
+            return 0;
+        }
+        int start = this.chainStart[this.chainOf[v]];
+        return this.toReduced[this.pool[start]] == end && this.sumBackward(this.positionOf[v], start) == distance ? 0 : 1;
+    }
+
+    /**
+     * @return the side (as numbered by arrivals()) from which end reaches v at the given distance
+     */
+    public int arrivalSide(int v, int end, double distance) {
+        if (this.toReduced[v] >= 0) {
+            return 0;
+        }
+        int start = this.chainStart[this.chainOf[v]];
+        return this.toReduced[this.pool[start]] == end && this.sumForward(start, this.positionOf[v]) == distance ? 0 : 1;
+    }
+
+    /**
+     * Expands a path of the reduced graph into the path of the original graph from source to target.
+     * @param source the original index of the start
+     * @param departureSide the side of source that vertices[0] is on
+     * @param vertices a path of the reduced graph, from a departure end of source to an arrival end of target
+     * @param arrivalSide the side of target that the last vertex is on
+     * @param target the original index of the end
+     * @return the locations from source to target, including both
+     */
+    public IDeque<Location> expand(int source, int departureSide, int[] vertices, int arrivalSide, int target) {
+        LinkedDeque<Location> path = new LinkedDeque<>();
+        this.appendDeparture(path, source, departureSide);
+        path.addBack(this.reduced.location(vertices[0]));
+        for (int i = 1; i < vertices.length; i++) {
+            this.appendEdge(path, vertices[i - 1], vertices[i]);
+        }
+        this.appendArrival(path, arrivalSide, target);
+        return path;
+    }
+
+    /**
+     * @return the walk from s to t inside their chain (see alongChain), including both
+     */
+    public IDeque<Location> pathAlongChain(int s, int t) {
+        LinkedDeque<Location> path = new LinkedDeque<>();
+        this.appendAlongChain(path, s, t);
+        return path;
+    }
+
+    /**
+     * Adds the start of a route from original vertex v that leaves the chain on the given side:
+     * v and the interiors up to, but not including, that side's end. Adds nothing if v was kept.
+     */
+    private void appendDeparture(IDeque<Location> path, int v, int side) {
+        if (this.toReduced[v] >= 0) {
+            return;
+        }
+        int c = this.chainOf[v];
+        if (side == 0) {
+            for (int i = this.positionOf[v]; i > this.chainStart[c]; i--) {
+                path.addBack(this.original.location(this.pool[i]));
+            }
+        }
+        else {
+            for (int i = this.positionOf[v]; i < this.chainStart[c + 1] - 1; i++) {
+                path.addBack(this.original.location(this.pool[i]));
+            }
+        }
+    }
+
+    /**
+     * Adds the end of a route to original vertex v that enters the chain from the given side:
+     * the interiors after that side's end, up to and including v. Adds nothing if v was kept.
+     */
+    private void appendArrival(IDeque<Location> path, int side, int v) {
+        if (this.toReduced[v] >= 0) {
+            return;
+        }
+        int c = this.chainOf[v];
+        if (side == 0) {
+            for (int i = this.chainStart[c] + 1; i <= this.positionOf[v]; i++) {
+                path.addBack(this.original.location(this.pool[i]));
+            }
+        }
+        else {
+            for (int i = this.chainStart[c + 1] - 2; i >= this.positionOf[v]; i--) {
+                path.addBack(this.original.location(this.pool[i]));
+            }
+        }
+    }
+
+    /**
+     * Adds the walk from s to t inside their chain (see alongChain), both included.
+     */
+    private void appendAlongChain(IDeque<Location> path, int s, int t) {
+        int from = this.positionOf[s];
+        int to = this.positionOf[t];
+        int step = from <= to ? 1 : -1;
+        for (int i = from; i != to + step; i += step) {
+            path.addBack(this.original.location(this.pool[i]));
+        }
+    }
+
+    /**
+     * Adds what the reduced edge from -> to stands for: the interiors of its chain, if any, then to.
+     * @param path a path that ends at reduced vertex from
+     * @param from the reduced index of the edge's source
+     * @param to the reduced index of the edge's target
+     */
+    private void appendEdge(IDeque<Location> path, int from, int to) {
+        int edge = this.reduced.firstEdge(from);
+        while (this.reduced.target(edge) != to) {
+            edge++;
+        }
+        int code = this.edgeChain[edge];
+        if (code >= 0) {
+            int c = code / 2;
+            if (code % 2 == 0) {
+                for (int i = this.chainStart[c] + 1; i < this.chainStart[c + 1] - 1; i++) {
+                    path.addBack(this.original.location(this.pool[i]));
+                }
+            }
+            else {
+                for (int i = this.chainStart[c + 1] - 2; i > this.chainStart[c]; i--) {
+                    path.addBack(this.original.location(this.pool[i]));
+                }
+            }
+        }
+        path.addBack(this.reduced.location(to));
+    }
+
+    /**
+     * Approximate number of bytes held by this contraction, including the reduced graph
+     * (excluding the Location objects).
+     * @return the estimated footprint in bytes
+     */
+    public long memoryFootprint() {
+        return this.reduced.memoryFootprint() + 4L * (this.toReduced.length + this.toOriginal.length
+                + this.chainStart.length + this.pool.length + 2 * this.chainOf.length + this.edgeChain.length)
+                + 16L * this.pool.length;
+    }
+}
@@ -0,0 +1,283 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+
+import java.util.Arrays;
+
+/**
+ * A frozen compressed sparse row (CSR) copy of a BeaverMapsGraph.
+ *
+ * Every vertex is renumbered to a dense index in [0, size()), in increasing id order.
+ * The out-edges of vertex i are the entries targets[offsets[i]] .. targets[offsets[i + 1] - 1],
+ * with the matching weights at the same positions in weights, so relaxing an edge is two array reads.
+ * The in-edges are stored the same way (reverseOffsets/sources/reverseWeights) for backward searches.
+ */
+public class CompactGraph {
+    // index -> OSM id, sorted so that id -> index is a binary search
+    private final long[] ids;
+    private final Location[] locations;
+    private final boolean[] isBuilding;
+    private final int[] buildingIndices;
+    private final SpatialIndex buildingIndex;
+    // indices of the named locations sorted by name (ties in index order), so a name lookup is a binary search
+    private final int[] byName;
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+
+    private final int[] reverseOffsets;
+    private final int[] sources;
+    private final double[] reverseWeights;
+
+    /**
+     * Freezes the adjacency of a graph, resolving vertex ids against locations.
+     * @param adjacency the out-edges of every vertex id, from neighbor id to weight
+     * @param locations the Location for each vertex id (vertices without one are treated as waypoints)
+     * @return the compact copy of the graph
+     */
+    static CompactGraph of(LongObjectMap<LongDoubleMap> adjacency, LongObjectMap<Location> locations) {
+        long[] ids = adjacency.keys();
+        Arrays.sort(ids);
+        int n = ids.length;
+        LongIntMap indices = new LongIntMap(n);
+        for (int i = 0; i < n; i++) {
+            indices.put(ids[i], i);
+        }
+
+        Location[] locs = new Location[n];
+        for (int i = 0; i < n; i++) {
+            locs[i] = locations.get(ids[i]);
+        }
+
+        // first pass counts out-degrees, second pass fills the rows
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + adjacency.get(ids[i]).size();
+        }
+        int[] targets = new int[offsets[n]];
+        double[] weights = new double[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int[] edge = {offsets[i]};
+            adjacency.get(ids[i]).forEach((target, weight) -> {
+                targets[edge[0]] = indices.get(target);
+                weights[edge[0]] = weight;
+                edge[0]++;
+            });
+        }
+        return new CompactGraph(ids, locs, offsets, targets, weights);
+    }
+
+    /**
+     * Wraps already-built CSR arrays (e.g. read from a snapshot); the arrays are used as is, not copied.
+     * @param ids the vertex ids in increasing order
+     * @param locations the Location of each vertex (null for vertices without one)
+     * @param offsets the first edge slot of each vertex, plus the total edge count at the end
+     * @param targets the target index of each edge
+     * @param weights the weight of each edge
+     */
+    CompactGraph(long[] ids, Location[] locations, int[] offsets, int[] targets, double[] weights) {
+        int n = ids.length;
+        this.ids = ids;
+        this.locations = locations;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+
+        this.isBuilding = new boolean[n];
+        int buildingCount = 0;
+        for (int i = 0; i < n; i++) {
+            Location loc = locations[i];
+            if (loc != null && loc.type == Location.Type.BUILDING) {
+                this.isBuilding[i] = true;
+                buildingCount++;
+            }
+        }
+
+        this.buildingIndices = new int[buildingCount];
+        int b = 0;
+        for (int i = 0; i < n; i++) {
+            if (this.isBuilding[i]) {
+                this.buildingIndices[b] = i;
+                b++;
+            }
+        }
+        Location[] buildings = new Location[buildingCount];
+        for (b = 0; b < buildingCount; b++) {
+            buildings[b] = this.locations[this.buildingIndices[b]];
+        }
+        this.buildingIndex = new SpatialIndex(buildings);
+
+        int named = 0;
+        for (int i = 0; i < n; i++) {
+            if (locations[i] != null && locations[i].name != null) {
+                named++;
+            }
+        }
+        Integer[] order = new Integer[named];
+        named = 0;
+        for (int i = 0; i < n; i++) {
+            if (locations[i] != null && locations[i].name != null) {
+                order[named++] = i;
+            }
+        }
+        // object sorts are stable, so equal names stay in index order
+        Arrays.sort(order, (a, c) -> locations[a].name.compareTo(locations[c].name));
+        this.byName = new int[named];
+        for (int k = 0; k < named; k++) {
+            this.byName[k] = order[k];
+        }
+
+        // transpose: count in-degrees, prefix-sum them, then scatter every edge into its target's row
+        this.reverseOffsets = new int[n + 1];
+        for (int edge = 0; edge < this.targets.length; edge++) {
+            this.reverseOffsets[this.targets[edge] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            this.reverseOffsets[i + 1] += this.reverseOffsets[i];
+        }
+        this.sources = new int[this.targets.length];
+        this.reverseWeights = new double[this.targets.length];
+        int[] next = new int[n];
+        System.arraycopy(this.reverseOffsets, 0, next, 0, n);
+        for (int i = 0; i < n; i++) {
+            for (int edge = this.offsets[i]; edge < this.offsets[i + 1]; edge++) {
+                int slot = next[this.targets[edge]]++;
+                this.sources[slot] = i;
+                this.reverseWeights[slot] = this.weights[edge];
+            }
+        }
+    }
+
+    /**
+     * @return the number of vertices in this graph
+     */
+    public int size() {
+        return this.ids.length;
+    }
+
+    /**
+     * @return the number of directed edges in this graph
+     */
+    public int edgeCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * Returns the dense index of the vertex with the given id.
+     * @param id the OSM id to look up
+     * @return the index of id, or -1 if id is not a vertex of this graph
+     */
+    public int indexOf(long id) {
+        int index = Arrays.binarySearch(this.ids, id);
+        return index >= 0 ? index : -1;
+    }
+
+    public long id(int index) {
+        return this.ids[index];
+    }
+
+    public Location location(int index) {
+        return this.locations[index];
+    }
+
+    public boolean isBuilding(int index) {
+        return this.isBuilding[index];
+    }
+
+    /**
+     * @return the indices of every building vertex; callers must not modify the array
+     */
+    public int[] buildingIndices() {
+        return this.buildingIndices;
+    }
+
+    /**
+     * @return a spatial index over the building locations, in buildingIndices() order for ties
+     */
+    public SpatialIndex buildingIndex() {
+        return this.buildingIndex;
+    }
+
+    /**
+     * Returns every location named name, in index order.
+     * @param name the name to look up
+     * @return the locations with exactly that name (empty if there are none)
+     */
+    public IDeque<Location> locationsNamed(String name) {
+        IDeque<Location> matches = new ArrayDeque<>();
+        if (name == null) {
+            return matches;
+        }
+        // lower bound: the first position whose name is not less than name
+        int lo = 0;
+        int hi = this.byName.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.locations[this.byName[mid]].name.compareTo(name) < 0) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < this.byName.length && this.locations[this.byName[k]].name.equals(name); k++) {
+            matches.add(this.locations[this.byName[k]]);
+        }
+        return matches;
+    }
+
+    /**
+     * @return the first edge slot of vertex index
+     */
+    public int firstEdge(int index) {
+        return this.offsets[index];
+    }
+
+    /**
+     * @return one past the last edge slot of vertex index
+     */
+    public int endEdge(int index) {
+        return this.offsets[index + 1];
+    }
+
+    public int target(int edge) {
+        return this.targets[edge];
+    }
+
+    public double weight(int edge) {
+        return this.weights[edge];
+    }
+
+    /**
+     * @return the first in-edge slot of vertex index
+     */
+    public int firstReverseEdge(int index) {
+        return this.reverseOffsets[index];
+    }
+
+    /**
+     * @return one past the last in-edge slot of vertex index
+     */
+    public int endReverseEdge(int index) {
+        return this.reverseOffsets[index + 1];
+    }
+
+    public int source(int reverseEdge) {
+        return this.sources[reverseEdge];
+    }
+
+    public double reverseWeight(int reverseEdge) {
+        return this.reverseWeights[reverseEdge];
+    }
+
+    /**
+     * Approximate number of bytes held by the arrays of this graph (excluding the Location objects).
+     * @return the estimated footprint in bytes
+     */
+    public long memoryFootprint() {
+        int n = this.ids.length;
+        int m = this.targets.length;
+        return 8L * n + 8L * n + n + 4L * this.buildingIndices.length + 4L * this.byName.length + 2 * (4L * (n + 1) + 4L * m + 8L * m);
+    }
+}
@@ -0,0 +1,645 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A contraction hierarchy over a CompactGraph.
+ *
+ * Preprocessing contracts vertices one at a time (cheapest first, by edge difference), adding a
+ * shortcut u -> w through v whenever the path u -> v -> w is the only shortest way between u and w
+ * left in the graph. Every edge ends up stored at its lower-ranked endpoint: out-edges to higher
+ * ranks in the "up" arrays and in-edges from higher ranks in the "down" arrays. A query then only
+ * searches upward from both ends, which settles a few hundred vertices even on large maps, and
+ * shortcuts are unpacked back into original edges through their middle vertex.
+ *
+ * Buildings may only start or end a route, so they are contracted first and never get shortcuts
+ * through them; the witness searches that decide on waypoint shortcuts then only see waypoints.
+ */
+public class ContractionHierarchy {
+    private static final int MAGIC = 0x42434831; // "BCH1"
+    // cap on how far a witness search may look before a shortcut is added anyway
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final CompactGraph graph;
+    private final int[] rank;
+
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final double[] upWeights;
+    private final int[] upMiddles;
+
+    private final int[] downOffsets;
+    private final int[] downSources;
+    private final double[] downWeights;
+    private final int[] downMiddles;
+
+    private final ThreadLocal<RoutingEngine.SearchScratch> forwardScratch;
+    private final ThreadLocal<RoutingEngine.SearchScratch> backwardScratch;
+
+    private ContractionHierarchy(CompactGraph graph, int[] rank,
+                                 int[] upOffsets, int[] upTargets, double[] upWeights, int[] upMiddles,
+                                 int[] downOffsets, int[] downSources, double[] downWeights, int[] downMiddles) {
+        this.graph = graph;
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downWeights = downWeights;
+        this.downMiddles = downMiddles;
+        this.forwardScratch = ThreadLocal.withInitial(() -> new RoutingEngine.SearchScratch(graph.size()));
+        this.backwardScratch = ThreadLocal.withInitial(() -> new RoutingEngine.SearchScratch(graph.size()));
+    }
+
+    public CompactGraph graph() {
+        return this.graph;
+    }
+
+    /**
+     * @return the number of edges (original plus shortcuts) in the hierarchy
+     */
+    public int edgeCount() {
+        return this.upTargets.length + this.downSources.length;
+    }
+
+    /**
+     * @return the number of shortcut edges added during preprocessing
+     */
+    public int shortcutCount() {
+        int count = 0;
+        for (int middle : this.upMiddles) {
+            count += middle >= 0 ? 1 : 0;
+        }
+        for (int middle : this.downMiddles) {
+            count += middle >= 0 ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Builds the hierarchy for graph. This takes a few seconds on a city-sized map, so it is
+     * meant to run once offline and be saved with write().
+     * @param graph the graph to preprocess
+     * @return the contraction hierarchy of graph
+     */
+    public static ContractionHierarchy build(CompactGraph graph) {
+        return new Contractor(graph).contractAll();
+    }
+
+    /**
+     * Finds a shortest path from start to target, never passing through buildings other than those two.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @return the path (null if there is none), its length and the number of settled vertices
+     */
+    public Route route(Location start, Location target) {
+        if (start.equals(target)) {
+            LinkedDeque<Location> path = new LinkedDeque<>();
+            path.add(start);
+            return new Route(path, 0.0, 0);
+        }
+        int source = this.graph.indexOf(start.id);
+        int sink = this.graph.indexOf(target.id);
+        if (source < 0 || sink < 0) {
+            return new Route(null, Double.POSITIVE_INFINITY, 0);
+        }
+
+        RoutingEngine.SearchScratch forward = this.forwardScratch.get();
+        RoutingEngine.SearchScratch backward = this.backwardScratch.get();
+        forward.reset();
+        backward.reset();
+        forward.set(source, 0.0, -1);
+        forward.heap.push(source, 0.0);
+        backward.set(sink, 0.0, -1);
+        backward.heap.push(sink, 0.0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        int settled = 0;
+        while (true) {
+            // unlike plain bidirectional search, each side may only stop once its own minimum reaches best
+            boolean forwardLive = live(forward, best);
+            boolean backwardLive = live(backward, best);
+            if (!forwardLive && !backwardLive) {
+                break;
+            }
+            boolean isForward = forwardLive && (!backwardLive || forward.heap.size() <= backward.heap.size());
+            RoutingEngine.SearchScratch self = isForward ? forward : backward;
+            RoutingEngine.SearchScratch other = isForward ? backward : forward;
+            int vertex = self.heap.pop();
+            double d = self.distance[vertex];
+            settled++;
+
+            int first = isForward ? this.upOffsets[vertex] : this.downOffsets[vertex];
+            int end = isForward ? this.upOffsets[vertex + 1] : this.downOffsets[vertex + 1];
+            for (int edge = first; edge < end; edge++) {
+                int neighbor = isForward ? this.upTargets[edge] : this.downSources[edge];
+                if (this.graph.isBuilding(neighbor) && neighbor != (isForward ? sink : source)) {
+                    continue;
+                }
+                double potentialDistance = d + (isForward ? this.upWeights[edge] : this.downWeights[edge]);
+                if (potentialDistance < self.distance(neighbor)) {
+                    self.set(neighbor, potentialDistance, vertex);
+                    self.heap.push(neighbor, potentialDistance);
+                    if (other.reached(neighbor) && potentialDistance + other.distance[neighbor] < best) {
+                        best = potentialDistance + other.distance[neighbor];
+                        meet = neighbor;
+                    }
+                }
+            }
+        }
+
+        if (meet < 0) {
+            return new Route(null, Double.POSITIVE_INFINITY, settled);
+        }
+
+        // hierarchy vertices from source up to meet and from meet down to sink
+        int forwardHops = 0;
+        for (int v = meet; v != source; v = forward.parent[v]) {
+            forwardHops++;
+        }
+        int backwardHops = 0;
+        for (int v = meet; v != sink; v = backward.parent[v]) {
+            backwardHops++;
+        }
+        int[] hierarchyPath = new int[forwardHops + backwardHops + 1];
+        int i = forwardHops;
+        for (int v = meet; i >= 0; v = forward.parent[v]) {
+            hierarchyPath[i--] = v;
+        }
+        i = forwardHops;
+        for (int v = meet; v != sink; ) {
+            v = backward.parent[v];
+            hierarchyPath[++i] = v;
+        }
+
+        LinkedDeque<Location> path = new LinkedDeque<>();
+        path.addBack(this.graph.location(source));
+        for (i = 0; i + 1 < hierarchyPath.length; i++) {
+            this.unpack(hierarchyPath[i], hierarchyPath[i + 1], path);
+        }
+        return new Route(path, best, settled);
+    }
+
+    /**
+     * Pops stale entries and reports whether the top of the heap can still improve on best.
+     */
+    private static boolean live(RoutingEngine.SearchScratch s, double best) {
+        while (!s.heap.isEmpty() && s.heap.peekPriority() > s.distance[s.heap.peekVertex()]) {
+            s.heap.pop();
+        }
+        return !s.heap.isEmpty() && s.heap.peekPriority() < best;
+    }
+
+    /**
+     * Appends the original vertices of hierarchy edge u -> w (excluding u) to path,
+     * expanding shortcuts through their middle vertices with an explicit stack.
+     */
+    private void unpack(int u, int w, IDeque<Location> path) {
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = u;
+        stack[top++] = w;
+        while (top > 0) {
+            int b = stack[--top];
+            int a = stack[--top];
+            int middle = this.middle(a, b);
+            if (middle < 0) {
+                path.addBack(this.graph.location(b));
+                continue;
+            }
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            // (a, middle) must come out first, so it goes on last
+            stack[top++] = middle;
+            stack[top++] = b;
+            stack[top++] = a;
+            stack[top++] = middle;
+        }
+    }
+
+    /**
+     * Returns the middle vertex of the hierarchy edge u -> w, or -1 if it is an original edge.
+     */
+    private int middle(int u, int w) {
+        if (this.rank[w] > this.rank[u]) {
+            for (int edge = this.upOffsets[u]; edge < this.upOffsets[u + 1]; edge++) {
+                if (this.upTargets[edge] == w) {
+                    return this.upMiddles[edge];
+                }
+            }
+        }
+        else {
+            for (int edge = this.downOffsets[w]; edge < this.downOffsets[w + 1]; edge++) {
+                if (this.downSources[edge] == u) {
+                    return this.downMiddles[edge];
+                }
+            }
+        }
+        throw new IllegalStateException("no hierarchy edge from " + this.graph.id(u) + " to " + this.graph.id(w));
+    }
+
+    /**
+     * Saves this hierarchy so that a later run can load it with read() instead of rebuilding it.
+     * @param filename the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(this.graph.size());
+            out.writeLong(checksum(this.graph));
+            writeInts(out, this.rank);
+            writeInts(out, this.upOffsets);
+            writeInts(out, this.upTargets);
+            writeDoubles(out, this.upWeights);
+            writeInts(out, this.upMiddles);
+            writeInts(out, this.downOffsets);
+            writeInts(out, this.downSources);
+            writeDoubles(out, this.downWeights);
+            writeInts(out, this.downMiddles);
+        }
+    }
+
+    /**
+     * Loads a hierarchy saved by write().
+     * @param filename the file to read
+     * @param graph the graph the hierarchy was built for
+     * @return the loaded hierarchy
+     * @throws IOException if the file cannot be read or was built for a different graph
+     */
+    public static ContractionHierarchy read(String filename, CompactGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(filename + " is not a contraction hierarchy file");
+            }
+            if (in.readInt() != graph.size() || in.readLong() != checksum(graph)) {
+                throw new IOException(filename + " was built for a different graph");
+            }
+            return new ContractionHierarchy(graph, readInts(in),
+                    readInts(in), readInts(in), readDoubles(in), readInts(in),
+                    readInts(in), readInts(in), readDoubles(in), readInts(in));
+        }
+    }
+
+    /**
+     * Fingerprint of the vertex ids and of every edge's target and weight, so a hierarchy is never
+     * attached to a graph whose roads have been rerouted or remeasured since it was built.
+     */
+    private static long checksum(CompactGraph graph) {
+        long hash = graph.edgeCount();
+        for (int i = 0; i < graph.size(); i++) {
+            hash = 31 * hash + graph.id(i);
+            for (int edge = graph.firstEdge(i); edge < graph.endEdge(i); edge++) {
+                hash = 31 * hash + graph.target(edge);
+                hash = 31 * hash + Double.doubleToLongBits(graph.weight(edge));
+            }
+        }
+        return hash;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double v : values) {
+            out.writeDouble(v);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * The mutable state of preprocessing: adjacency lists of the not-yet-contracted vertices
+     * (with the middle vertex of every shortcut), and the up/down edges recorded so far.
+     */
+    private static class Contractor {
+        private final CompactGraph graph;
+        private final int n;
+
+        private final int[][] outTargets;
+        private final double[][] outWeights;
+        private final int[][] outMiddles;
+        private final int[] outCount;
+        private final int[][] inSources;
+        private final double[][] inWeights;
+        private final int[][] inMiddles;
+        private final int[] inCount;
+
+        private final boolean[] contracted;
+        private final int[] contractedNeighbors;
+        private final int[] rank;
+
+        // edges recorded when each vertex is contracted, flattened into CSR at the end
+        private final int[][] upTargets;
+        private final double[][] upWeights;
+        private final int[][] upMiddles;
+        private final int[][] downSources;
+        private final double[][] downWeights;
+        private final int[][] downMiddles;
+
+        private final RoutingEngine.SearchScratch witness;
+
+        Contractor(CompactGraph graph) {
+            this.graph = graph;
+            this.n = graph.size();
+            this.outTargets = new int[this.n][];
+            this.outWeights = new double[this.n][];
+            this.outMiddles = new int[this.n][];
+            this.outCount = new int[this.n];
+            this.inSources = new int[this.n][];
+            this.inWeights = new double[this.n][];
+            this.inMiddles = new int[this.n][];
+            this.inCount = new int[this.n];
+            for (int v = 0; v < this.n; v++) {
+                int outDegree = graph.endEdge(v) - graph.firstEdge(v);
+                int inDegree = graph.endReverseEdge(v) - graph.firstReverseEdge(v);
+                this.outTargets[v] = new int[Math.max(outDegree, 2)];
+                this.outWeights[v] = new double[Math.max(outDegree, 2)];
+                this.outMiddles[v] = new int[Math.max(outDegree, 2)];
+                this.inSources[v] = new int[Math.max(inDegree, 2)];
+                this.inWeights[v] = new double[Math.max(inDegree, 2)];
+                this.inMiddles[v] = new int[Math.max(inDegree, 2)];
+            }
+            for (int v = 0; v < this.n; v++) {
+                for (int edge = graph.firstEdge(v); edge < graph.endEdge(v); edge++) {
+                    this.addEdge(v, graph.target(edge), graph.weight(edge), -1);
+                }
+            }
+
+            this.contracted = new boolean[this.n];
+            this.contractedNeighbors = new int[this.n];
+            this.rank = new int[this.n];
+            this.upTargets = new int[this.n][];
+            this.upWeights = new double[this.n][];
+            this.upMiddles = new int[this.n][];
+            this.downSources = new int[this.n][];
+            this.downWeights = new double[this.n][];
+            this.downMiddles = new int[this.n][];
+            this.witness = new RoutingEngine.SearchScratch(this.n);
+        }
+
+        /**
+         * Adds edge u -> w, or lowers its weight if it already exists with a larger one.
+         */
+        private void addEdge(int u, int w, double weight, int middle) {
+            if (u == w) {
+                return;
+            }
+            for (int i = 0; i < this.outCount[u]; i++) {
+                if (this.outTargets[u][i] == w) {
+                    if (weight < this.outWeights[u][i]) {
+                        this.outWeights[u][i] = weight;
+                        this.outMiddles[u][i] = middle;
+                        for (int j = 0; j < this.inCount[w]; j++) {
+                            if (this.inSources[w][j] == u) {
+                                this.inWeights[w][j] = weight;
+                                this.inMiddles[w][j] = middle;
+                            }
+                        }
+                    }
+                    return;
+                }
+            }
+            if (this.outCount[u] == this.outTargets[u].length) {
+                int length = this.outTargets[u].length * 2;
+                this.outTargets[u] = Arrays.copyOf(this.outTargets[u], length);
+                this.outWeights[u] = Arrays.copyOf(this.outWeights[u], length);
+                this.outMiddles[u] = Arrays.copyOf(this.outMiddles[u], length);
+            }
+            this.outTargets[u][this.outCount[u]] = w;
+            this.outWeights[u][this.outCount[u]] = weight;
+            this.outMiddles[u][this.outCount[u]] = middle;
+            this.outCount[u]++;
+
+            if (this.inCount[w] == this.inSources[w].length) {
+                int length = this.inSources[w].length * 2;
+                this.inSources[w] = Arrays.copyOf(this.inSources[w], length);
+                this.inWeights[w] = Arrays.copyOf(this.inWeights[w], length);
+                this.inMiddles[w] = Arrays.copyOf(this.inMiddles[w], length);
+            }
+            this.inSources[w][this.inCount[w]] = u;
+            this.inWeights[w][this.inCount[w]] = weight;
+            this.inMiddles[w][this.inCount[w]] = middle;
+            this.inCount[w]++;
+        }
+
+        ContractionHierarchy contractAll() {
+            int nextRank = 0;
+            // buildings can't be passed through, so they go first and never produce shortcuts
+            for (int v = 0; v < this.n; v++) {
+                if (this.graph.isBuilding(v)) {
+                    this.contract(v, nextRank++, false);
+                }
+            }
+
+            // lazy updates: a popped vertex is re-scored and only contracted if it is still the cheapest
+            LazyMinHeap queue = new LazyMinHeap(this.n);
+            double[] priority = new double[this.n];
+            for (int v = 0; v < this.n; v++) {
+                if (!this.contracted[v]) {
+                    priority[v] = this.importance(v);
+                    queue.push(v, priority[v]);
+                }
+            }
+            while (!queue.isEmpty()) {
+                double p = queue.peekPriority();
+                int v = queue.pop();
+                if (this.contracted[v] || p != priority[v]) {
+                    continue;
+                }
+                double current = this.importance(v);
+                if (!queue.isEmpty() && current > queue.peekPriority()) {
+                    priority[v] = current;
+                    queue.push(v, current);
+                    continue;
+                }
+                this.contract(v, nextRank++, true);
+            }
+            return this.flatten();
+        }
+
+        /**
+         * Edge difference (shortcuts needed minus edges removed) plus the number of already-contracted
+         * neighbours, which spreads contraction evenly over the map.
+         */
+        private double importance(int v) {
+            int shortcuts = this.shortcuts(v, false);
+            return shortcuts - (this.outCount[v] + this.inCount[v]) + this.contractedNeighbors[v];
+        }
+
+        /**
+         * Removes v from the remaining graph, recording its edges as hierarchy edges and
+         * (if withShortcuts) adding the shortcuts that keep distances between its neighbours intact.
+         */
+        private void contract(int v, int vertexRank, boolean withShortcuts) {
+            if (withShortcuts) {
+                this.shortcuts(v, true);
+            }
+            this.rank[v] = vertexRank;
+            this.contracted[v] = true;
+            this.upTargets[v] = Arrays.copyOf(this.outTargets[v], this.outCount[v]);
+            this.upWeights[v] = Arrays.copyOf(this.outWeights[v], this.outCount[v]);
+            this.upMiddles[v] = Arrays.copyOf(this.outMiddles[v], this.outCount[v]);
+            this.downSources[v] = Arrays.copyOf(this.inSources[v], this.inCount[v]);
+            this.downWeights[v] = Arrays.copyOf(this.inWeights[v], this.inCount[v]);
+            this.downMiddles[v] = Arrays.copyOf(this.inMiddles[v], this.inCount[v]);
+
+            for (int i = 0; i < this.outCount[v]; i++) {
+                int w = this.outTargets[v][i];
+                this.removeIn(w, v);
+                this.contractedNeighbors[w]++;
+            }
+            for (int i = 0; i < this.inCount[v]; i++) {
+                int u = this.inSources[v][i];
+                this.removeOut(u, v);
+                this.contractedNeighbors[u]++;
+            }
+            this.outCount[v] = 0;
+            this.inCount[v] = 0;
+        }
+
+        private void removeOut(int u, int w) {
+            for (int i = 0; i < this.outCount[u]; i++) {
+                if (this.outTargets[u][i] == w) {
+                    int last = --this.outCount[u];
+                    this.outTargets[u][i] = this.outTargets[u][last];
+                    this.outWeights[u][i] = this.outWeights[u][last];
+                    this.outMiddles[u][i] = this.outMiddles[u][last];
+                    return;
+                }
+            }
+        }
+
+        private void removeIn(int w, int u) {
+            for (int i = 0; i < this.inCount[w]; i++) {
+                if (this.inSources[w][i] == u) {
+                    int last = --this.inCount[w];
+                    this.inSources[w][i] = this.inSources[w][last];
+                    this.inWeights[w][i] = this.inWeights[w][last];
+                    this.inMiddles[w][i] = this.inMiddles[w][last];
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Counts (and if add is set, inserts) the shortcuts u -> w through v that have no witness path
+         * of equal or shorter length avoiding v.
+         */
+        private int shortcuts(int v, boolean add) {
+            int count = 0;
+            for (int i = 0; i < this.inCount[v]; i++) {
+                int u = this.inSources[v][i];
+                double toV = this.inWeights[v][i];
+                double limit = 0;
+                for (int j = 0; j < this.outCount[v]; j++) {
+                    limit = Math.max(limit, toV + this.outWeights[v][j]);
+                }
+                this.witnessSearch(u, v, limit);
+                for (int j = 0; j < this.outCount[v]; j++) {
+                    int w = this.outTargets[v][j];
+                    double via = toV + this.outWeights[v][j];
+                    if (w == u || this.witness.distance(w) <= via) {
+                        continue;
+                    }
+                    count++;
+                    if (add) {
+                        this.addEdge(u, w, via, v);
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Bounded Dijkstra from u over the remaining graph without v; afterwards witness.distance(w)
+         * is an upper bound on the u -> w distance avoiding v (infinite if not found within the bounds).
+         */
+        private void witnessSearch(int u, int v, double limit) {
+            RoutingEngine.SearchScratch s = this.witness;
+            s.reset();
+            s.set(u, 0.0, -1);
+            s.heap.push(u, 0.0);
+            int settled = 0;
+            while (!s.heap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+                double d = s.heap.peekPriority();
+                int x = s.heap.pop();
+                if (d > s.distance[x]) {
+                    continue;
+                }
+                if (d > limit) {
+                    break;
+                }
+                settled++;
+                for (int i = 0; i < this.outCount[x]; i++) {
+                    int y = this.outTargets[x][i];
+                    if (y == v) {
+                        continue;
+                    }
+                    double potentialDistance = d + this.outWeights[x][i];
+                    if (potentialDistance < s.distance(y)) {
+                        s.set(y, potentialDistance, x);
+                        s.heap.push(y, potentialDistance);
+                    }
+                }
+            }
+        }
+
+        private ContractionHierarchy flatten() {
+            int[] upOffsets = new int[this.n + 1];
+            int[] downOffsets = new int[this.n + 1];
+            for (int v = 0; v < this.n; v++) {
+                upOffsets[v + 1] = upOffsets[v] + this.upTargets[v].length;
+                downOffsets[v + 1] = downOffsets[v] + this.downSources[v].length;
+            }
+            int[] upT = new int[upOffsets[this.n]];
+            double[] upW = new double[upOffsets[this.n]];
+            int[] upM = new int[upOffsets[this.n]];
+            int[] downS = new int[downOffsets[this.n]];
+            double[] downW = new double[downOffsets[this.n]];
+            int[] downM = new int[downOffsets[this.n]];
+            for (int v = 0; v < this.n; v++) {
+                System.arraycopy(this.upTargets[v], 0, upT, upOffsets[v], this.upTargets[v].length);
+                System.arraycopy(this.upWeights[v], 0, upW, upOffsets[v], this.upWeights[v].length);
+                System.arraycopy(this.upMiddles[v], 0, upM, upOffsets[v], this.upMiddles[v].length);
+                System.arraycopy(this.downSources[v], 0, downS, downOffsets[v], this.downSources[v].length);
+                System.arraycopy(this.downWeights[v], 0, downW, downOffsets[v], this.downWeights[v].length);
+                System.arraycopy(this.downMiddles[v], 0, downM, downOffsets[v], this.downMiddles[v].length);
+            }
+            return new ContractionHierarchy(this.graph, this.rank,
+                    upOffsets, upT, upW, upM, downOffsets, downS, downW, downM);
+        }
+    }
+}
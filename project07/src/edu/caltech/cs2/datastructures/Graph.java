@@ -4,9 +4,7 @@ import edu.caltech.cs2.interfaces.IGraph;
 import edu.caltech.cs2.interfaces.ISet;
 
 public class Graph<V, E> implements IGraph<V, E> {
-    ChainingHashDictionary<V, ChainingHashDictionary<V, E>> backingDict = new ChainingHashDictionary<>(
-            MoveToFrontDictionary :: new
-    );
+    ProbingHashDictionary<V, ProbingHashDictionary<V, E>> backingDict = new ProbingHashDictionary<>();
 
     @Override
     public boolean addVertex(V vertex) {
@@ -15,18 +13,19 @@ public class Graph<V, E> implements IGraph<V, E> {
             return false;
         }
         // add vertex
-        backingDict.put(vertex, new ChainingHashDictionary<V, E>(MoveToFrontDictionary :: new));
+        backingDict.put(vertex, new ProbingHashDictionary<V, E>());
         return true;
     }
 
     @Override
     public boolean addEdge(V src, V dest, E e) {
         // if one of the vertices isn't present
-        if (!backingDict.containsKey(src) || !backingDict.containsKey(dest)) {
+        ProbingHashDictionary<V, E> edges = backingDict.get(src);
+        if (edges == null || !backingDict.containsKey(dest)) {
             throw new IllegalArgumentException("vertices not present in backingDict");
         }
 
-        return backingDict.get(src).put(dest, e) == null;
+        return edges.put(dest, e) == null;
 
     }
 
@@ -39,7 +38,8 @@ public class Graph<V, E> implements IGraph<V, E> {
 
     @Override
     public boolean removeEdge(V src, V dest) {
-        if (!backingDict.containsKey(src) || !backingDict.containsKey(dest)) {
+        ProbingHashDictionary<V, E> edges = backingDict.get(src);
+        if (edges == null || !backingDict.containsKey(dest)) {
             throw new IllegalArgumentException("vertices not present in backingDict");
         }
 
@@ -47,7 +47,7 @@ public class Graph<V, E> implements IGraph<V, E> {
 //            return false;
 //        }
 
-        return backingDict.get(src).remove(dest) != null;
+        return edges.remove(dest) != null;
     }
 
     @Override
@@ -58,15 +58,13 @@ public class Graph<V, E> implements IGraph<V, E> {
     @Override
     public E adjacent(V i, V j) {
 
-        if (!backingDict.containsKey(i) || !backingDict.containsKey(j)) {
+        ProbingHashDictionary<V, E> edges = backingDict.get(i);
+        if (edges == null || !backingDict.containsKey(j)) {
             throw new IllegalArgumentException("vertices not present in backingDict");
         }
 
-        if (backingDict.get(i).containsKey(j)) {
-            return backingDict.get(i).get(j);
-        }
-
-        return null;
+        // get is null for a missing edge, so there's no need to check containsKey first
+        return edges.get(j);
     }
 
     @Override
@@ -0,0 +1,205 @@
+package edu.caltech.cs2.datastructures;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the buildings, waypoints and roads files of a BeaverMapsGraph in parallel.
+ *
+ * The three files are streamed concurrently into plain arrays. The constructor then adds the
+ * vertices (the dictionaries are not thread-safe, so that step is sequential) and calls addRoads,
+ * which splits the road segments into ranges that are resolved and measured in parallel, and then
+ * splits the vertices into ranges so that each worker inserts the out-edges of its own vertices only;
+ * one counting-sort pass hands every worker just the segments that touch its range.
+ * Every adjacency map has exactly one writer and receives its edges in file order, so
+ * no lock is needed and the result is identical to loading the roads sequentially.
+ */
+class GraphLoader {
+    /**
+     * System property that fixes the number of edge partitions (otherwise chosen from the core count).
+     */
+    static final String PARTITIONS_PROPERTY = "beavermaps.loader.partitions";
+    // below this many segments per partition, the fork/join overhead outweighs the work
+    private static final int MIN_SEGMENTS_PER_PARTITION = 20000;
+
+    private final Location[] buildings;
+    private final Location[] waypoints;
+    // each road is the sequence of location ids along it
+    private final long[][] roads;
+
+    GraphLoader(String buildingsFileName, String waypointsFileName, String roadsFileName) {
+        CompletableFuture<Location[]> buildings = CompletableFuture.supplyAsync(() -> readLocations(buildingsFileName));
+        CompletableFuture<Location[]> waypoints = CompletableFuture.supplyAsync(() -> readLocations(waypointsFileName));
+        CompletableFuture<long[][]> roads = CompletableFuture.supplyAsync(() -> readRoads(roadsFileName));
+        try {
+            this.buildings = buildings.join();
+            this.waypoints = waypoints.join();
+            this.roads = roads.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    Location[] buildings() {
+        return this.buildings;
+    }
+
+    Location[] waypoints() {
+        return this.waypoints;
+    }
+
+    private static Location[] readLocations(String filename) {
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(filename)))) {
+            Location[] locations = new Location[1024];
+            int count = 0;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (count == locations.length) {
+                    locations = Arrays.copyOf(locations, 2 * count);
+                }
+                locations[count++] = Location.read(reader);
+            }
+            reader.endArray();
+            return Arrays.copyOf(locations, count);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Could not read " + filename, e);
+        }
+    }
+
+    private static long[][] readRoads(String filename) {
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(filename)))) {
+            long[][] roads = new long[1024][];
+            int count = 0;
+            long[] ids = new long[64];
+            reader.beginArray();
+            while (reader.hasNext()) {
+                int length = 0;
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (length == ids.length) {
+                        ids = Arrays.copyOf(ids, 2 * length);
+                    }
+                    ids[length++] = reader.nextLong();
+                }
+                reader.endArray();
+                if (count == roads.length) {
+                    roads = Arrays.copyOf(roads, 2 * count);
+                }
+                roads[count++] = Arrays.copyOf(ids, length);
+            }
+            reader.endArray();
+            return Arrays.copyOf(roads, count);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Could not read " + filename, e);
+        }
+    }
+
+    /**
+     * Adds both directions of every road segment to the graph, weighted by the distance between its ends.
+     * Every id on a road must already be a vertex of the graph with a Location in locations.
+     * @param adjacency the out-edges of every vertex id, which the edges are added to
+     * @param locations the Location of every vertex
+     */
+    void addRoads(LongObjectMap<LongDoubleMap> adjacency, LongObjectMap<Location> locations) {
+        // read-only views for the workers: an index for every id, and each vertex's location and adjacency
+        long[] ids = adjacency.keys();
+        int n = ids.length;
+        LongIntMap indices = new LongIntMap(n);
+        Location[] locs = new Location[n];
+        LongDoubleMap[] edges = new LongDoubleMap[n];
+        for (int i = 0; i < n; i++) {
+            indices.put(ids[i], i);
+            locs[i] = locations.get(ids[i]);
+            edges[i] = adjacency.get(ids[i]);
+        }
+
+        // segment s of road r is (roads[r][k - 1], roads[r][k]) with s = firstSegment[r] + k - 1
+        int[] firstSegment = new int[this.roads.length + 1];
+        for (int r = 0; r < this.roads.length; r++) {
+            firstSegment[r + 1] = firstSegment[r] + Math.max(0, this.roads[r].length - 1);
+        }
+        int segments = firstSegment[this.roads.length];
+        int[] from = new int[segments];
+        int[] to = new int[segments];
+        double[] distance = new double[segments];
+        int partitions = partitions(segments);
+
+        IntStream.range(0, partitions).parallel().forEach(p -> {
+            int firstRoad = (int) ((long) this.roads.length * p / partitions);
+            int endRoad = (int) ((long) this.roads.length * (p + 1) / partitions);
+            for (int r = firstRoad; r < endRoad; r++) {
+                long[] road = this.roads[r];
+                for (int k = 1; k < road.length; k++) {
+                    int s = firstSegment[r] + k - 1;
+                    from[s] = indexOf(indices, road[k - 1]);
+                    to[s] = indexOf(indices, road[k]);
+                    distance[s] = locs[to[s]].getDistance(locs[from[s]]);
+                }
+            }
+        });
+
+        // partition p owns vertices [n * p / partitions, n * (p + 1) / partitions) and is the only one to
+        // write to their adjacency; segment s puts 2s (the edge into to[s]) and 2s + 1 (the edge into from[s])
+        int[] owner = new int[n];
+        for (int p = 0; p < partitions; p++) {
+            Arrays.fill(owner, (int) ((long) n * p / partitions), (int) ((long) n * (p + 1) / partitions), p);
+        }
+        // counting sort of the puts by owner, which keeps each owner's puts in file order
+        int[] firstPut = new int[partitions + 1];
+        for (int s = 0; s < segments; s++) {
+            firstPut[owner[to[s]] + 1]++;
+            firstPut[owner[from[s]] + 1]++;
+        }
+        for (int p = 0; p < partitions; p++) {
+            firstPut[p + 1] += firstPut[p];
+        }
+        int[] puts = new int[2 * segments];
+        int[] next = Arrays.copyOf(firstPut, partitions);
+        for (int s = 0; s < segments; s++) {
+            puts[next[owner[to[s]]]++] = 2 * s;
+            puts[next[owner[from[s]]]++] = 2 * s + 1;
+        }
+
+        IntStream.range(0, partitions).parallel().forEach(p -> {
+            for (int i = firstPut[p]; i < firstPut[p + 1]; i++) {
+                int s = puts[i] >>> 1;
+                if ((puts[i] & 1) == 0) {
+                    edges[to[s]].put(ids[from[s]], distance[s]);
+                }
+                else {
+                    edges[from[s]].put(ids[to[s]], distance[s]);
+                }
+            }
+        });
+    }
+
+    private static int indexOf(LongIntMap indices, long id) {
+        int index = indices.get(id);
+        if (index < 0) {
+            throw new IllegalArgumentException("Road refers to unknown location " + id);
+        }
+        return index;
+    }
+
+    private static int partitions(int segments) {
+        String configured = System.getProperty(PARTITIONS_PROPERTY);
+        if (configured != null) {
+            return Math.max(1, Integer.parseInt(configured));
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(cores, segments / MIN_SEGMENTS_PER_PARTITION));
+    }
+}
@@ -0,0 +1,184 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary snapshot of a BeaverMapsGraph, so the server can start without parsing JSON.
+ *
+ * The file is columnar, in the order of the graph's CompactGraph:
+ *   header      MAGIC, vertex count n, edge count m, string count
+ *   strings     each as a length-prefixed UTF-8 byte run; names, addresses, amenities and shops
+ *               are interned, so every repeated value is stored (and loaded) once
+ *   vertices    long id[n], double lat[n], double lon[n], byte type[n],
+ *               int name[n], int address[n], int amenity[n], int shop[n] (string indices, -1 for null)
+ *   edges       int offsets[n + 1], int targets[m], double weights[m]
+ * Every number is big-endian. Loading maps the file and bulk-copies each column into an array,
+ * and the CSR columns become the loaded graph's compact graph without being rebuilt.
+ */
+public class GraphSnapshot {
+    private static final int MAGIC = 0x424D5331; // "BMS1"
+    private static final byte WAYPOINT = 0;
+    private static final byte BUILDING = 1;
+    // a vertex that was added by id without a Location
+    private static final byte NO_LOCATION = 2;
+
+    /**
+     * Writes graph to filename.
+     * @param graph the graph to save
+     * @param filename the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(BeaverMapsGraph graph, String filename) throws IOException {
+        CompactGraph g = graph.compactGraph();
+        int n = g.size();
+
+        IDictionary<String, Integer> stringIndex = new ProbingHashDictionary<>();
+        ArrayDeque<String> strings = new ArrayDeque<>();
+        int[][] columns = new int[4][n];
+        for (int i = 0; i < n; i++) {
+            Location loc = g.location(i);
+            String[] values = loc == null ? new String[4] : new String[]{loc.name, loc.address, loc.amenity, loc.shop};
+            for (int c = 0; c < 4; c++) {
+                columns[c][i] = intern(values[c], stringIndex, strings);
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(n);
+            out.writeInt(g.edgeCount());
+            out.writeInt(strings.size());
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            for (int i = 0; i < n; i++) {
+                out.writeLong(g.id(i));
+            }
+            for (int i = 0; i < n; i++) {
+                out.writeDouble(g.location(i) == null ? 0.0 : g.location(i).lat);
+            }
+            for (int i = 0; i < n; i++) {
+                out.writeDouble(g.location(i) == null ? 0.0 : g.location(i).lon);
+            }
+            for (int i = 0; i < n; i++) {
+                Location loc = g.location(i);
+                out.writeByte(loc == null ? NO_LOCATION : loc.type == Location.Type.BUILDING ? BUILDING : WAYPOINT);
+            }
+            for (int[] column : columns) {
+                for (int value : column) {
+                    out.writeInt(value);
+                }
+            }
+
+            for (int i = 0; i <= n; i++) {
+                out.writeInt(i < n ? g.firstEdge(i) : g.edgeCount());
+            }
+            for (int edge = 0; edge < g.edgeCount(); edge++) {
+                out.writeInt(g.target(edge));
+            }
+            for (int edge = 0; edge < g.edgeCount(); edge++) {
+                out.writeDouble(g.weight(edge));
+            }
+        }
+    }
+
+    /**
+     * Returns the index of s in strings, appending it first if it is new (-1 for null).
+     */
+    private static int intern(String s, IDictionary<String, Integer> stringIndex, ArrayDeque<String> strings) {
+        if (s == null) {
+            return -1;
+        }
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            index = strings.size();
+            stringIndex.put(s, index);
+            strings.addBack(s);
+        }
+        return index;
+    }
+
+    /**
+     * Loads a graph saved by write().
+     * @param filename the snapshot file
+     * @return a graph equal to the one that was written
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static BeaverMapsGraph read(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(filename + " is not a BeaverMaps snapshot");
+            }
+            int n = buffer.getInt();
+            int m = buffer.getInt();
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            long[] ids = new long[n];
+            buffer.asLongBuffer().get(ids);
+            skip(buffer, 8L * n);
+            double[] lat = readDoubles(buffer, n);
+            double[] lon = readDoubles(buffer, n);
+            byte[] type = new byte[n];
+            buffer.get(type);
+            int[] name = readInts(buffer, n);
+            int[] address = readInts(buffer, n);
+            int[] amenity = readInts(buffer, n);
+            int[] shop = readInts(buffer, n);
+            int[] offsets = readInts(buffer, n + 1);
+            int[] targets = readInts(buffer, m);
+            double[] weights = readDoubles(buffer, m);
+
+            Location[] locations = new Location[n];
+            for (int i = 0; i < n; i++) {
+                if (type[i] != NO_LOCATION) {
+                    locations[i] = new Location(ids[i], lat[i], lon[i], lookup(strings, name[i]),
+                            lookup(strings, address[i]), lookup(strings, amenity[i]), lookup(strings, shop[i]),
+                            type[i] == BUILDING ? "building" : "waypoint");
+                }
+            }
+            return new BeaverMapsGraph(new CompactGraph(ids, locations, offsets, targets, weights));
+        }
+    }
+
+    private static String lookup(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    private static void skip(ByteBuffer buffer, long bytes) {
+        buffer.position((int) (buffer.position() + bytes));
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        skip(buffer, 4L * count);
+        return values;
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        skip(buffer, 8L * count);
+        return values;
+    }
+}
@@ -0,0 +1,165 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+import edu.caltech.cs2.interfaces.ISet;
+
+/**
+ * A read-only snapshot of a BeaverMapsGraph that any number of threads may query at once.
+ *
+ * The dictionaries behind BeaverMapsGraph are not safe to share: MoveToFrontDictionary.get
+ * reorders its chain on every lookup. A view answers every query from the graph's CompactGraph
+ * instead, whose arrays never change after construction, and routes with a RoutingEngine,
+ * whose search state is per thread. Changing the graph later does not affect an existing view;
+ * call BeaverMapsGraph.view() again to see the changes.
+ */
+public final class GraphView {
+    private final CompactGraph graph;
+    private final RoutingEngine router;
+
+    GraphView(RoutingEngine router) {
+        this.graph = router.graph();
+        this.router = router;
+    }
+
+    /**
+     * @return the compact graph this view reads from
+     */
+    public CompactGraph compactGraph() {
+        return this.graph;
+    }
+
+    /**
+     * @return the routing engine this view routes with
+     */
+    public RoutingEngine router() {
+        return this.router;
+    }
+
+    /**
+     * Returns the Location object corresponding to the provided id
+     * @param id the id of the object to return
+     * @return the location identified by id, or null if there is none
+     */
+    public Location getLocationByID(long id) {
+        int index = this.graph.indexOf(id);
+        return index < 0 ? null : this.graph.location(index);
+    }
+
+    /**
+     * Returns a deque of all the locations with the name locName.
+     * @param locName the name of the locations to return
+     * @return a deque of all location with the name locName
+     */
+    public IDeque<Location> getLocationByName(String locName) {
+        return this.graph.locationsNamed(locName);
+    }
+
+    /**
+     * Returns the closest building to the location (lat, lon)
+     * @param lat the latitude of the location to search near
+     * @param lon the longitute of the location to search near
+     * @return the building closest to (lat, lon)
+     */
+    public Location getClosestBuilding(double lat, double lon) {
+        return this.graph.buildingIndex().nearest(lat, lon);
+    }
+
+    /**
+     * Returns the k closest buildings to the location (lat, lon), nearest first
+     * @param lat the latitude of the location to search near
+     * @param lon the longitude of the location to search near
+     * @param k the number of buildings to return
+     * @return the (at most) k buildings closest to (lat, lon)
+     */
+    public IDeque<Location> getClosestBuildings(double lat, double lon, int k) {
+        return this.graph.buildingIndex().nearest(lat, lon, k);
+    }
+
+    /**
+     * Returns the buildings inside a latitude/longitude box
+     * @param minLat the southern edge of the box
+     * @param minLon the western edge of the box
+     * @param maxLat the northern edge of the box
+     * @param maxLon the eastern edge of the box
+     * @return every building whose coordinates lie in the box (edges included)
+     */
+    public IDeque<Location> getBuildingsInBox(double minLat, double minLon, double maxLat, double maxLon) {
+        return this.graph.buildingIndex().within(minLat, minLon, maxLat, maxLon);
+    }
+
+    /**
+     * Returns a set of locations which are reachable along a path that goes no further than `threshold` feet from start
+     * @param start the location to search around
+     * @param threshold the number of feet in the search radius
+     * @return the reachable locations, including start
+     */
+    public ISet<Location> dfs(Location start, double threshold) {
+        CompactGraph g = this.graph;
+        ISet<Location> reachableLocations = new ChainingHashSet<>();
+        int source = g.indexOf(start.id);
+        if (source < 0) {
+            return reachableLocations;
+        }
+
+        // every vertex is pushed at most once, so the stack never outgrows the vertex count
+        boolean[] visited = new boolean[g.size()];
+        int[] nodeStack = new int[g.size()];
+        int top = 0;
+        nodeStack[top++] = source;
+        visited[source] = true;
+        while (top > 0) {
+            int current = nodeStack[--top];
+            if (start.getDistance(g.location(current)) <= threshold) {
+                reachableLocations.add(g.location(current));
+                for (int edge = g.firstEdge(current); edge < g.endEdge(current); edge++) {
+                    int vertex = g.target(edge);
+                    if (!visited[vertex]) {
+                        visited[vertex] = true;
+                        nodeStack[top++] = vertex;
+                    }
+                }
+            }
+        }
+        return reachableLocations;
+    }
+
+    /**
+     * Returns the buildings within walking distance of start, following roads rather than a straight line
+     * @param start the location to search around
+     * @param distance the maximum walking distance in feet
+     * @return the buildings (other than start) reachable within distance feet, nearest first
+     */
+    public IDeque<Location> isochrone(Location start, double distance) {
+        return this.router.isochrone(start, distance);
+    }
+
+    /**
+     * Finds a shortest path from start to target with the given algorithm.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @param algorithm the search to run
+     * @return the route, whose path is null if target is unreachable
+     */
+    public Route route(Location start, Location target, RoutingEngine.Algorithm algorithm) {
+        return this.router.route(start, target, algorithm);
+    }
+
+    /**
+     * Returns the shortest paths from start to every location (see BeaverMapsGraph.shortestPathTree).
+     * @param start the location to start the paths from
+     * @return the shortest-path tree of start, or null if start is not in the graph
+     */
+    public ShortestPathTree shortestPathTree(Location start) {
+        return this.router.tree(start);
+    }
+
+    /**
+     * Returns the walking distance from every source to every target (see BeaverMapsGraph.distanceMatrix).
+     * @param sources the locations to measure from
+     * @param targets the locations to measure to
+     * @return the sources.length by targets.length distance matrix
+     */
+    public double[][] distanceMatrix(Location[] sources, Location[] targets) {
+        return this.router.distanceMatrix(sources, targets);
+    }
+}
@@ -0,0 +1,123 @@
+package edu.caltech.cs2.datastructures;
+
+/**
+ * A four-ary min-heap of (vertex, priority) pairs stored in parallel primitive arrays.
+ *
+ * Unlike MinFourHeap there is no decreaseKey: a vertex whose distance improves is simply
+ * pushed again, and callers skip entries whose priority is larger than the vertex's
+ * current distance when they are popped. That keeps every operation free of allocation
+ * and hashing, and lets the heap be cleared and reused between searches.
+ */
+public class LazyMinHeap {
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final int DEFAULT_GROWTH = 2;
+
+    private int[] vertices;
+    private double[] priorities;
+    private int size;
+
+    public LazyMinHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LazyMinHeap(int initialCapacity) {
+        this.vertices = new int[Math.max(initialCapacity, 1)];
+        this.priorities = new double[Math.max(initialCapacity, 1)];
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes every entry but keeps the backing arrays.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Adds vertex with the given priority, even if vertex is already in the heap.
+     */
+    public void push(int vertex, double priority) {
+        if (this.size == this.vertices.length) {
+            int[] newVertices = new int[this.size * DEFAULT_GROWTH];
+            double[] newPriorities = new double[this.size * DEFAULT_GROWTH];
+            System.arraycopy(this.vertices, 0, newVertices, 0, this.size);
+            System.arraycopy(this.priorities, 0, newPriorities, 0, this.size);
+            this.vertices = newVertices;
+            this.priorities = newPriorities;
+        }
+
+        // percolate up; parent index is (i - 1) / 4
+        int i = this.size;
+        while (i > 0) {
+            int parent = (i - 1) / 4;
+            if (this.priorities[parent] <= priority) {
+                break;
+            }
+            this.vertices[i] = this.vertices[parent];
+            this.priorities[i] = this.priorities[parent];
+            i = parent;
+        }
+        this.vertices[i] = vertex;
+        this.priorities[i] = priority;
+        this.size++;
+    }
+
+    /**
+     * @return the priority of the smallest entry; the heap must not be empty
+     */
+    public double peekPriority() {
+        return this.priorities[0];
+    }
+
+    /**
+     * @return the vertex of the smallest entry; the heap must not be empty
+     */
+    public int peekVertex() {
+        return this.vertices[0];
+    }
+
+    /**
+     * Removes the smallest entry and returns its vertex; read its priority with
+     * peekPriority() first if it is needed.
+     * @return the vertex of the removed entry
+     */
+    public int pop() {
+        int top = this.vertices[0];
+        this.size--;
+        int lastVertex = this.vertices[this.size];
+        double last = this.priorities[this.size];
+
+        // percolate the last entry down from the root
+        int i = 0;
+        while (true) {
+            int first = 4 * i + 1;
+            if (first >= this.size) {
+                break;
+            }
+            int smallest = first;
+            int end = Math.min(first + 4, this.size);
+            for (int child = first + 1; child < end; child++) {
+                if (this.priorities[child] < this.priorities[smallest]) {
+                    smallest = child;
+                }
+            }
+            if (this.priorities[smallest] >= last) {
+                break;
+            }
+            this.vertices[i] = this.vertices[smallest];
+            this.priorities[i] = this.priorities[smallest];
+            i = smallest;
+        }
+        this.vertices[i] = lastVertex;
+        this.priorities[i] = last;
+        return top;
+    }
+}
@@ -1,7 +1,10 @@
 package edu.caltech.cs2.datastructures;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
+import java.io.IOException;
 import java.util.List;
 
 public class Location {
@@ -59,6 +62,63 @@ public class Location {
         this.address = props[4];
     }
 
+    /**
+     * Reads one location object from a streaming JSON reader, in the format of the *.buildings.json
+     * and *.waypoints.json files. Unknown properties and null values are skipped.
+     * @param reader a reader positioned at the start of a location object
+     * @return the location that was read
+     * @throws IOException if the JSON is malformed or cannot be read
+     */
+    public static Location read(JsonReader reader) throws IOException {
+        long id = 0;
+        double lat = 0;
+        double lon = 0;
+        String name = null;
+        String amenity = null;
+        String shop = null;
+        String type = null;
+        String address = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String property = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (property) {
+                case "id":
+                    id = reader.nextLong();
+                    break;
+                case "lat":
+                    lat = reader.nextDouble();
+                    break;
+                case "lon":
+                    lon = reader.nextDouble();
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "amenity":
+                    amenity = reader.nextString();
+                    break;
+                case "shop":
+                    shop = reader.nextString();
+                    break;
+                case "type":
+                    type = reader.nextString();
+                    break;
+                case "address":
+                    address = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Location(id, lat, lon, name, address, amenity, shop, type == null ? "waypoint" : type);
+    }
+
     public String displayString() {
         String s = this.name;
         if (this.address != null) {
@@ -0,0 +1,205 @@
+package edu.caltech.cs2.datastructures;
+
+/**
+ * A hash map from primitive long keys, such as OSM ids, to primitive doubles, such as edge weights.
+ * It is laid out like LongObjectMap (a long[] of keys and a parallel double[] of values, probed
+ * linearly), so neither keys nor values are ever boxed.
+ *
+ * get, put and remove return the map's missing value (NaN unless the constructor is given another)
+ * where an IDictionary would return null; containsKey tells a stored missing value from an absent key.
+ */
+public class LongDoubleMap {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int MAX_LOAD_PERCENT = 70;
+    // 2^64 / golden ratio
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private final double missingValue;
+    // keys[i] == 0 marks an empty slot; values[i] belongs to keys[i]
+    private long[] keys;
+    private double[] values;
+    private int mask;
+    // 64 - log2(keys.length): the home slot is the top bits of the mixed key
+    private int shift;
+    // the number of keys, key 0 included
+    private int size;
+    private boolean hasZeroKey;
+    private double zeroValue;
+
+    public LongDoubleMap() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize the number of keys the map can hold before its first resize
+     */
+    public LongDoubleMap(int expectedSize) {
+        this(expectedSize, Double.NaN);
+    }
+
+    /**
+     * @param expectedSize the number of keys the map can hold before its first resize
+     * @param missingValue the value get, put and remove return for a key that is not in the map
+     */
+    public LongDoubleMap(int expectedSize, double missingValue) {
+        this.missingValue = missingValue;
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < (1 << 30) && (long) expectedSize * 100 > (long) capacity * MAX_LOAD_PERCENT) {
+            capacity *= 2;
+        }
+        this.allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new double[capacity];
+        this.mask = capacity - 1;
+        this.shift = Long.numberOfLeadingZeros(capacity - 1L);
+    }
+
+    private int home(long key) {
+        return (int) ((key * MIX) >>> this.shift);
+    }
+
+    /**
+     * @return the slot holding key (which must not be 0), or the empty slot that ends its run if it is absent
+     */
+    private int slot(long key) {
+        long[] keys = this.keys;
+        int i = this.home(key);
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & this.mask;
+        }
+        return i;
+    }
+
+    public double get(long key) {
+        if (key == 0) {
+            return this.hasZeroKey ? this.zeroValue : this.missingValue;
+        }
+        int i = this.slot(key);
+        return this.keys[i] != 0 ? this.values[i] : this.missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        return key == 0 ? this.hasZeroKey : this.keys[this.slot(key)] != 0;
+    }
+
+    /**
+     * @return the previous value of key, or the missing value if it was not in the map
+     */
+    public double put(long key, double value) {
+        if (key == 0) {
+            double previous = this.hasZeroKey ? this.zeroValue : this.missingValue;
+            if (!this.hasZeroKey) {
+                this.hasZeroKey = true;
+                this.size++;
+            }
+            this.zeroValue = value;
+            return previous;
+        }
+        int i = this.slot(key);
+        if (this.keys[i] != 0) {
+            double previous = this.values[i];
+            this.values[i] = value;
+            return previous;
+        }
+        if ((long) (this.size + 1) * 100 > (long) this.keys.length * MAX_LOAD_PERCENT) {
+            this.resize(2 * this.keys.length);
+            i = this.slot(key);
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.size++;
+        return this.missingValue;
+    }
+
+    /**
+     * @return the value key had, or the missing value if it was not in the map
+     */
+    public double remove(long key) {
+        if (key == 0) {
+            if (!this.hasZeroKey) {
+                return this.missingValue;
+            }
+            this.hasZeroKey = false;
+            this.size--;
+            return this.zeroValue;
+        }
+        int hole = this.slot(key);
+        if (this.keys[hole] == 0) {
+            return this.missingValue;
+        }
+        double previous = this.values[hole];
+        // pull back every later key of the run that may sit in the hole without passing its home slot
+        for (int i = (hole + 1) & this.mask; this.keys[i] != 0; i = (i + 1) & this.mask) {
+            int home = this.home(this.keys[i]);
+            if (((i - home) & this.mask) >= ((i - hole) & this.mask)) {
+                this.keys[hole] = this.keys[i];
+                this.values[hole] = this.values[i];
+                hole = i;
+            }
+        }
+        this.keys[hole] = 0;
+        this.size--;
+        return previous;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        double[] oldValues = this.values;
+        this.allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = this.slot(oldKeys[j]);
+                this.keys[i] = oldKeys[j];
+                this.values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return a new array of every key in the map, in no particular order
+     */
+    public long[] keys() {
+        long[] keys = new long[this.size];
+        int k = 0;
+        if (this.hasZeroKey) {
+            k++;
+        }
+        for (long key : this.keys) {
+            if (key != 0) {
+                keys[k++] = key;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Calls action with every key and its value, in no particular order.
+     */
+    public void forEach(EntryConsumer action) {
+        if (this.hasZeroKey) {
+            action.accept(0, this.zeroValue);
+        }
+        long[] keys = this.keys;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], this.values[i]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, double value);
+    }
+}
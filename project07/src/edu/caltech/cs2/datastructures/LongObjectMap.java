@@ -0,0 +1,224 @@
+package edu.caltech.cs2.datastructures;
+
+import java.util.function.LongFunction;
+
+/**
+ * A hash map from primitive long keys, such as OSM ids, to objects. Unlike an IDictionary<Long, V>,
+ * it never boxes a key, and it stores no entry or chain objects: just a long[] of keys and a
+ * parallel array of values.
+ *
+ * The table works like ProbingHashDictionary's: its length is a power of two, a key's home slot is
+ * the top bits of the key times a 64-bit golden-ratio constant, collisions probe linearly, and
+ * remove shifts the rest of the run back instead of leaving a tombstone. Key 0 marks an empty slot,
+ * so the value of key 0 is kept in a field of its own.
+ *
+ * Values may not be null; get returns null for a missing key.
+ */
+public class LongObjectMap<V> {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int MAX_LOAD_PERCENT = 70;
+    // 2^64 / golden ratio
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    // keys[i] == 0 marks an empty slot; values[i] belongs to keys[i]
+    private long[] keys;
+    private V[] values;
+    private int mask;
+    // 64 - log2(keys.length): the home slot is the top bits of the mixed key
+    private int shift;
+    // the number of keys, key 0 included
+    private int size;
+    // the value of key 0, or null if it isn't in the map
+    private V zeroValue;
+
+    public LongObjectMap() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize the number of keys the map can hold before its first resize
+     */
+    public LongObjectMap(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < (1 << 30) && (long) expectedSize * 100 > (long) capacity * MAX_LOAD_PERCENT) {
+            capacity *= 2;
+        }
+        this.allocate(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = (V[]) new Object[capacity];
+        this.mask = capacity - 1;
+        this.shift = Long.numberOfLeadingZeros(capacity - 1L);
+    }
+
+    private int home(long key) {
+        return (int) ((key * MIX) >>> this.shift);
+    }
+
+    /**
+     * @return the slot holding key (which must not be 0), or the empty slot that ends its run if it is absent
+     */
+    private int slot(long key) {
+        long[] keys = this.keys;
+        int i = this.home(key);
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & this.mask;
+        }
+        return i;
+    }
+
+    public V get(long key) {
+        if (key == 0) {
+            return this.zeroValue;
+        }
+        return this.values[this.slot(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * @return the previous value of key, or null if it was not in the map
+     */
+    public V put(long key, V value) {
+        if (key == 0) {
+            V previous = this.zeroValue;
+            this.zeroValue = value;
+            if (previous == null) {
+                this.size++;
+            }
+            return previous;
+        }
+        int i = this.slot(key);
+        V previous = this.values[i];
+        if (previous != null) {
+            this.values[i] = value;
+            return previous;
+        }
+        this.insert(i, key, value);
+        return null;
+    }
+
+    /**
+     * @return the value of key, which is computed by mappingFunction and added first if key was absent
+     * (unless it computes null)
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        V value = key == 0 ? this.zeroValue : this.values[this.slot(key)];
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            if (value != null) {
+                this.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Adds a key that is absent at the empty slot i returned by slot(key), growing the table first if it
+     * would get too full.
+     */
+    private void insert(int i, long key, V value) {
+        if ((long) (this.size + 1) * 100 > (long) this.keys.length * MAX_LOAD_PERCENT) {
+            this.resize(2 * this.keys.length);
+            i = this.slot(key);
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.size++;
+    }
+
+    /**
+     * @return the value key had, or null if it was not in the map
+     */
+    public V remove(long key) {
+        if (key == 0) {
+            V previous = this.zeroValue;
+            if (previous != null) {
+                this.zeroValue = null;
+                this.size--;
+            }
+            return previous;
+        }
+        int hole = this.slot(key);
+        V previous = this.values[hole];
+        if (previous == null) {
+            return null;
+        }
+        // pull back every later key of the run that may sit in the hole without passing its home slot
+        for (int i = (hole + 1) & this.mask; this.keys[i] != 0; i = (i + 1) & this.mask) {
+            int home = this.home(this.keys[i]);
+            if (((i - home) & this.mask) >= ((i - hole) & this.mask)) {
+                this.keys[hole] = this.keys[i];
+                this.values[hole] = this.values[i];
+                hole = i;
+            }
+        }
+        this.keys[hole] = 0;
+        this.values[hole] = null;
+        this.size--;
+        return previous;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        V[] oldValues = this.values;
+        this.allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = this.slot(oldKeys[j]);
+                this.keys[i] = oldKeys[j];
+                this.values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return a new array of every key in the map, in no particular order
+     */
+    public long[] keys() {
+        long[] keys = new long[this.size];
+        int k = 0;
+        if (this.zeroValue != null) {
+            k++;
+        }
+        for (long key : this.keys) {
+            if (key != 0) {
+                keys[k++] = key;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Calls action with every key and its value, in no particular order.
+     */
+    public void forEach(EntryConsumer<? super V> action) {
+        if (this.zeroValue != null) {
+            action.accept(0, this.zeroValue);
+        }
+        long[] keys = this.keys;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], this.values[i]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+}
@@ -4,6 +4,9 @@ import edu.caltech.cs2.interfaces.ICollection;
 import edu.caltech.cs2.interfaces.IDictionary;
 
 import java.util.Iterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public class MoveToFrontDictionary<K, V> implements IDictionary<K,V> {
     // fields for dictionary
@@ -39,8 +42,8 @@ public class MoveToFrontDictionary<K, V> implements IDictionary<K,V> {
 
     @Override
     public V remove(K key) {
-        // if key doesn't exist, return null
-        if (!this.containsKey(key)) {
+        // if the dictionary is empty, there is nothing to remove
+        if (this.head == null) {
             return null;
         }
 
@@ -77,7 +80,7 @@ public class MoveToFrontDictionary<K, V> implements IDictionary<K,V> {
             currNode = currNode.next;
         }
 
-        // shouldn't get here?
+        // if we get here, means that the key isn't in the dictionary
         return null;
     }
 
@@ -99,7 +102,7 @@ public class MoveToFrontDictionary<K, V> implements IDictionary<K,V> {
 
     @Override
     public boolean containsKey(K key) {
-        return this.get(key) != null;
+        return this.peek(key) != null;
     }
 
     @Override
@@ -161,6 +164,62 @@ public class MoveToFrontDictionary<K, V> implements IDictionary<K,V> {
     }
 
     public V get(K key) {
+        Node<K, V> foundNode = this.moveToFront(key);
+        return foundNode == null ? null : foundNode.value;
+    }
+
+    @Override
+    public V peek(K key) {
+        // same walk as get, but leave the found node where it is
+        for (Node<K, V> currNode = this.head; currNode != null; currNode = currNode.next) {
+            if (currNode.key.equals(key)) {
+                return currNode.value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        // one walk: either the key is found and moved to the front, or it goes in at the front
+        Node<K, V> foundNode = this.moveToFront(key);
+        if (foundNode != null) {
+            return foundNode.value;
+        }
+        V value = mappingFunction.apply(key);
+        if (value != null) {
+            this.head = new Node<>(key, value, this.head);
+            this.size++;
+        }
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Node<K, V> foundNode = this.moveToFront(key);
+        if (foundNode == null) {
+            this.head = new Node<>(key, value, this.head);
+            this.size++;
+            return value;
+        }
+        V newValue = remappingFunction.apply(foundNode.value, value);
+        if (newValue == null) {
+            // the found node is the head now, so removing it is just skipping over it
+            this.head = foundNode.next;
+            this.size--;
+        }
+        else {
+            foundNode.value = newValue;
+        }
+        return newValue;
+    }
+
+    /**
+     * Finds the node with key, and moves it to the front of the list.
+     *
+     * @return the node with key, now the head, or null if the key isn't in the dictionary
+     */
+    private Node<K, V> moveToFront(K key) {
         // check head is not null
         if (this.head == null) {
             return null;
@@ -168,18 +227,15 @@ public class MoveToFrontDictionary<K, V> implements IDictionary<K,V> {
 
         // check if key is in head
         if (this.head.key.equals(key)) {
-            return this.head.value;
+            return this.head;
         }
 
         // iterate thru nodes of linked list, starting w/ node after head
         Node<K, V> currNode = this.head;
 
-        while (currNode.next != null) { // might want to check for size? *******
+        while (currNode.next != null) {
             // if the next node is the node we're looking for...
             if (currNode.next.key.equals(key)) {
-                // return the value at the next node
-                V value = currNode.next.value;
-
                 // name this found node
                 Node<K, V> foundNode = currNode.next;
 
@@ -190,7 +246,7 @@ public class MoveToFrontDictionary<K, V> implements IDictionary<K,V> {
                 foundNode.next = this.head;
                 this.head = foundNode;
 
-                return value;
+                return foundNode;
             }
 
             // go to next node
@@ -200,9 +256,60 @@ public class MoveToFrontDictionary<K, V> implements IDictionary<K,V> {
         return null;
     }
 
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Node<K, V> currNode = this.head; currNode != null; currNode = currNode.next) {
+            action.accept(currNode.key, currNode.value);
+        }
+    }
+
     @Override
     public Iterator<K> iterator() {
-        return this.keys().iterator();
+        return new NodeIterator<K>() {
+            @Override
+            public K next() {
+                return this.nextNode().key;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<V> valueIterator() {
+        return new NodeIterator<V>() {
+            @Override
+            public V next() {
+                return this.nextNode().value;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> entryIterator() {
+        return new NodeIterator<Entry<K, V>>() {
+            @Override
+            public Entry<K, V> next() {
+                Node<K, V> node = this.nextNode();
+                return new Entry<>(node.key, node.value);
+            }
+        };
+    }
+
+    // walks the linked list in place instead of copying it; a get of a key already returned moves
+    // its node to the front, behind the iterator, so it doesn't disturb the walk
+    private abstract class NodeIterator<T> implements Iterator<T> {
+        // the node to return next
+        private Node<K, V> nextNode = MoveToFrontDictionary.this.head;
+
+        @Override
+        public boolean hasNext() {
+            return this.nextNode != null;
+        }
+
+        protected Node<K, V> nextNode() {
+            Node<K, V> node = this.nextNode;
+            this.nextNode = node.next;
+            return node;
+        }
     }
 
 }
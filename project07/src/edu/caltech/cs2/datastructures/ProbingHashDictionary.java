@@ -0,0 +1,307 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.ICollection;
+import edu.caltech.cs2.interfaces.IDeque;
+import edu.caltech.cs2.interfaces.IDictionary;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A hash dictionary that keeps its keys and values in two parallel arrays and resolves
+ * collisions by linear probing, instead of allocating a chain per bucket like
+ * ChainingHashDictionary does.
+ *
+ * The table length is a power of two and hash codes are spread by a multiplicative mix, so a
+ * slot is a multiply, a shift and a mask (no modulo), and hash codes that differ only in their
+ * high bits (such as Long ids) still land far apart. A lookup scans forward from the key's home
+ * slot until it finds the key or an empty slot; the table is kept at most MAX_LOAD_PERCENT full
+ * so those runs stay short. remove shifts the rest of the run back into the hole rather than
+ * leaving a tombstone, so lookups never slow down after many removals.
+ */
+public class ProbingHashDictionary<K, V> implements IDictionary<K, V> {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int MAX_LOAD_PERCENT = 70;
+    // 2^32 / golden ratio; multiplying by it scatters consecutive hash codes across the table
+    private static final int MIX = 0x9E3779B9;
+
+    // keys[i] == null marks an empty slot; values[i] belongs to keys[i]
+    private K[] keys;
+    private V[] values;
+    private int mask;
+    private int size;
+
+    public ProbingHashDictionary() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize the number of keys the dictionary can hold before its first resize
+     */
+    @SuppressWarnings("unchecked")
+    public ProbingHashDictionary(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < Integer.MAX_VALUE / 2 && (long) expectedSize * 100 > (long) capacity * MAX_LOAD_PERCENT) {
+            capacity *= 2;
+        }
+        this.keys = (K[]) new Object[capacity];
+        this.values = (V[]) new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return the home slot of key: its spread hash code masked to the table
+     */
+    private int home(Object key) {
+        int h = key.hashCode() * MIX;
+        return (h ^ (h >>> 16)) & this.mask;
+    }
+
+    /**
+     * @return the slot holding key, or -1 if it is absent
+     */
+    private int find(Object key) {
+        int i = this.slot(key);
+        return this.keys[i] == null ? -1 : i;
+    }
+
+    @Override
+    public V get(K key) {
+        int slot = this.find(key);
+        return slot < 0 ? null : this.values[slot];
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int i = this.slot(key);
+        if (this.keys[i] != null) {
+            V previous = this.values[i];
+            this.values[i] = value;
+            return previous;
+        }
+        this.insert(i, key, value);
+        return null;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        int i = this.slot(key);
+        if (this.keys[i] != null) {
+            return this.values[i];
+        }
+        V value = mappingFunction.apply(key);
+        if (value != null) {
+            this.insert(i, key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        int i = this.slot(key);
+        if (this.keys[i] == null) {
+            this.insert(i, key, value);
+            return value;
+        }
+        V newValue = remappingFunction.apply(this.values[i], value);
+        if (newValue == null) {
+            this.remove(key);
+        }
+        else {
+            this.values[i] = newValue;
+        }
+        return newValue;
+    }
+
+    /**
+     * @return the slot holding key, or the empty slot that ends its run if it is absent
+     */
+    private int slot(Object key) {
+        K[] keys = this.keys;
+        int i = this.home(key);
+        while (keys[i] != null && keys[i] != key && !keys[i].equals(key)) {
+            i = (i + 1) & this.mask;
+        }
+        return i;
+    }
+
+    /**
+     * Adds a key that is absent at the empty slot i returned by slot(key), growing the table first if it
+     * would get too full.
+     */
+    private void insert(int i, K key, V value) {
+        if ((long) (this.size + 1) * 100 > (long) this.keys.length * MAX_LOAD_PERCENT) {
+            this.resize(2 * this.keys.length);
+            i = this.slot(key);
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.size++;
+    }
+
+    @Override
+    public V remove(K key) {
+        int hole = this.find(key);
+        if (hole < 0) {
+            return null;
+        }
+        V previous = this.values[hole];
+        // pull back every later key of the run that may sit in the hole without passing its home slot
+        for (int i = (hole + 1) & this.mask; this.keys[i] != null; i = (i + 1) & this.mask) {
+            int home = this.home(this.keys[i]);
+            if (((i - home) & this.mask) >= ((i - hole) & this.mask)) {
+                this.keys[hole] = this.keys[i];
+                this.values[hole] = this.values[i];
+                hole = i;
+            }
+        }
+        this.keys[hole] = null;
+        this.values[hole] = null;
+        this.size--;
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+        K[] oldKeys = this.keys;
+        V[] oldValues = this.values;
+        this.keys = (K[]) new Object[capacity];
+        this.values = (V[]) new Object[capacity];
+        this.mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = this.home(oldKeys[j]);
+                while (this.keys[i] != null) {
+                    i = (i + 1) & this.mask;
+                }
+                this.keys[i] = oldKeys[j];
+                this.values[i] = oldValues[j];
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return this.find(key) >= 0;
+    }
+
+    /**
+     * @param value to check
+     * @return true if the dictionary contains a key-value pair with
+     * this value, and false otherwise
+     */
+    @Override
+    public boolean containsValue(V value) {
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != null && (value == null ? this.values[i] == null : value.equals(this.values[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of key-value pairs in the dictionary
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public ICollection<K> keys() {
+        IDeque<K> keys = new ArrayDeque<>(Math.max(1, this.size));
+        for (K key : this.keys) {
+            if (key != null) {
+                keys.addBack(key);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public ICollection<V> values() {
+        IDeque<V> values = new ArrayDeque<>(Math.max(1, this.size));
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != null) {
+                values.addBack(this.values[i]);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        K[] keys = this.keys;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], this.values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return An iterator for all keys in the dictionary
+     */
+    @Override
+    public Iterator<K> iterator() {
+        return new SlotIterator<K>() {
+            @Override
+            public K next() {
+                return ProbingHashDictionary.this.keys[this.nextSlot()];
+            }
+        };
+    }
+
+    @Override
+    public Iterator<V> valueIterator() {
+        return new SlotIterator<V>() {
+            @Override
+            public V next() {
+                return ProbingHashDictionary.this.values[this.nextSlot()];
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> entryIterator() {
+        return new SlotIterator<Entry<K, V>>() {
+            @Override
+            public Entry<K, V> next() {
+                int slot = this.nextSlot();
+                return new Entry<>(ProbingHashDictionary.this.keys[slot], ProbingHashDictionary.this.values[slot]);
+            }
+        };
+    }
+
+    // walks the table in place instead of copying the keys out of it
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        // the next occupied slot, or keys.length once there are none left
+        private int slot = this.skipEmpty(0);
+
+        private int skipEmpty(int slot) {
+            K[] keys = ProbingHashDictionary.this.keys;
+            while (slot < keys.length && keys[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.slot < ProbingHashDictionary.this.keys.length;
+        }
+
+        protected int nextSlot() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int slot = this.slot;
+            this.slot = this.skipEmpty(slot + 1);
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+
+/**
+ * The answer to a routing query: the path itself (null if the target is unreachable),
+ * its length in feet, and how many vertices the search settled to find it.
+ */
+public class Route {
+    public final IDeque<Location> path;
+    public final double length;
+    public final int settled;
+
+    public Route(IDeque<Location> path, double length, int settled) {
+        this.path = path;
+        this.length = length;
+        this.settled = settled;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + (this.path == null ? "no path" : this.path.size() + " locations") + ", "
+                + this.length + " ft, " + this.settled + " settled)";
+    }
+}
@@ -0,0 +1,223 @@
+package edu.caltech.cs2.datastructures;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache of values computed for (start, target) pairs of a BeaverMapsGraph,
+ * such as routes and their rendered responses.
+ *
+ * Entries are split over SEGMENTS independently locked segments by key hash, and each segment
+ * evicts its least recently used entries once it holds more than its share of the entry or byte
+ * budget. The byte weight of an entry is whatever the caller passes to put.
+ * The cache remembers the graph's version() and empties itself the first time it is used after
+ * a vertex or edge has been added or removed, so it never returns a value computed for an older graph.
+ * (Like the graph itself, this assumes the graph is not changed while it is being queried.)
+ * @param <V> the type of the cached values
+ */
+public class RouteCache<V> {
+    private static final int SEGMENTS = 16;
+
+    private final BeaverMapsGraph graph;
+    private final Segment<V>[] segments;
+    private final int maxEntriesPerSegment;
+    private final long maxBytesPerSegment;
+    private volatile int version;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private static class Key {
+        final long start;
+        final long target;
+
+        Key(long start, long target) {
+            this.start = start;
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.start == other.start && this.target == other.target;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.start) * 31 + Long.hashCode(this.target);
+        }
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long bytes;
+
+        Entry(V value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private static class Segment<V> {
+        // access order, so iteration starts at the least recently used entry
+        final LinkedHashMap<Key, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+        long bytes;
+    }
+
+    /**
+     * @param graph the graph whose routes are cached
+     * @param maxEntries the most entries the cache holds
+     * @param maxBytes the most bytes (as reported to put) the cache holds
+     */
+    public RouteCache(BeaverMapsGraph graph, int maxEntries, long maxBytes) {
+        this.graph = graph;
+        this.version = graph.version();
+        @SuppressWarnings("unchecked")
+        Segment<V>[] segments = (Segment<V>[]) new Segment<?>[SEGMENTS];
+        this.segments = segments;
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment<>();
+        }
+        this.maxEntriesPerSegment = Math.max(1, maxEntries / SEGMENTS);
+        this.maxBytesPerSegment = Math.max(1, maxBytes / SEGMENTS);
+    }
+
+    private Segment<V> segment(Key key) {
+        int h = key.hashCode();
+        return this.segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Empties the cache if the graph has changed since it was filled.
+     */
+    private void checkVersion() {
+        if (this.graph.version() != this.version) {
+            synchronized (this) {
+                if (this.graph.version() != this.version) {
+                    this.clear();
+                    this.invalidations.increment();
+                    this.version = this.graph.version();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value cached for (start, target) and marks it as recently used.
+     * @param start the id of the start location
+     * @param target the id of the target location
+     * @return the cached value, or null if there is none
+     */
+    public V get(long start, long target) {
+        this.checkVersion();
+        Key key = new Key(start, target);
+        Segment<V> segment = this.segment(key);
+        Entry<V> entry;
+        synchronized (segment) {
+            entry = segment.entries.get(key);
+        }
+        if (entry == null) {
+            this.misses.increment();
+            return null;
+        }
+        this.hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Caches value for (start, target), evicting least recently used entries to stay within budget.
+     * @param start the id of the start location
+     * @param target the id of the target location
+     * @param value the value to cache
+     * @param bytes the memory the value takes up
+     */
+    public void put(long start, long target, V value, long bytes) {
+        this.checkVersion();
+        Key key = new Key(start, target);
+        Segment<V> segment = this.segment(key);
+        synchronized (segment) {
+            Entry<V> old = segment.entries.put(key, new Entry<>(value, bytes));
+            segment.bytes += bytes - (old == null ? 0 : old.bytes);
+            Iterator<Map.Entry<Key, Entry<V>>> eldest = segment.entries.entrySet().iterator();
+            while (segment.entries.size() > this.maxEntriesPerSegment || segment.bytes > this.maxBytesPerSegment) {
+                Map.Entry<Key, Entry<V>> e = eldest.next();
+                segment.bytes -= e.getValue().bytes;
+                eldest.remove();
+                this.evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes every entry (the hit, miss and eviction counts are kept).
+     */
+    public void clear() {
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the total bytes of the cached entries
+     */
+    public long bytes() {
+        long bytes = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                bytes += segment.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    public long hits() {
+        return this.hits.sum();
+    }
+
+    public long misses() {
+        return this.misses.sum();
+    }
+
+    public long evictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return the number of times the cache was emptied because the graph changed
+     */
+    public long invalidations() {
+        return this.invalidations.sum();
+    }
+
+    /**
+     * @return the size and counters of this cache as a JSON object
+     */
+    public String stats() {
+        return "{\"entries\": " + this.size() + ", \"bytes\": " + this.bytes() + ", \"hits\": " + this.hits()
+                + ", \"misses\": " + this.misses() + ", \"evictions\": " + this.evictions()
+                + ", \"invalidations\": " + this.invalidations() + "}";
+    }
+}
@@ -0,0 +1,629 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Point-to-point shortest paths over a CompactGraph.
+ *
+ * Only discovered vertices are pushed onto the heap, the search stops as soon as the target
+ * is settled, and distances/parents live in primitive arrays indexed by dense vertex index.
+ * Those arrays are allocated once per thread and reused by every query: each query bumps an
+ * epoch and a slot only counts as initialized when its stamp equals the current epoch, so
+ * starting a search costs O(1) instead of O(V).
+ *
+ * Every search except CH runs on the graph's ChainContraction, where each run of degree-2
+ * waypoints between two intersections is a single edge: a route leaves its start through the
+ * ends of the start's chain, and its reduced path is expanded back into every waypoint on the
+ * way. CH searches the full graph, since its hierarchy already contracts those waypoints first.
+ */
+public class RoutingEngine {
+    /**
+     * The search strategies an engine can run.
+     * ASTAR orders the search by distance so far plus the great-circle distance to the target
+     * (Location.getDistance). That bound is admissible and consistent because every road edge
+     * is weighted by the great-circle distance between its endpoints; it is not valid on graphs
+     * whose weights can be shorter than that.
+     * BIDIRECTIONAL grows a forward search from the start and a backward search (over in-edges)
+     * from the target, alternating on the smaller frontier, and stops once the two heap minima
+     * sum to at least the best start-target distance seen through any vertex reached by both.
+     * CH runs an upward bidirectional search on the engine's ContractionHierarchy, building
+     * the hierarchy on first use unless one was loaded with setHierarchy.
+     */
+    public enum Algorithm {
+        DIJKSTRA,
+        ASTAR,
+        BIDIRECTIONAL,
+        CH;
+    }
+
+    // shrinks the A* bound a hair so floating-point rounding can never make it overestimate
+    private static final double HEURISTIC_SCALE = 1 - 1e-9;
+    private static final int TREE_CACHE_SIZE = 8;
+    // distance-matrix rows computed by one fork/join task without splitting further
+    private static final int MATRIX_ROWS_PER_TASK = 4;
+
+    private final CompactGraph graph;
+    private final ChainContraction chains;
+    private final ThreadLocal<SearchScratch> scratch;
+    // state of the backward half of a bidirectional search
+    private final ThreadLocal<SearchScratch> reverseScratch;
+    private volatile ContractionHierarchy hierarchy;
+    // the most recently used shortest-path trees by start id; each one holds two arrays of the graph's size
+    private final LinkedHashMap<Long, ShortestPathTree> trees = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ShortestPathTree> eldest) {
+            return this.size() > TREE_CACHE_SIZE;
+        }
+    };
+
+    public RoutingEngine(CompactGraph graph) {
+        this.graph = graph;
+        this.chains = new ChainContraction(graph);
+        int size = this.chains.reduced().size();
+        this.scratch = ThreadLocal.withInitial(() -> new SearchScratch(size));
+        this.reverseScratch = ThreadLocal.withInitial(() -> new SearchScratch(size));
+    }
+
+    /**
+     * Per-thread search state. A slot's distance and parent are only meaningful while
+     * stamp[v] == epoch; everything else reads as "unreached".
+     */
+    static class SearchScratch {
+        final double[] distance;
+        final int[] parent;
+        final int[] stamp;
+        // A* lower bound to the target, valid under the same stamp as distance
+        final double[] bound;
+        final LazyMinHeap heap;
+        // the chain ends a search starts from and ends at (see ChainContraction.departures)
+        final int[] departure = new int[2];
+        final double[] departureDistance = new double[2];
+        final int[] arrival = new int[2];
+        final double[] arrivalDistance = new double[2];
+        int epoch;
+
+        SearchScratch(int size) {
+            this.distance = new double[size];
+            this.parent = new int[size];
+            this.stamp = new int[size];
+            this.bound = new double[size];
+            this.heap = new LazyMinHeap();
+            this.epoch = 0;
+        }
+
+        /**
+         * Invalidates every slot in O(1) (O(V) once every 2^31 queries when the epoch wraps).
+         */
+        void reset() {
+            this.heap.clear();
+            this.epoch++;
+            if (this.epoch == Integer.MAX_VALUE) {
+                Arrays.fill(this.stamp, 0);
+                this.epoch = 1;
+            }
+        }
+
+        boolean reached(int v) {
+            return this.stamp[v] == this.epoch;
+        }
+
+        double distance(int v) {
+            return this.stamp[v] == this.epoch ? this.distance[v] : Double.POSITIVE_INFINITY;
+        }
+
+        void set(int v, double d, int p) {
+            this.stamp[v] = this.epoch;
+            this.distance[v] = d;
+            this.parent[v] = p;
+        }
+    }
+
+    public CompactGraph graph() {
+        return this.graph;
+    }
+
+    /**
+     * @return the contraction of this engine's graph that its searches run on
+     */
+    public ChainContraction chains() {
+        return this.chains;
+    }
+
+    /**
+     * Returns the contraction hierarchy used by Algorithm.CH, building it if none has been set.
+     * @return the contraction hierarchy of this engine's graph
+     */
+    public ContractionHierarchy hierarchy() {
+        ContractionHierarchy h = this.hierarchy;
+        if (h == null) {
+            synchronized (this) {
+                h = this.hierarchy;
+                if (h == null) {
+                    h = ContractionHierarchy.build(this.graph);
+                    this.hierarchy = h;
+                }
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Uses a precomputed (e.g., loaded from disk) contraction hierarchy for Algorithm.CH.
+     * @param hierarchy a hierarchy built for this engine's graph
+     * @throws IllegalArgumentException if hierarchy belongs to a different graph
+     */
+    public void setHierarchy(ContractionHierarchy hierarchy) {
+        if (hierarchy.graph() != this.graph) {
+            throw new IllegalArgumentException("Hierarchy was built for a different graph");
+        }
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Returns a shortest path (i.e., a deque of vertices) between the start
+     * and target locations (including the start and target locations).
+     * As in BeaverMapsGraph.dijkstra, buildings other than the target are never passed through.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @return a shortest path between start and target, or null if there is none
+     */
+    public IDeque<Location> route(Location start, Location target) {
+        return this.route(start, target, Algorithm.DIJKSTRA).path;
+    }
+
+    /**
+     * Finds a shortest path from start to target with the given algorithm.
+     * @param start the location to start the path from
+     * @param target the location to end the path at
+     * @param algorithm the search strategy to use
+     * @return the path (null if there is none), its length and the number of settled vertices
+     */
+    public Route route(Location start, Location target, Algorithm algorithm) {
+        if (algorithm == Algorithm.CH) {
+            return this.hierarchy().route(start, target);
+        }
+        if (start.equals(target)) {
+            LinkedDeque<Location> path = new LinkedDeque<>();
+            path.add(start);
+            return new Route(path, 0.0, 0);
+        }
+        int source = this.graph.indexOf(start.id);
+        int sink = this.graph.indexOf(target.id);
+        if (source < 0 || sink < 0) {
+            return new Route(null, Double.POSITIVE_INFINITY, 0);
+        }
+
+        if (algorithm == Algorithm.BIDIRECTIONAL) {
+            return this.bidirectional(source, sink);
+        }
+
+        boolean astar = algorithm == Algorithm.ASTAR;
+        CompactGraph reduced = this.chains.reduced();
+        int sourceVertex = this.chains.reducedIndex(source);
+        int sinkVertex = this.chains.reducedIndex(sink);
+        SearchScratch s = this.scratch.get();
+        s.reset();
+        int departures = this.chains.departures(source, s.departure, s.departureDistance);
+        int arrivals = this.chains.arrivals(sink, s.arrival, s.arrivalDistance);
+        for (int i = 0; i < departures; i++) {
+            int vertex = s.departure[i];
+            double d = s.departureDistance[i];
+            if ((vertex != sourceVertex && vertex != sinkVertex && reduced.isBuilding(vertex)) || d >= s.distance(vertex)) {
+                continue;
+            }
+            s.set(vertex, d, -1);
+            s.bound[vertex] = astar ? this.bound(vertex, target) : 0.0;
+            s.heap.push(vertex, d + s.bound[vertex]);
+        }
+        // the shortest way found so far: along the chain when both ends are on the same one, else through an arrival
+        double best = this.chains.alongChain(source, sink);
+        int bestSide = -1;
+        int settled = 0;
+
+        // no vertex left on the heap can lead to a shorter route once its priority (a lower bound) reaches best
+        while (!s.heap.isEmpty() && s.heap.peekPriority() < best) {
+            double priority = s.heap.peekPriority();
+            int vertex = s.heap.pop();
+            double d = s.distance[vertex];
+            if (priority > d + s.bound[vertex]) {
+                // stale entry left behind by a later improvement
+                continue;
+            }
+            settled++;
+            for (int i = 0; i < arrivals; i++) {
+                if (s.arrival[i] == vertex && d + s.arrivalDistance[i] < best) {
+                    best = d + s.arrivalDistance[i];
+                    bestSide = i;
+                }
+            }
+            if (vertex == sinkVertex) {
+                break;
+            }
+            for (int edge = reduced.firstEdge(vertex); edge < reduced.endEdge(vertex); edge++) {
+                int neighbor = reduced.target(edge);
+                if (neighbor != sinkVertex && reduced.isBuilding(neighbor)) {
+                    continue;
+                }
+                double potentialDistance = d + reduced.weight(edge);
+                if (!s.reached(neighbor)) {
+                    s.set(neighbor, potentialDistance, vertex);
+                    s.bound[neighbor] = astar ? this.bound(neighbor, target) : 0.0;
+                    s.heap.push(neighbor, potentialDistance + s.bound[neighbor]);
+                }
+                else if (potentialDistance < s.distance[neighbor]) {
+                    s.set(neighbor, potentialDistance, vertex);
+                    s.heap.push(neighbor, potentialDistance + s.bound[neighbor]);
+                }
+            }
+        }
+        if (best == Double.POSITIVE_INFINITY) {
+            return new Route(null, Double.POSITIVE_INFINITY, settled);
+        }
+        if (bestSide < 0) {
+            return new Route(this.chains.pathAlongChain(source, sink), best, settled);
+        }
+        int[] vertices = walkBack(s.parent, s.arrival[bestSide]);
+        int root = vertices[0];
+        return new Route(this.chains.expand(source, this.chains.departureSide(source, root, s.distance[root]),
+                vertices, bestSide, sink), best, settled);
+    }
+
+    /**
+     * Returns the shortest paths from start to every location, for answering many targets with
+     * one search. Trees for the most recently used starts are kept, so asking again is free.
+     * @param start the location the paths start from
+     * @return the shortest-path tree of start, or null if start is not in the graph
+     */
+    public ShortestPathTree tree(Location start) {
+        int source = this.graph.indexOf(start.id);
+        if (source < 0) {
+            return null;
+        }
+        ShortestPathTree tree;
+        synchronized (this.trees) {
+            tree = this.trees.get(start.id);
+        }
+        if (tree == null) {
+            // built outside the lock; two threads asking for the same new start may both build it
+            tree = new ShortestPathTree(this.chains, source);
+            synchronized (this.trees) {
+                this.trees.put(start.id, tree);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Computes the walking distance from every source to every target. There is one Dijkstra search
+     * per source, each stopping once all targets are settled; the searches run in parallel on the
+     * common fork/join pool, each in its thread's reusable scratch arrays. As in route, buildings other
+     * than the target are never walked through, so every entry equals the length of dijkstra(source, target).
+     * @param sources the locations to measure from
+     * @param targets the locations to measure to
+     * @return a sources.length by targets.length matrix of distances in feet (infinity where there is no path)
+     */
+    public double[][] distanceMatrix(Location[] sources, Location[] targets) {
+        MatrixTargets ends = new MatrixTargets(targets.length, this.chains.reduced().size());
+        int[] vertex = new int[2];
+        double[] distance = new double[2];
+        for (int j = 0; j < targets.length; j++) {
+            ends.vertex[j] = this.graph.indexOf(targets[j].id);
+            if (ends.vertex[j] >= 0) {
+                int arrivals = this.chains.arrivals(ends.vertex[j], vertex, distance);
+                for (int i = 0; i < arrivals; i++) {
+                    if (!ends.isEnd[vertex[i]]) {
+                        ends.isEnd[vertex[i]] = true;
+                        ends.count++;
+                    }
+                }
+            }
+        }
+
+        double[][] matrix = new double[sources.length][];
+        ForkJoinPool.commonPool().invoke(new MatrixRows(this, sources, ends, matrix, 0, sources.length));
+        return matrix;
+    }
+
+    /**
+     * The columns of a distance matrix: each target's original vertex (-1 if it is not in the graph),
+     * and the reduced vertices a search has to settle to know the distance to all of them. A vertex
+     * can be an arrival end of several targets, but is counted down once per search.
+     */
+    private static class MatrixTargets {
+        final int[] vertex;
+        final boolean[] isEnd;
+        int count;
+
+        MatrixTargets(int targets, int size) {
+            this.vertex = new int[targets];
+            this.isEnd = new boolean[size];
+        }
+    }
+
+    /**
+     * Fills rows [first, end) of a distance matrix, splitting the range in half until it is small.
+     * Each row is searched in the scratch arrays of the thread that runs it.
+     */
+    private static class MatrixRows extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RoutingEngine engine;
+        private final Location[] sources;
+        private final MatrixTargets targets;
+        private final double[][] matrix;
+        private final int first;
+        private final int end;
+
+        MatrixRows(RoutingEngine engine, Location[] sources, MatrixTargets targets, double[][] matrix,
+                   int first, int end) {
+            this.engine = engine;
+            this.sources = sources;
+            this.targets = targets;
+            this.matrix = matrix;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.first <= MATRIX_ROWS_PER_TASK) {
+                SearchScratch s = this.engine.scratch.get();
+                for (int i = this.first; i < this.end; i++) {
+                    this.matrix[i] = this.engine.distances(this.sources[i], this.targets, s);
+                }
+                return;
+            }
+            int mid = (this.first + this.end) >>> 1;
+            invokeAll(new MatrixRows(this.engine, this.sources, this.targets, this.matrix, this.first, mid),
+                    new MatrixRows(this.engine, this.sources, this.targets, this.matrix, mid, this.end));
+        }
+    }
+
+    /**
+     * One row of distanceMatrix: a Dijkstra search from start, in s, until every arrival end of the targets is settled.
+     */
+    private double[] distances(Location start, MatrixTargets targets, SearchScratch s) {
+        double[] row = new double[targets.vertex.length];
+        Arrays.fill(row, Double.POSITIVE_INFINITY);
+        int source = this.graph.indexOf(start.id);
+        if (source < 0) {
+            return row;
+        }
+
+        CompactGraph reduced = this.chains.reduced();
+        int sourceVertex = this.chains.reducedIndex(source);
+        s.reset();
+        this.seed(s, source);
+        int remaining = targets.count;
+        while (remaining > 0 && !s.heap.isEmpty()) {
+            double priority = s.heap.peekPriority();
+            int vertex = s.heap.pop();
+            double d = s.distance[vertex];
+            if (priority > d) {
+                continue;
+            }
+            if (targets.isEnd[vertex]) {
+                remaining--;
+            }
+            if (vertex != sourceVertex && reduced.isBuilding(vertex)) {
+                continue;
+            }
+            for (int edge = reduced.firstEdge(vertex); edge < reduced.endEdge(vertex); edge++) {
+                int neighbor = reduced.target(edge);
+                double potentialDistance = d + reduced.weight(edge);
+                if (potentialDistance < s.distance(neighbor)) {
+                    s.set(neighbor, potentialDistance, vertex);
+                    s.heap.push(neighbor, potentialDistance);
+                }
+            }
+        }
+        IntToDoubleFunction distance = s::distance;
+        int[] side = new int[1];
+        for (int j = 0; j < row.length; j++) {
+            if (targets.vertex[j] >= 0) {
+                row[j] = this.chains.distanceTo(source, targets.vertex[j], distance, side);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Returns every building within maxDistance feet of start along the road network, nearest first.
+     * This is Dijkstra with a distance cutoff: the search stops as soon as the next vertex is farther
+     * than maxDistance, and (as in route) buildings other than start are reported but never walked through.
+     * @param start the location to search around
+     * @param maxDistance the walking distance limit in feet
+     * @return the reachable buildings other than start, in increasing order of walking distance
+     */
+    public IDeque<Location> isochrone(Location start, double maxDistance) {
+        IDeque<Location> buildings = new ArrayDeque<>();
+        int source = this.graph.indexOf(start.id);
+        if (source < 0) {
+            return buildings;
+        }
+
+        CompactGraph reduced = this.chains.reduced();
+        int sourceVertex = this.chains.reducedIndex(source);
+        SearchScratch s = this.scratch.get();
+        s.reset();
+        this.seed(s, source);
+        while (!s.heap.isEmpty() && s.heap.peekPriority() <= maxDistance) {
+            double priority = s.heap.peekPriority();
+            int vertex = s.heap.pop();
+            double d = s.distance[vertex];
+            if (priority > d) {
+                continue;
+            }
+            if (vertex != sourceVertex && reduced.isBuilding(vertex)) {
+                buildings.addBack(reduced.location(vertex));
+                continue;
+            }
+            for (int edge = reduced.firstEdge(vertex); edge < reduced.endEdge(vertex); edge++) {
+                int neighbor = reduced.target(edge);
+                double potentialDistance = d + reduced.weight(edge);
+                if (potentialDistance <= maxDistance && potentialDistance < s.distance(neighbor)) {
+                    s.set(neighbor, potentialDistance, vertex);
+                    s.heap.push(neighbor, potentialDistance);
+                }
+            }
+        }
+        return buildings;
+    }
+
+    /**
+     * Starts a plain Dijkstra search from original vertex source by pushing its departure ends.
+     * Ends that are buildings are pushed too; the search itself decides not to walk through them.
+     */
+    private void seed(SearchScratch s, int source) {
+        int departures = this.chains.departures(source, s.departure, s.departureDistance);
+        for (int i = 0; i < departures; i++) {
+            if (s.departureDistance[i] < s.distance(s.departure[i])) {
+                s.set(s.departure[i], s.departureDistance[i], -1);
+                s.heap.push(s.departure[i], s.departureDistance[i]);
+            }
+        }
+    }
+
+    /**
+     * Bidirectional Dijkstra between two distinct vertices. The forward search never enters a
+     * building other than sink and the backward search never leaves one other than source, so
+     * neither half (nor the meeting vertex) can pass through an intermediate building. The forward
+     * search starts from the departure ends of source and the backward one from the arrival ends
+     * of sink, so the halves can also meet at a vertex both start from.
+     */
+    private Route bidirectional(int source, int sink) {
+        CompactGraph reduced = this.chains.reduced();
+        int sourceVertex = this.chains.reducedIndex(source);
+        int sinkVertex = this.chains.reducedIndex(sink);
+        SearchScratch forward = this.scratch.get();
+        SearchScratch backward = this.reverseScratch.get();
+        forward.reset();
+        backward.reset();
+        int departures = this.chains.departures(source, forward.departure, forward.departureDistance);
+        for (int i = 0; i < departures; i++) {
+            int vertex = forward.departure[i];
+            double d = forward.departureDistance[i];
+            if ((vertex != sourceVertex && vertex != sinkVertex && reduced.isBuilding(vertex))
+                    || d >= forward.distance(vertex)) {
+                continue;
+            }
+            forward.set(vertex, d, -1);
+            forward.heap.push(vertex, d);
+        }
+        int arrivals = this.chains.arrivals(sink, backward.arrival, backward.arrivalDistance);
+        for (int i = 0; i < arrivals; i++) {
+            int vertex = backward.arrival[i];
+            double d = backward.arrivalDistance[i];
+            if ((vertex != sourceVertex && vertex != sinkVertex && reduced.isBuilding(vertex))
+                    || d >= backward.distance(vertex)) {
+                continue;
+            }
+            backward.set(vertex, d, -1);
+            backward.heap.push(vertex, d);
+        }
+
+        double best = this.chains.alongChain(source, sink);
+        int meet = -1;
+        for (int i = 0; i < arrivals; i++) {
+            int vertex = backward.arrival[i];
+            if (backward.reached(vertex) && forward.reached(vertex)
+                    && forward.distance[vertex] + backward.distance[vertex] < best) {
+                best = forward.distance[vertex] + backward.distance[vertex];
+                meet = vertex;
+            }
+        }
+        int settled = 0;
+        while (true) {
+            discardStale(forward);
+            discardStale(backward);
+            if (forward.heap.isEmpty() || backward.heap.isEmpty()
+                    || forward.heap.peekPriority() + backward.heap.peekPriority() >= best) {
+                break;
+            }
+
+            boolean isForward = forward.heap.size() <= backward.heap.size();
+            SearchScratch self = isForward ? forward : backward;
+            SearchScratch other = isForward ? backward : forward;
+            int vertex = self.heap.pop();
+            double d = self.distance[vertex];
+            settled++;
+
+            int first = isForward ? reduced.firstEdge(vertex) : reduced.firstReverseEdge(vertex);
+            int end = isForward ? reduced.endEdge(vertex) : reduced.endReverseEdge(vertex);
+            for (int edge = first; edge < end; edge++) {
+                int neighbor = isForward ? reduced.target(edge) : reduced.source(edge);
+                if (reduced.isBuilding(neighbor) && neighbor != (isForward ? sinkVertex : sourceVertex)) {
+                    continue;
+                }
+                double potentialDistance = d + (isForward ? reduced.weight(edge) : reduced.reverseWeight(edge));
+                if (potentialDistance < self.distance(neighbor)) {
+                    self.set(neighbor, potentialDistance, vertex);
+                    self.heap.push(neighbor, potentialDistance);
+                    if (other.reached(neighbor) && potentialDistance + other.distance[neighbor] < best) {
+                        best = potentialDistance + other.distance[neighbor];
+                        meet = neighbor;
+                    }
+                }
+            }
+        }
+
+        if (best == Double.POSITIVE_INFINITY) {
+            return new Route(null, Double.POSITIVE_INFINITY, settled);
+        }
+        if (meet < 0) {
+            return new Route(this.chains.pathAlongChain(source, sink), best, settled);
+        }
+        // forward parents lead from meet back to a departure end, backward parents from meet on to an arrival end
+        int[] head = walkBack(forward.parent, meet);
+        int[] tail = walkBack(backward.parent, meet);
+        int[] vertices = Arrays.copyOf(head, head.length + tail.length - 1);
+        for (int i = 0; i < tail.length - 1; i++) {
+            vertices[head.length + i] = tail[tail.length - 2 - i];
+        }
+        int departureSide = this.chains.departureSide(source, head[0], forward.distance[head[0]]);
+        int arrivalSide = this.chains.arrivalSide(sink, tail[0], backward.distance[tail[0]]);
+        return new Route(this.chains.expand(source, departureSide, vertices, arrivalSide, sink), best, settled);
+    }
+
+    /**
+     * Pops entries whose vertex has since been reached more cheaply, so the heap top is live.
+     */
+    private static void discardStale(SearchScratch s) {
+        while (!s.heap.isEmpty() && s.heap.peekPriority() > s.distance[s.heap.peekVertex()]) {
+            s.heap.pop();
+        }
+    }
+
+    /**
+     * Lower bound on the road distance from reduced vertex to target: the great-circle distance.
+     */
+    private double bound(int vertex, Location target) {
+        Location loc = this.chains.reduced().location(vertex);
+        return loc == null ? 0.0 : HEURISTIC_SCALE * loc.getDistance(target);
+    }
+
+    /**
+     * Follows parent pointers back from end to a vertex without a parent (a vertex the search started from).
+     * @return the vertices from that start to end, in order
+     */
+    static int[] walkBack(int[] parent, int end) {
+        int hops = 0;
+        for (int v = end; parent[v] >= 0; v = parent[v]) {
+            hops++;
+        }
+        int[] vertices = new int[hops + 1];
+        int v = end;
+        for (int i = hops; i >= 0; i--) {
+            vertices[i] = v;
+            v = parent[v];
+        }
+        return vertices;
+    }
+}
@@ -0,0 +1,128 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+
+import java.util.Arrays;
+
+/**
+ * The shortest paths from one start location to every location of a CompactGraph.
+ *
+ * The tree is built by a single Dijkstra search that runs until the heap is empty; as in
+ * RoutingEngine.route, buildings other than the start are reached but never walked through,
+ * so each path is exactly what a point-to-point search would allow. The search runs on the
+ * graph's ChainContraction, so the tree only holds the vertices the contraction kept; a
+ * waypoint inside a chain is reached through whichever end of its chain is closer. After that,
+ * a path or distance is answered by walking parent pointers, without searching again. Trees are
+ * immutable and may be shared between threads.
+ */
+public class ShortestPathTree {
+    private final ChainContraction chains;
+    private final int source;
+    // indexed by reduced vertex
+    private final double[] distance;
+    // previous vertex on the shortest path from the source, -1 for the departure ends of the source and unreached vertices
+    private final int[] parent;
+    private final int settled;
+
+    ShortestPathTree(ChainContraction chains, int source) {
+        CompactGraph graph = chains.reduced();
+        int n = graph.size();
+        int sourceVertex = chains.reducedIndex(source);
+        this.chains = chains;
+        this.source = source;
+        this.distance = new double[n];
+        this.parent = new int[n];
+        Arrays.fill(this.distance, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.parent, -1);
+
+        LazyMinHeap heap = new LazyMinHeap();
+        int[] departure = new int[2];
+        double[] departureDistance = new double[2];
+        int departures = chains.departures(source, departure, departureDistance);
+        for (int i = 0; i < departures; i++) {
+            if (departureDistance[i] < this.distance[departure[i]]) {
+                this.distance[departure[i]] = departureDistance[i];
+                heap.push(departure[i], departureDistance[i]);
+            }
+        }
+        int count = 0;
+        while (!heap.isEmpty()) {
+            double priority = heap.peekPriority();
+            int vertex = heap.pop();
+            double d = this.distance[vertex];
+            if (priority > d) {
+                // stale entry left behind by a later improvement
+                continue;
+            }
+            count++;
+            if (vertex != sourceVertex && graph.isBuilding(vertex)) {
+                continue;
+            }
+            for (int edge = graph.firstEdge(vertex); edge < graph.endEdge(vertex); edge++) {
+                int neighbor = graph.target(edge);
+                double potentialDistance = d + graph.weight(edge);
+                if (potentialDistance < this.distance[neighbor]) {
+                    this.distance[neighbor] = potentialDistance;
+                    this.parent[neighbor] = vertex;
+                    heap.push(neighbor, potentialDistance);
+                }
+            }
+        }
+        this.settled = count;
+    }
+
+    /**
+     * @return the location the tree's paths start from
+     */
+    public Location start() {
+        return this.chains.original().location(this.source);
+    }
+
+    /**
+     * @return the number of vertices the search settled to build the tree
+     */
+    public int settled() {
+        return this.settled;
+    }
+
+    /**
+     * Returns the length of a shortest path from the start to target.
+     * @param target the location to end the path at
+     * @return the path length in feet, or infinity if target is unreachable
+     */
+    public double distanceTo(Location target) {
+        int sink = this.chains.original().indexOf(target.id);
+        return sink < 0 ? Double.POSITIVE_INFINITY : this.chains.distanceTo(this.source, sink, v -> this.distance[v], new int[1]);
+    }
+
+    /**
+     * Returns a shortest path from the start to target, including both.
+     * @param target the location to end the path at
+     * @return a shortest path, or null if target is unreachable
+     */
+    public IDeque<Location> pathTo(Location target) {
+        int sink = this.chains.original().indexOf(target.id);
+        int[] side = new int[1];
+        if (sink < 0 || this.chains.distanceTo(this.source, sink, v -> this.distance[v], side) == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        if (side[0] < 0) {
+            return this.chains.pathAlongChain(this.source, sink);
+        }
+        int[] end = new int[2];
+        this.chains.arrivals(sink, end, new double[2]);
+        int[] vertices = RoutingEngine.walkBack(this.parent, end[side[0]]);
+        int root = vertices[0];
+        return this.chains.expand(this.source, this.chains.departureSide(this.source, root, this.distance[root]),
+                vertices, side[0], sink);
+    }
+
+    /**
+     * Returns the route from the start to target; it settles no vertices, since the search is already done.
+     * @param target the location to end the path at
+     * @return the path (null if there is none) and its length
+     */
+    public Route route(Location target) {
+        return new Route(this.pathTo(target), this.distanceTo(target), 0);
+    }
+}
@@ -0,0 +1,246 @@
+package edu.caltech.cs2.datastructures;
+
+import edu.caltech.cs2.interfaces.IDeque;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A static k-d tree over the coordinates of a set of locations.
+ *
+ * Each node covers a contiguous range of the reordered points and stores their bounding box.
+ * A query prunes every node whose box is provably farther away than the current answer: the
+ * haversine distance only grows with |dLat|, |dLon| and the cosine of the point's latitude, so
+ * plugging in the box's smallest |dLat|, |dLon| and cosine gives an exact lower bound. Distances
+ * are computed with Location.getDistance, so results match a linear scan bit for bit; ties go
+ * to the location that came first in the array the index was built from.
+ */
+public class SpatialIndex {
+    private static final int LEAF_SIZE = 8;
+    // shrinks the pruning bound a hair so floating-point rounding can never make it overestimate
+    private static final double BOUND_SCALE = 1 - 1e-9;
+
+    // points reordered so that every node covers points[first[node]] .. points[end[node] - 1]
+    private final Location[] points;
+    // position of each point in the original array, used to break distance ties
+    private final int[] rank;
+
+    private final int[] first;
+    private final int[] end;
+    private final int[] left;
+    private final int[] right;
+    private final double[] minLat;
+    private final double[] maxLat;
+    private final double[] minLon;
+    private final double[] maxLon;
+    private int nodeCount;
+
+    /**
+     * Builds an index over locations; the array itself is not modified or retained.
+     * @param locations the locations to index
+     */
+    public SpatialIndex(Location[] locations) {
+        int n = locations.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+
+        // median splits never leave fewer than LEAF_SIZE / 2 points in a leaf
+        int maxNodes = 2 * (n / (LEAF_SIZE / 2) + 1);
+        this.first = new int[maxNodes];
+        this.end = new int[maxNodes];
+        this.left = new int[maxNodes];
+        this.right = new int[maxNodes];
+        this.minLat = new double[maxNodes];
+        this.maxLat = new double[maxNodes];
+        this.minLon = new double[maxNodes];
+        this.maxLon = new double[maxNodes];
+        this.nodeCount = 0;
+        if (n > 0) {
+            this.build(locations, order, 0, n);
+        }
+
+        this.points = new Location[n];
+        this.rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            this.points[i] = locations[order[i]];
+            this.rank[i] = order[i];
+        }
+    }
+
+    /**
+     * Splits order[lo, hi) at the median of its wider side and recurses; returns the node index.
+     */
+    private int build(Location[] locations, Integer[] order, int lo, int hi) {
+        int node = this.nodeCount++;
+        this.first[node] = lo;
+        this.end[node] = hi;
+        this.left[node] = -1;
+        this.right[node] = -1;
+        double latLo = Double.POSITIVE_INFINITY, latHi = Double.NEGATIVE_INFINITY;
+        double lonLo = Double.POSITIVE_INFINITY, lonHi = Double.NEGATIVE_INFINITY;
+        for (int i = lo; i < hi; i++) {
+            Location loc = locations[order[i]];
+            latLo = Math.min(latLo, loc.lat);
+            latHi = Math.max(latHi, loc.lat);
+            lonLo = Math.min(lonLo, loc.lon);
+            lonHi = Math.max(lonHi, loc.lon);
+        }
+        this.minLat[node] = latLo;
+        this.maxLat[node] = latHi;
+        this.minLon[node] = lonLo;
+        this.maxLon[node] = lonHi;
+
+        if (hi - lo > LEAF_SIZE) {
+            // a degree of longitude shrinks with latitude, so compare extents in ground distance
+            double lonExtent = (lonHi - lonLo) * Math.cos(Math.toRadians((latLo + latHi) / 2));
+            Comparator<Integer> byCoordinate = lonExtent > latHi - latLo
+                    ? Comparator.comparingDouble(i -> locations[i].lon)
+                    : Comparator.comparingDouble(i -> locations[i].lat);
+            Arrays.sort(order, lo, hi, byCoordinate);
+            int mid = (lo + hi) >>> 1;
+            this.left[node] = this.build(locations, order, lo, mid);
+            this.right[node] = this.build(locations, order, mid, hi);
+        }
+        return node;
+    }
+
+    /**
+     * @return the number of indexed locations
+     */
+    public int size() {
+        return this.points.length;
+    }
+
+    /**
+     * Returns the indexed location closest (by great-circle distance) to (lat, lon).
+     * @param lat the latitude to search near
+     * @param lon the longitude to search near
+     * @return the closest location, or null if the index is empty
+     */
+    public Location nearest(double lat, double lon) {
+        IDeque<Location> result = this.nearest(lat, lon, 1);
+        return result.size() == 0 ? null : result.peekFront();
+    }
+
+    /**
+     * Returns the k indexed locations closest to (lat, lon), nearest first.
+     * @param lat the latitude to search near
+     * @param lon the longitude to search near
+     * @param k the number of locations to return
+     * @return the min(k, size()) closest locations in increasing order of distance
+     */
+    public IDeque<Location> nearest(double lat, double lon, int k) {
+        int count = Math.min(k, this.points.length);
+        // current best candidates, kept sorted by (distance, rank)
+        int[] best = new int[count];
+        double[] bestDistance = new double[count];
+        int found = 0;
+        if (count > 0) {
+            found = this.nearest(0, lat, lon, best, bestDistance, 0);
+        }
+
+        IDeque<Location> result = new ArrayDeque<>(Math.max(1, found));
+        for (int i = 0; i < found; i++) {
+            result.addBack(this.points[best[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Visits node, offering its points to best; returns the new number of candidates.
+     */
+    private int nearest(int node, double lat, double lon, int[] best, double[] bestDistance, int found) {
+        if (found == best.length && BOUND_SCALE * this.lowerBound(node, lat, lon) > bestDistance[found - 1]) {
+            return found;
+        }
+        if (this.left[node] < 0) {
+            for (int i = this.first[node]; i < this.end[node]; i++) {
+                found = this.offer(i, this.points[i].getDistance(lat, lon), best, bestDistance, found);
+            }
+            return found;
+        }
+        // descend into the closer child first so the farther one is more likely to be pruned
+        int near = this.left[node];
+        int far = this.right[node];
+        if (this.lowerBound(far, lat, lon) < this.lowerBound(near, lat, lon)) {
+            near = this.right[node];
+            far = this.left[node];
+        }
+        found = this.nearest(near, lat, lon, best, bestDistance, found);
+        return this.nearest(far, lat, lon, best, bestDistance, found);
+    }
+
+    /**
+     * Inserts point i into the sorted candidate arrays if it beats the current k-th best.
+     */
+    private int offer(int i, double distance, int[] best, double[] bestDistance, int found) {
+        int slot = found;
+        while (slot > 0 && (distance < bestDistance[slot - 1]
+                || (distance == bestDistance[slot - 1] && this.rank[i] < this.rank[best[slot - 1]]))) {
+            slot--;
+        }
+        if (slot == best.length) {
+            return found;
+        }
+        int last = Math.min(found, best.length - 1);
+        System.arraycopy(best, slot, best, slot + 1, last - slot);
+        System.arraycopy(bestDistance, slot, bestDistance, slot + 1, last - slot);
+        best[slot] = i;
+        bestDistance[slot] = distance;
+        return Math.min(found + 1, best.length);
+    }
+
+    /**
+     * Lower bound on the great-circle distance from (lat, lon) to any point in node's bounding box.
+     */
+    private double lowerBound(int node, double lat, double lon) {
+        double dLat = Math.max(0, Math.max(this.minLat[node] - lat, lat - this.maxLat[node]));
+        double dLon = Math.max(0, Math.max(this.minLon[node] - lon, lon - this.maxLon[node]));
+        // cos is concave on [-90, 90], so its minimum over a latitude range is at an endpoint
+        double cosLat = Math.min(Math.cos(Math.toRadians(this.minLat[node])),
+                Math.cos(Math.toRadians(this.maxLat[node])));
+        double sinLat = Math.sin(Math.toRadians(dLat) / 2);
+        double sinLon = Math.sin(Math.toRadians(dLon) / 2);
+        double h = sinLat * sinLat + sinLon * sinLon * cosLat * Math.cos(Math.toRadians(lat));
+        return 2 * Location.EARTH_RAD_FT * Math.asin(Math.sqrt(Math.min(1, h)));
+    }
+
+    /**
+     * Returns every indexed location inside the given latitude/longitude box (bounds inclusive).
+     * @param minLat the southern edge of the box
+     * @param minLon the western edge of the box
+     * @param maxLat the northern edge of the box
+     * @param maxLon the eastern edge of the box
+     * @return the locations in the box, in no particular order
+     */
+    public IDeque<Location> within(double minLat, double minLon, double maxLat, double maxLon) {
+        IDeque<Location> result = new ArrayDeque<>();
+        if (this.points.length > 0) {
+            this.within(0, minLat, minLon, maxLat, maxLon, result);
+        }
+        return result;
+    }
+
+    private void within(int node, double minLat, double minLon, double maxLat, double maxLon,
+                        IDeque<Location> result) {
+        if (this.maxLat[node] < minLat || this.minLat[node] > maxLat
+                || this.maxLon[node] < minLon || this.minLon[node] > maxLon) {
+            return;
+        }
+        boolean contained = minLat <= this.minLat[node] && this.maxLat[node] <= maxLat
+                && minLon <= this.minLon[node] && this.maxLon[node] <= maxLon;
+        if (contained || this.left[node] < 0) {
+            for (int i = this.first[node]; i < this.end[node]; i++) {
+                Location loc = this.points[i];
+                if (contained || (minLat <= loc.lat && loc.lat <= maxLat && minLon <= loc.lon && loc.lon <= maxLon)) {
+                    result.addBack(loc);
+                }
+            }
+            return;
+        }
+        this.within(this.left[node], minLat, minLon, maxLat, maxLon, result);
+        this.within(this.right[node], minLat, minLon, maxLat, maxLon, result);
+    }
+}
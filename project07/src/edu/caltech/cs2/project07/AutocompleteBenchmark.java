@@ -0,0 +1,89 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.Location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Measures the autocomplete index of a region: how long MapsAutoCompleter.populateLocations
+ * takes, how much heap the index holds on to, and the latency of complete() for every prefix
+ * of every building name, the way /autocomplete sees them while someone types, both without
+ * and with a typing session per name.
+ *
+ * Usage: AutocompleteBenchmark [region] [rounds], e.g. "AutocompleteBenchmark caltech 5".
+ * The region defaults to pasadena. Run with a fixed heap (e.g. -Xms1g -Xmx1g) for a steadier
+ * memory figure, since it is the difference in used heap before and after populating.
+ */
+public class AutocompleteBenchmark {
+    private static final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) {
+        String region = args.length > 0 ? args[0] : "pasadena";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String prefix = "data/" + region + "/" + region;
+        BeaverMapsGraph graph = new BeaverMapsGraph(prefix + ".buildings.json",
+                prefix + ".waypoints.json", prefix + ".roads.json");
+
+        // every name is typed in its own session
+        List<String> keystrokes = new ArrayList<>();
+        List<String> sessions = new ArrayList<>();
+        for (Location loc : graph.getBuildings()) {
+            if (loc.name != null) {
+                for (int i = 1; i <= loc.name.length(); i++) {
+                    keystrokes.add(loc.name.substring(0, i));
+                    sessions.add(Long.toString(loc.id));
+                }
+            }
+        }
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        MapsAutoCompleter.populateLocations(graph.getBuildings());
+        long populate = System.nanoTime() - start;
+        long heapAfter = usedHeap();
+        System.out.printf("%s: %d buildings, populated in %.1f ms, index holds %.1f KB of heap (%.1f KB of arrays)%n",
+                region, graph.getBuildings().size(), populate / 1e6, (heapAfter - heapBefore) / 1024.0,
+                MapsAutoCompleter.memoryFootprint() / 1024.0);
+
+        time("complete(term)", keystrokes, rounds, (session, term) -> MapsAutoCompleter.complete(term).size());
+        time("complete(session, term)", keystrokes, rounds,
+                (session, term) -> MapsAutoCompleter.complete(sessions.get(session), term).size());
+        System.out.println("sessions: " + MapsAutoCompleter.sessionStats());
+    }
+
+    /**
+     * Times query on every keystroke, in typing order; query gets the keystroke's index and text.
+     */
+    private static void time(String name, List<String> keystrokes, int rounds, BiFunction<Integer, String, Integer> query) {
+        long[] nanos = new long[keystrokes.size() * rounds];
+        long results = 0;
+        for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+            for (int i = 0; i < keystrokes.size(); i++) {
+                long before = System.nanoTime();
+                int found = query.apply(i, keystrokes.get(i));
+                long elapsed = System.nanoTime() - before;
+                if (round >= 0) {
+                    nanos[round * keystrokes.size() + i] = elapsed;
+                    results += found;
+                }
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-24s %d keystrokes: p50 %.2f us, p99 %.2f us, max %.2f us, %.1f results per keystroke%n",
+                name, keystrokes.size(), RouteBenchmark.percentile(nanos, 0.50) / 1e3,
+                RouteBenchmark.percentile(nanos, 0.99) / 1e3, nanos[nanos.length - 1] / 1e3,
+                (double) results / nanos.length);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -1,61 +1,233 @@
 package edu.caltech.cs2.project07;
 
 
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import edu.caltech.cs2.datastructures.BeaverMapsGraph;
-import edu.caltech.cs2.datastructures.LinkedDeque;
+import edu.caltech.cs2.datastructures.ContractionHierarchy;
+import edu.caltech.cs2.datastructures.GraphSnapshot;
+import edu.caltech.cs2.datastructures.GraphView;
 import edu.caltech.cs2.datastructures.Location;
+import edu.caltech.cs2.datastructures.Route;
+import edu.caltech.cs2.datastructures.RouteCache;
+import edu.caltech.cs2.datastructures.RoutingEngine;
+import edu.caltech.cs2.datastructures.ShortestPathTree;
 import edu.caltech.cs2.interfaces.IDeque;
 import edu.caltech.cs2.interfaces.ISet;
 
 import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.URI;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
 
 public class BeaverMaps {
     public static final int PORT = 8001;
     public static final int NUMBER_OF_OPTIONS = 15;
+    public static final String HIERARCHY_FILE = "data/pasadena/pasadena.ch";
+    public static final String SNAPSHOT_FILE = "data/pasadena/pasadena.snapshot";
+    public static final int ROUTE_CACHE_ENTRIES = 10000;
+    public static final long ROUTE_CACHE_BYTES = 32L << 20;
+    // prefix of the names of the pool threads that run the handlers
+    static final String HANDLER_THREAD_NAME = "beavermaps-handler";
+    // requests waiting for a pool thread before the dispatcher stops accepting connections
+    private static final int QUEUE_PER_THREAD = 64;
     private static BeaverMapsGraph graph;
-    private static MapsAutoCompleter COMPLETER;
-
+    // the handlers only read from this, so they can run on many threads at once
+    private static GraphView view;
+    // rendered /pathfinder responses for recent (start, target) pairs
+    private static RouteCache<CachedPath> routes;
+    // Algorithm.CH once a precomputed hierarchy has been loaded
+    private static RoutingEngine.Algorithm defaultAlgorithm = RoutingEngine.Algorithm.DIJKSTRA;
+
+    /**
+     * Serves one static file from memory. The file is read and gzipped once, when the server is
+     * created, so a page load does no disk I/O; edits to the file show up after a restart.
+     * Clients that send Accept-Encoding: gzip get the compressed copy, and clients whose
+     * If-None-Match holds the current ETag get a 304 with no body.
+     */
     static class LocalFile implements HttpHandler {
-        private String name;
+        private final byte[] plain;
+        private final byte[] gzipped;
+        private final String etag;
+        private final String gzipEtag;
+        private final String contentType;
+
+        public LocalFile(String name) throws IOException {
+            this.plain = Files.readAllBytes(Paths.get(name));
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(this.plain.length / 2);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                gzip.write(this.plain);
+            }
+            // small files can come out bigger, in which case only the plain copy is served
+            this.gzipped = buffer.size() < this.plain.length ? buffer.toByteArray() : null;
+            CRC32 crc = new CRC32();
+            crc.update(this.plain);
+            String tag = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(this.plain.length);
+            this.etag = "\"" + tag + "\"";
+            this.gzipEtag = "\"" + tag + "-gzip\"";
+            this.contentType = contentType(name);
+        }
 
-        public LocalFile(String name) {
-            this.name = name;
+        private static String contentType(String name) {
+            if (name.endsWith(".html")) {
+                return "text/html; charset=utf-8";
+            }
+            if (name.endsWith(".css")) {
+                return "text/css; charset=utf-8";
+            }
+            if (name.endsWith(".js")) {
+                return "application/javascript; charset=utf-8";
+            }
+            return "application/octet-stream";
         }
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = new String(Files.readAllBytes(Paths.get(this.name)), StandardCharsets.UTF_8);
-            t.sendResponseHeaders(200, 0);
-            OutputStream os = t.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
+            boolean gzip = this.gzipped != null && accepts(t.getRequestHeaders().getFirst("Accept-Encoding"), "gzip");
+            String tag = gzip ? this.gzipEtag : this.etag;
+            Headers headers = t.getResponseHeaders();
+            headers.set("Content-Type", this.contentType);
+            headers.set("ETag", tag);
+            headers.set("Vary", "Accept-Encoding");
+            if (matches(t.getRequestHeaders().getFirst("If-None-Match"), tag)) {
+                t.sendResponseHeaders(304, -1);
+                t.close();
+                return;
+            }
+            if (gzip) {
+                headers.set("Content-Encoding", "gzip");
+                ResponseWriter.send(t, this.gzipped, this.gzipped.length);
+            }
+            else {
+                ResponseWriter.send(t, this.plain, this.plain.length);
+            }
+        }
+
+        /**
+         * @return whether an Accept-Encoding header lists coding without q=0
+         */
+        static boolean accepts(String acceptEncoding, String coding) {
+            if (acceptEncoding == null) {
+                return false;
+            }
+            for (String option : acceptEncoding.split(",")) {
+                String[] parts = option.split(";");
+                if (parts[0].trim().equalsIgnoreCase(coding)) {
+                    for (int i = 1; i < parts.length; i++) {
+                        if (parts[i].trim().matches("q=0(\\.0*)?")) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return whether an If-None-Match header lists etag (weakly compared) or is "*"
+         */
+        static boolean matches(String ifNoneMatch, String etag) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 
+    /**
+     * Starts the server. The optional argument picks the executor that runs the request
+     * handlers (see createExecutor); it defaults to a pool with one thread per core.
+     */
     public static void main(String[] args) throws Exception {
         long start = System.currentTimeMillis();
-        graph = new BeaverMapsGraph("data/pasadena/pasadena.buildings.json",
-                "data/pasadena/pasadena.waypoints.json",
-                "data/pasadena/pasadena.roads.json");
+        if (new File(SNAPSHOT_FILE).exists()) {
+            graph = GraphSnapshot.read(SNAPSHOT_FILE);
+        }
+        else {
+            graph = new BeaverMapsGraph("data/pasadena/pasadena.buildings.json",
+                    "data/pasadena/pasadena.waypoints.json",
+                    "data/pasadena/pasadena.roads.json");
+        }
         long end = System.currentTimeMillis();
         System.out.println("Reading data took " + (end - start) + " millis.");
+        if (new File(HIERARCHY_FILE).exists()) {
+            start = System.currentTimeMillis();
+            graph.router().setHierarchy(ContractionHierarchy.read(HIERARCHY_FILE, graph.compactGraph()));
+            defaultAlgorithm = RoutingEngine.Algorithm.CH;
+            end = System.currentTimeMillis();
+            System.out.println("Loading " + HIERARCHY_FILE + " took " + (end - start) + " millis.");
+        }
+        serve(graph);
+        HttpServer server = createServer(PORT, createExecutor(args.length > 0 ? args[0] : "pool"));
+        server.start();
+        System.out.println("Server started!");
+
+        if (Desktop.isDesktopSupported()) {
+            Desktop.getDesktop().browse(new URI("http://localhost:" + PORT + "/"));
+        }
+    }
+
+    /**
+     * Appends "lat::lon::name", the way the map page expects a location.
+     */
+    static ResponseWriter appendLocation(ResponseWriter out, Location loc) {
+        return out.append(loc.lat).append("::").append(loc.lon)
+                .append("::").append(loc.name);
+    }
+
+    /**
+     * Makes the handlers answer queries about g.
+     * @param g the graph to serve
+     */
+    static void serve(BeaverMapsGraph g) {
+        graph = g;
         System.out.println("Populating autocomplete");
-        COMPLETER.populateLocations(graph.getBuildings());
+        MapsAutoCompleter.populateLocations(g.getBuildings());
         System.out.println("Done populating autocomplete");
+        view = g.view();
+        routes = new RouteCache<>(g, ROUTE_CACHE_ENTRIES, ROUTE_CACHE_BYTES);
+    }
 
-        HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
+    /**
+     * Creates a server on port (0 for any free port) that answers from the current view.
+     * @param port the port to listen on
+     * @param executor the executor that runs the handlers, or null to run them on the dispatcher thread
+     * @return the server, not yet started
+     */
+    static HttpServer createServer(int port, Executor executor) throws IOException {
+        // without TCP_NODELAY, each chunked response waits out the client's delayed ACK (~40 ms);
+        // the JDK reads this once, when the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
         server.createContext("/", new LocalFile("map.html"));
         server.createContext("/css/map.css", new LocalFile("css/map.css"));
         server.createContext("/js/map.js", new LocalFile("js/map.js"));
@@ -64,57 +236,257 @@ public class BeaverMaps {
         server.createContext("/byname", new AllWithNameSearch());
         server.createContext("/nearby", new LocationSearch());
         server.createContext("/pathfinder", new PathFinder());
+        server.createContext("/routes", new BatchPathFinder());
+        server.createContext("/matrix", new DistanceMatrix());
         server.createContext("/autocomplete", new Autocomplete());
         server.createContext("/nearest", new NearestSearch());
-        server.setExecutor(null); // creates a default executor
-        server.start();
-        System.out.println("Server started!");
+        server.createContext("/stats", new Stats());
+        server.setExecutor(executor);
+        return server;
+    }
 
-        if (Desktop.isDesktopSupported()) {
-            Desktop.getDesktop().browse(new URI("http://localhost:" + PORT + "/"));
+    /**
+     * Creates the executor for the request handlers from a description:
+     *   "dispatcher"  no executor; every request runs on the server's single dispatcher thread
+     *   "pool[:n]"    n worker threads (default: one per core) with a bounded queue; when the queue
+     *                 is full the dispatcher runs the request itself, which stops it accepting more
+     *   "virtual"     a virtual thread per request on JDK 21+, otherwise the default pool
+     * @param spec the executor description
+     * @return the executor, or null for "dispatcher"
+     */
+    static ExecutorService createExecutor(String spec) {
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "dispatcher":
+                return null;
+            case "virtual":
+                try {
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                }
+                catch (ReflectiveOperationException e) {
+                    System.out.println("Virtual threads need JDK 21; using a thread pool instead.");
+                    return createExecutor("pool");
+                }
+            case "pool":
+                int threads = parts.length > 1 ? Integer.parseInt(parts[1]) : Runtime.getRuntime().availableProcessors();
+                AtomicInteger count = new AtomicInteger();
+                return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(QUEUE_PER_THREAD * threads),
+                        r -> new Thread(r, HANDLER_THREAD_NAME + "-" + count.incrementAndGet()),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+            default:
+                throw new IllegalArgumentException("Unknown executor " + spec + "; expected dispatcher, pool[:n] or virtual");
         }
     }
 
     static class PathFinder implements HttpHandler {
+        /**
+         * Maps the optional algorithm= parameter (e.g. "astar") to an algorithm, defaulting to
+         * contraction hierarchies if a hierarchy file was loaded and Dijkstra otherwise.
+         */
+        static RoutingEngine.Algorithm parseAlgorithm(Optional<String> name) {
+            for (RoutingEngine.Algorithm a : RoutingEngine.Algorithm.values()) {
+                if (name.isPresent() && a.name().equalsIgnoreCase(name.get())) {
+                    return a;
+                }
+            }
+            return defaultAlgorithm;
+        }
+
         @Override
         public void handle(HttpExchange t) throws IOException {
             Optional<String> start = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("start=")).map(x -> x.split("=")[1]).findAny();
             Optional<String> start_id = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("start-id=")).map(x -> x.split("=")[1]).findAny();
             Optional<String> end = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("end=")).map(x -> x.split("=")[1]).findAny();
             Optional<String> end_id = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("end-id=")).map(x -> x.split("=")[1]).findAny();
-            String response = "[]";
-
+            Optional<String> algorithm = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("algorithm=")).map(x -> x.split("=")[1]).findAny();
             if (start.isPresent() && end.isPresent()) {
                 String startL = start.get();
                 String endL = end.get();
                 String startID = start_id.orElse(null);
                 String endID = end_id.orElse(null);
                 Location startLocation = startID != null ?
-                        graph.getLocationByID(Long.parseLong(startID)) :
-                        graph.getLocationByName(startL).peek();
+                        view.getLocationByID(Long.parseLong(startID)) :
+                        view.getLocationByName(startL).peek();
                 Location endLocation = endID != null ?
-                        graph.getLocationByID(Long.parseLong(endID)) :
-                        graph.getLocationByName(endL).peek();
+                        view.getLocationByID(Long.parseLong(endID)) :
+                        view.getLocationByName(endL).peek();
 
                 if (startLocation != null && endLocation != null) {
-                    IDeque<Location> locs = graph.dijkstra(startLocation, endLocation);
-                    IDeque<String> path = new LinkedDeque<>();
-
-                    int i = 0;
-                    for (Location loc : locs) {
-                        String locStr = loc.lat + "::" + loc.lon + "::" + ("" + i + ":" + (loc.name != null ? " " + loc.name : "") + "::" + loc.id);
-                        path.add(locStr);
-                        i++;
+                    // explicitly chosen algorithms are for comparing searches, so they always run one
+                    CachedPath cached = algorithm.isPresent() ? null : routes.get(startLocation.id, endLocation.id);
+                    if (cached == null) {
+                        Route route = view.route(startLocation, endLocation, parseAlgorithm(algorithm));
+                        cached = new CachedPath(route, render(route, ResponseWriter.get()).toByteArray());
+                        if (!algorithm.isPresent()) {
+                            routes.put(startLocation.id, endLocation.id, cached, cached.bytes());
+                        }
+                    }
+                    t.getResponseHeaders().add("X-Settled-Nodes", Integer.toString(cached.route.settled));
+                    ResponseWriter.send(t, cached.response, cached.response.length);
+                    return;
+                }
+            }
+
+            ResponseWriter.get().append("[]").send(t);
+        }
+
+        /**
+         * Appends the locations of route to out as the list the map page draws (empty if there is no path).
+         */
+        static ResponseWriter render(Route route, ResponseWriter out) {
+            out.append('[');
+            // the path is null when the target is unreachable; answer with an empty path
+            if (route.path != null) {
+                int i = 0;
+                for (Location loc : route.path) {
+                    out.append(i == 0 ? "" : ", ").append(loc.lat).append("::")
+                            .append(loc.lon).append("::").append(i).append(':');
+                    if (loc.name != null) {
+                        out.append(' ').append(loc.name);
                     }
+                    out.append("::").append(loc.id);
+                    i++;
+                }
+            }
+            return out.append(']');
+        }
+    }
 
-                    response = path.toString();
+    /**
+     * Routes from one start to many targets: /routes?start-id=...&end-ids=id1,id2,...
+     * (or start=name instead of start-id). The answer is a list with one path per target, in the
+     * format of /pathfinder, all read off a single shortest-path tree of the start.
+     */
+    static class BatchPathFinder implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            Optional<String> start = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("start=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> start_id = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("start-id=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> end_ids = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("end-ids=")).map(x -> x.split("=")[1]).findAny();
+            ResponseWriter out = ResponseWriter.get();
+
+            if ((start.isPresent() || start_id.isPresent()) && end_ids.isPresent()) {
+                Location startLocation = start_id.isPresent() ?
+                        view.getLocationByID(Long.parseLong(start_id.get())) :
+                        view.getLocationByName(start.get()).peek();
+                ShortestPathTree tree = startLocation == null ? null : view.shortestPathTree(startLocation);
+
+                if (tree != null) {
+                    t.getResponseHeaders().add("X-Settled-Nodes", Integer.toString(tree.settled()));
+                    out.append('[');
+                    String[] ids = end_ids.get().split(",");
+                    for (int i = 0; i < ids.length; i++) {
+                        Location target = view.getLocationByID(Long.parseLong(ids[i]));
+                        out.append(i == 0 ? "" : ", ");
+                        if (target == null) {
+                            out.append("[]");
+                        }
+                        else {
+                            PathFinder.render(tree.route(target), out);
+                        }
+                    }
+                    out.append(']');
                 }
             }
 
-            t.sendResponseHeaders(200, 0);
-            OutputStream os = t.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
+            if (out.size() == 0) {
+                out.append("[]");
+            }
+            out.send(t);
+        }
+    }
+
+    /**
+     * Walking distances between two sets of locations: /matrix?sources=id1,id2,...&targets=id3,id4,...
+     * The answer is {"sources": [...], "targets": [...], "distances": [[...], ...]}, where distances[i][j]
+     * is in feet (null if there is no path); ids that are not in the map are left out of both lists.
+     */
+    static class DistanceMatrix implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            Optional<String> sources = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("sources=")).map(x -> x.split("=")[1]).findAny();
+            Optional<String> targets = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("targets=")).map(x -> x.split("=")[1]).findAny();
+            ResponseWriter out = ResponseWriter.get();
+
+            if (sources.isPresent() && targets.isPresent()) {
+                Location[] from = locations(sources.get());
+                Location[] to = locations(targets.get());
+                double[][] distances = view.distanceMatrix(from, to);
+
+                out.append("{\"sources\": ");
+                appendIds(out, from);
+                out.append(", \"targets\": ");
+                appendIds(out, to);
+                out.append(", \"distances\": [");
+                for (int i = 0; i < distances.length; i++) {
+                    out.append(i == 0 ? "[" : ", [");
+                    for (int j = 0; j < distances[i].length; j++) {
+                        double d = distances[i][j];
+                        out.append(j == 0 ? "" : ", ");
+                        if (d == Double.POSITIVE_INFINITY) {
+                            out.append("null");
+                        }
+                        else {
+                            out.append(d);
+                        }
+                    }
+                    out.append(']');
+                }
+                out.append("]}");
+            }
+            else {
+                out.append("{}");
+            }
+
+            t.getResponseHeaders().add("Content-Type", "application/json");
+            out.send(t);
+        }
+
+        /**
+         * Looks up a comma-separated list of ids, dropping the ones that are not in the map.
+         */
+        static Location[] locations(String ids) {
+            return Stream.of(ids.split(",")).map(id -> view.getLocationByID(Long.parseLong(id)))
+                    .filter(l -> l != null).toArray(Location[]::new);
+        }
+
+        static void appendIds(ResponseWriter out, Location[] locations) {
+            out.append('[');
+            for (int i = 0; i < locations.length; i++) {
+                out.append(i == 0 ? "" : ", ").append(locations[i].id);
+            }
+            out.append(']');
+        }
+    }
+
+    /**
+     * A /pathfinder answer as the route cache keeps it: the route and its rendered response.
+     */
+    static class CachedPath {
+        // rough sizes of the objects around the response bytes, and of each deque node in the path
+        private static final int OVERHEAD = 96;
+        private static final int BYTES_PER_LOCATION = 32;
+        final Route route;
+        final byte[] response;
+
+        CachedPath(Route route, byte[] response) {
+            this.route = route;
+            this.response = response;
+        }
+
+        long bytes() {
+            return OVERHEAD + this.response.length
+                    + (this.route.path == null ? 0 : (long) BYTES_PER_LOCATION * this.route.path.size());
+        }
+    }
+
+    static class Stats implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            t.getResponseHeaders().add("Content-Type", "application/json");
+            ResponseWriter.get().append("{\"routeCache\": ").append(routes.stats())
+                    .append(", \"autocompleteSessions\": ").append(MapsAutoCompleter.sessionStats()).append('}').send(t);
         }
     }
 
@@ -123,22 +495,21 @@ public class BeaverMaps {
         public void handle(HttpExchange t) throws IOException {
             Optional<String> lat = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("lat=")).map(x -> x.split("=")[1]).findAny();
             Optional<String> lon = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("lon=")).map(x -> x.split("=")[1]).findAny();
-            String response = "";
+            ResponseWriter out = ResponseWriter.get();
 
             if (lat.isPresent() && lon.isPresent()) {
                 String latS = lat.get();
                 String lonS = lon.get();
-                Location l = graph.getClosestBuilding(Double.parseDouble(latS), Double.parseDouble(lonS));
+                Location l = view.getClosestBuilding(Double.parseDouble(latS), Double.parseDouble(lonS));
 
                 if (l != null) {
-                    response = "{\"id\": " + l.id + ", \"name\": \"" + l.name + "\"" + ", \"lat\":" + l.lat + ", \"lon\": " + l.lon + "}";
+                    out.append("{\"id\": ").append(l.id).append(", \"name\": \"").append(l.name).append('"')
+                            .append(", \"lat\":").append(l.lat)
+                            .append(", \"lon\": ").append(l.lon).append('}');
                 }
             }
 
-            t.sendResponseHeaders(200, 0);
-            OutputStream os = t.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
+            out.send(t);
         }
     }
 
@@ -146,30 +517,21 @@ public class BeaverMaps {
         @Override
         public void handle(HttpExchange t) throws IOException {
             Optional<String> query = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("query=")).map(x -> x.split("=")[1]).findAny();
-            String response = "[]";
+            ResponseWriter out = ResponseWriter.get().append('[');
 
             if (query.isPresent()) {
                 String location = query.get();
-                IDeque<Location> locs = graph.getLocationByName(location);
-
-                if (!locs.isEmpty()) {
-                    IDeque<String> locList = new LinkedDeque<>();
+                IDeque<Location> locs = view.getLocationByName(location);
 
-                    for (Location loc : locs) {
-                        if (loc.type == Location.Type.BUILDING) {
-                            String locStr = loc.lat + "::" + loc.lon + "::" + loc.name + "::" + loc.id;
-                            locList.add(locStr);
-                        }
+                int count = 0;
+                for (Location loc : locs) {
+                    if (loc.type == Location.Type.BUILDING) {
+                        appendLocation(out.append(count++ == 0 ? "" : ", "), loc).append("::").append(loc.id);
                     }
-
-                    response = locList.toString();
                 }
             }
 
-            t.sendResponseHeaders(200, 0);
-            OutputStream os = t.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
+            out.append(']').send(t);
         }
     }
 
@@ -179,38 +541,40 @@ public class BeaverMaps {
             Optional<String> name = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("name=")).map(x -> x.split("=")[1]).findAny();
             Optional<String> id = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("id=")).map(x -> x.split("=")[1]).findAny();
             Optional<String> distance = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("distance=")).map(x -> x.split("=")[1]).findAny();
-            String response = "[]";
+            Optional<String> mode = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("mode=")).map(x -> x.split("=")[1]).findAny();
+            ResponseWriter out = ResponseWriter.get().append('[');
 
             if (name.isPresent()) {
                 String nameS = name.get();
                 String idS = id.orElse(null);
                 Location l = idS != null ?
-                        graph.getLocationByID(Long.parseLong(idS)) :
-                        graph.getLocationByName(nameS).peek();
+                        view.getLocationByID(Long.parseLong(idS)) :
+                        view.getLocationByName(nameS).peek();
 
                 if (l != null) {
-                    IDeque<String> locList = new LinkedDeque<>();
+                    // the center comes first, then the buildings around it
+                    appendLocation(out, l);
                     double dist = Double.parseDouble(distance.orElse("200"));
-                    ISet<Location> closeLocs = graph.dfs(l, dist * 2);
-                    closeLocs.remove(l);
-
-                    for (Location loc : closeLocs) {
-                        if (l.getDistance(loc) < dist && loc.type == Location.Type.BUILDING) {
-                            String locStr = loc.lat + "::" + loc.lon + "::" + loc.name + "::" + loc.id;
-                            locList.add(locStr);
+                    if (mode.isPresent() && mode.get().equals("network")) {
+                        // walking distance along roads instead of straight-line distance
+                        for (Location loc : view.isochrone(l, dist)) {
+                            appendLocation(out.append(", "), loc).append("::").append(loc.id);
+                        }
+                    }
+                    else {
+                        ISet<Location> closeLocs = view.dfs(l, dist * 2);
+                        closeLocs.remove(l);
+
+                        for (Location loc : closeLocs) {
+                            if (l.getDistance(loc) < dist && loc.type == Location.Type.BUILDING) {
+                                appendLocation(out.append(", "), loc).append("::").append(loc.id);
+                            }
                         }
                     }
-
-                    locList.addFront(l.lat + "::" + l.lon + "::" + l.name);
-
-                    response = locList.toString();
                 }
             }
 
-            t.sendResponseHeaders(200, 0);
-            OutputStream os = t.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
+            out.append(']').send(t);
         }
     }
 
@@ -218,37 +582,36 @@ public class BeaverMaps {
         @Override
         public void handle(HttpExchange t) throws IOException {
             Optional<String> query = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("query=")).map(x -> x.split("=")[1]).findAny();
-            String response = "[]";
+            // the page sends a session token, so each keystroke continues from the previous one
+            Optional<String> session = Stream.of(t.getRequestURI().getQuery().split("\\&")).filter(x -> x.startsWith("session=")).map(x -> x.split("=")[1]).findAny();
+            ResponseWriter out = ResponseWriter.get().append('[');
             if (query.isPresent()) {
-                long before = System.currentTimeMillis();
-                IDeque<Long> options = COMPLETER.complete(query.get());
-                String[] opts = new String[options.size()];
-                Long[] ids = new Long[options.size()];
-
-                for (int i = 0; i < opts.length; i++) {
+                IDeque<Long> options = session.isPresent()
+                        ? MapsAutoCompleter.complete(session.get(), query.get())
+                        : MapsAutoCompleter.complete(query.get());
+                for (int i = 0; i < NUMBER_OF_OPTIONS && !options.isEmpty(); i++) {
                     long id = options.removeFront();
-                    ids[i] = id;
-                    opts[i] = graph.getLocationByID(id).displayString();
+                    out.append(i == 0 ? "{\"value\": \"" : ", {\"value\": \"");
+                    appendDisplayString(out, view.getLocationByID(id));
+                    out.append("\", \"id\": ").append(id).append('}');
                 }
+            }
 
-                long after = System.currentTimeMillis();
-                StringBuilder result = new StringBuilder();
-                for (int i = 0; i < opts.length && i < NUMBER_OF_OPTIONS; i++) {
-                    result.append("{\"value\": \"" + opts[i].replace("\"", "\\\"") + "\", \"id\": " + ids[i] + "}, ");
-                }
-                System.out.println("\"" + query.get() + "\" took " + (after - before) + " milliseconds!");
-                if (result.length() > 0) {
-                    response = result.toString();
-                    response = "[" + response.substring(0, response.length() - 2) + "]";
-                }
+            out.append(']').send(t);
+        }
 
+        /**
+         * Appends loc.displayString(), escaped for a JSON string.
+         */
+        static void appendDisplayString(ResponseWriter out, Location loc) {
+            out.appendEscaped(loc.name).append(" (");
+            if (loc.address != null) {
+                out.appendEscaped(loc.address);
             }
-
-            System.out.println(response);
-            t.sendResponseHeaders(200, 0);
-            OutputStream os = t.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
+            else {
+                out.append(loc.lat).append(", ").append(loc.lon);
+            }
+            out.append(')');
         }
     }
 }
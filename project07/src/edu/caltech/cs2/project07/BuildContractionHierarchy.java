@@ -0,0 +1,35 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.CompactGraph;
+import edu.caltech.cs2.datastructures.ContractionHierarchy;
+
+import java.io.IOException;
+
+/**
+ * Offline preprocessing for BeaverMaps: builds the contraction hierarchy of a region and writes it
+ * to data/region/region.ch, where BeaverMaps picks it up at startup and routes with it by default.
+ * The file must be rebuilt whenever the region's JSON data changes (loading checks the vertex ids).
+ *
+ * Usage: BuildContractionHierarchy [region], e.g. "BuildContractionHierarchy caltech".
+ * The region defaults to pasadena.
+ */
+public class BuildContractionHierarchy {
+    public static void main(String[] args) throws IOException {
+        String region = args.length > 0 ? args[0] : "pasadena";
+        String prefix = "data/" + region + "/" + region;
+
+        BeaverMapsGraph graph = new BeaverMapsGraph(prefix + ".buildings.json",
+                prefix + ".waypoints.json", prefix + ".roads.json");
+        CompactGraph g = graph.compactGraph();
+
+        long start = System.currentTimeMillis();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(g);
+        long end = System.currentTimeMillis();
+        System.out.println("Contracted " + g.size() + " vertices and " + g.edgeCount() + " edges in "
+                + (end - start) + " millis, adding " + hierarchy.shortcutCount() + " shortcuts.");
+
+        hierarchy.write(prefix + ".ch");
+        System.out.println("Wrote " + prefix + ".ch");
+    }
+}
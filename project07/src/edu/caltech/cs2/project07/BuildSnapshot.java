@@ -0,0 +1,33 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.GraphSnapshot;
+
+import java.io.IOException;
+
+/**
+ * Converts a region's JSON files into a binary snapshot at data/region/region.snapshot, which
+ * BeaverMaps loads instead of the JSON when it exists. Rerun it whenever the JSON data changes.
+ *
+ * Usage: BuildSnapshot [region], e.g. "BuildSnapshot caltech". The region defaults to pasadena.
+ */
+public class BuildSnapshot {
+    public static void main(String[] args) throws IOException {
+        String region = args.length > 0 ? args[0] : "pasadena";
+        String prefix = "data/" + region + "/" + region;
+
+        long start = System.currentTimeMillis();
+        BeaverMapsGraph graph = new BeaverMapsGraph(prefix + ".buildings.json",
+                prefix + ".waypoints.json", prefix + ".roads.json");
+        long end = System.currentTimeMillis();
+        System.out.println("Reading JSON took " + (end - start) + " millis.");
+
+        GraphSnapshot.write(graph, prefix + ".snapshot");
+        System.out.println("Wrote " + prefix + ".snapshot");
+
+        start = System.currentTimeMillis();
+        GraphSnapshot.read(prefix + ".snapshot");
+        end = System.currentTimeMillis();
+        System.out.println("Reading the snapshot took " + (end - start) + " millis.");
+    }
+}
@@ -0,0 +1,202 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.ChainingHashDictionary;
+import edu.caltech.cs2.datastructures.LongObjectMap;
+import edu.caltech.cs2.datastructures.MoveToFrontDictionary;
+import edu.caltech.cs2.datastructures.ProbingHashDictionary;
+import edu.caltech.cs2.interfaces.IDictionary;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the IDictionary implementations the graph code can be built on, on the operation
+ * mixes it produces: filling a dictionary with vertex ids, looking them up (hits and misses),
+ * a mix of 80% get / 10% put / 10% remove on a full dictionary, and emptying it again.
+ * Keys are random Longs, like OSM ids. Each mix prints the mean time per operation over the
+ * measured rounds. LongObjectMap runs the same mixes on primitive long keys, for comparison with
+ * the boxed dictionaries.
+ *
+ * Every implementation runs in a JVM of its own, so the JIT compiles the timing loops for
+ * that implementation alone instead of for whichever one happened to run first.
+ *
+ * Usage: DictionaryBenchmark [keys] [rounds] [implementation], e.g. "DictionaryBenchmark 100000 10".
+ * Without an implementation, every one in IMPLEMENTATIONS is measured.
+ */
+public class DictionaryBenchmark {
+    private static final int WARMUP_ROUNDS = 10;
+    private static final String[] IMPLEMENTATIONS = {"ChainingHashDictionary", "ProbingHashDictionary", "LongObjectMap"};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Random random = new Random(42);
+        Long[] keys = new Long[n];
+        Long[] absent = new Long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = random.nextLong() & Long.MAX_VALUE;
+            absent[i] = random.nextLong() | Long.MIN_VALUE;
+        }
+        // operations of the mix: 0-7 get, 8 put, 9 remove
+        int[] mix = new int[n];
+        for (int i = 0; i < n; i++) {
+            mix[i] = random.nextInt(10);
+        }
+
+        if (args.length < 3) {
+            System.out.println(n + " keys");
+            for (String implementation : IMPLEMENTATIONS) {
+                String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+                new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), DictionaryBenchmark.class.getName(),
+                        Integer.toString(n), Integer.toString(rounds), implementation).inheritIO().start().waitFor();
+            }
+        }
+        else if (args[2].equals("ChainingHashDictionary")) {
+            run(args[2], () -> new ChainingHashDictionary<>(MoveToFrontDictionary::new), keys, absent, mix, rounds);
+        }
+        else if (args[2].equals("ProbingHashDictionary")) {
+            run(args[2], ProbingHashDictionary::new, keys, absent, mix, rounds);
+        }
+        else if (args[2].equals("LongObjectMap")) {
+            run(args[2], unbox(keys), unbox(absent), mix, rounds);
+        }
+        else {
+            throw new IllegalArgumentException("Unknown implementation " + args[2]);
+        }
+    }
+
+    private static void run(String name, Supplier<IDictionary<Long, Long>> factory, Long[] keys, Long[] absent,
+                            int[] mix, int rounds) {
+        long[] nanos = new long[5];
+        long checksum = 0;
+        for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+            IDictionary<Long, Long> dictionary = factory.get();
+            long[] times = new long[5];
+
+            long before = System.nanoTime();
+            for (Long key : keys) {
+                dictionary.put(key, key);
+            }
+            times[0] = System.nanoTime() - before;
+
+            before = System.nanoTime();
+            for (Long key : keys) {
+                checksum += dictionary.get(key);
+            }
+            times[1] = System.nanoTime() - before;
+
+            before = System.nanoTime();
+            for (Long key : absent) {
+                checksum += dictionary.containsKey(key) ? 1 : 0;
+            }
+            times[2] = System.nanoTime() - before;
+
+            before = System.nanoTime();
+            // every remove takes out the oldest key the mix put in, so the dictionary stays about the same size
+            int puts = 0;
+            int removes = 0;
+            for (int i = 0; i < mix.length; i++) {
+                if (mix[i] == 8) {
+                    dictionary.put(absent[puts], absent[puts]);
+                    puts++;
+                }
+                else if (mix[i] == 9 && removes < puts) {
+                    dictionary.remove(absent[removes]);
+                    removes++;
+                }
+                else {
+                    checksum += dictionary.get(keys[i]);
+                }
+            }
+            times[3] = System.nanoTime() - before;
+
+            before = System.nanoTime();
+            for (Long key : keys) {
+                dictionary.remove(key);
+            }
+            times[4] = System.nanoTime() - before;
+
+            if (round >= 0) {
+                for (int i = 0; i < times.length; i++) {
+                    nanos[i] += times[i];
+                }
+            }
+        }
+        print(name, nanos, (double) keys.length * rounds, checksum);
+    }
+
+    private static long[] unbox(Long[] keys) {
+        long[] unboxed = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            unboxed[i] = keys[i];
+        }
+        return unboxed;
+    }
+
+    // the same mixes as run above, on a LongObjectMap
+    private static void run(String name, long[] keys, long[] absent, int[] mix, int rounds) {
+        long[] nanos = new long[5];
+        long checksum = 0;
+        for (int round = -WARMUP_ROUNDS; round < rounds; round++) {
+            LongObjectMap<Long> map = new LongObjectMap<>();
+            long[] times = new long[5];
+
+            long before = System.nanoTime();
+            for (long key : keys) {
+                map.put(key, key);
+            }
+            times[0] = System.nanoTime() - before;
+
+            before = System.nanoTime();
+            for (long key : keys) {
+                checksum += map.get(key);
+            }
+            times[1] = System.nanoTime() - before;
+
+            before = System.nanoTime();
+            for (long key : absent) {
+                checksum += map.containsKey(key) ? 1 : 0;
+            }
+            times[2] = System.nanoTime() - before;
+
+            before = System.nanoTime();
+            int puts = 0;
+            int removes = 0;
+            for (int i = 0; i < mix.length; i++) {
+                if (mix[i] == 8) {
+                    map.put(absent[puts], absent[puts]);
+                    puts++;
+                }
+                else if (mix[i] == 9 && removes < puts) {
+                    map.remove(absent[removes]);
+                    removes++;
+                }
+                else {
+                    checksum += map.get(keys[i]);
+                }
+            }
+            times[3] = System.nanoTime() - before;
+
+            before = System.nanoTime();
+            for (long key : keys) {
+                map.remove(key);
+            }
+            times[4] = System.nanoTime() - before;
+
+            if (round >= 0) {
+                for (int i = 0; i < times.length; i++) {
+                    nanos[i] += times[i];
+                }
+            }
+        }
+        print(name, nanos, (double) keys.length * rounds, checksum);
+    }
+
+    private static void print(String name, long[] nanos, double operations, long checksum) {
+        System.out.printf("%-24s put %7.1f ns   get %7.1f ns   miss %7.1f ns   mix %7.1f ns   remove %7.1f ns   (checksum %d)%n",
+                name, nanos[0] / operations, nanos[1] / operations, nanos[2] / operations, nanos[3] / operations,
+                nanos[4] / operations, checksum);
+    }
+}
@@ -0,0 +1,85 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Loads a region's JSON files several times and prints, for each load, the time taken, the bytes
+ * allocated, the peak heap in use and the heap still held by the finished graph.
+ *
+ * Usage: LoadBenchmark [region] [rounds], e.g. "LoadBenchmark caltech 5".
+ * The region defaults to pasadena. The peak is only meaningful with a small young generation
+ * (e.g. -XX:+UseG1GC -Xmn8m), since otherwise it mostly measures the size of eden.
+ */
+public class LoadBenchmark {
+    // the previous round's graph, dropped before measuring the next one
+    private static BeaverMapsGraph graph;
+
+    public static void main(String[] args) {
+        String region = args.length > 0 ? args[0] : "pasadena";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String prefix = "data/" + region + "/" + region;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int round = 0; round < rounds; round++) {
+            graph = null;
+            collect();
+            long baseline = heapInUse();
+            resetPeaks();
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+
+            long start = System.currentTimeMillis();
+            graph = new BeaverMapsGraph(prefix + ".buildings.json",
+                    prefix + ".waypoints.json", prefix + ".roads.json");
+            long end = System.currentTimeMillis();
+            long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            long peak = peakHeap() - baseline;
+
+            collect();
+            long retained = heapInUse() - baseline;
+            System.out.printf("%s round %d: %d vertices in %d millis, allocated %.1f MB, peak heap %.1f MB, "
+                            + "retained %.1f MB%n", region, round, graph.vertices().size(), end - start,
+                    allocated / 1e6, peak / 1e6, retained / 1e6);
+        }
+    }
+
+    private static void collect() {
+        // one collection may leave behind objects whose finalization or reference processing it triggered
+        System.gc();
+        System.gc();
+    }
+
+    private static long heapInUse() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Sum of per-pool peaks since the last reset; an upper bound on the true peak, since pools peak at different times.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package edu.caltech.cs2.project07;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.Location;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays the *.paths_trace.json, *.closest_trace.json and *.radius_trace.json workloads of a region
+ * as /pathfinder, /nearest, /autocomplete (the first few letters of each closest building's name)
+ * and /nearby requests against a local BeaverMaps server, with 1, 2, 4, ... clients sending requests
+ * back to back, and prints the throughput, latency and server-side allocation at each level.
+ * Allocation counts the bytes allocated by the server's dispatcher and handler threads, so it
+ * is only reported for the dispatcher and pool executors.
+ *
+ * Usage: LoadGenerator [region] [executor ...], e.g. "LoadGenerator caltech dispatcher pool virtual".
+ * The region defaults to pasadena; every executor (see BeaverMaps.createExecutor, default "pool")
+ * gets its own server and run. Throughput can only grow while there are idle cores, so the
+ * speedup column levels off at the machine's core count.
+ */
+public class LoadGenerator {
+    /**
+     * System property that limits the mix to some endpoints, e.g. "/pathfinder,/autocomplete".
+     */
+    static final String ENDPOINTS_PROPERTY = "beavermaps.load.endpoints";
+    private static final int MAX_CLIENTS = 32;
+    // every client level sends each request in the mix this many times (after one warm-up pass)
+    private static final int ROUNDS = 3;
+    private static final int AUTOCOMPLETE_LETTERS = 4;
+
+    public static void main(String[] args) throws Exception {
+        String region = args.length > 0 ? args[0] : "pasadena";
+        String prefix = "data/" + region + "/" + region;
+        BeaverMapsGraph graph = new BeaverMapsGraph(prefix + ".buildings.json",
+                prefix + ".waypoints.json", prefix + ".roads.json");
+        BeaverMaps.serve(graph);
+        List<String> requests = loadRequests(graph, prefix);
+        System.out.println(region + ": " + requests.size() + " requests per round, "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+
+        String[] executors = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[]{"pool"};
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        for (String spec : executors) {
+            ExecutorService executor = BeaverMaps.createExecutor(spec);
+            HttpServer server = BeaverMaps.createServer(0, executor);
+            server.start();
+            String base = "http://localhost:" + server.getAddress().getPort();
+            System.out.println("executor " + spec);
+            try {
+                replay(client, base, requests, 1, new long[requests.size()]);
+                double baseline = 0;
+                for (int clients = 1; clients <= MAX_CLIENTS; clients *= 2) {
+                    long[] nanos = new long[requests.size() * ROUNDS];
+                    long allocatedBefore = serverAllocatedBytes();
+                    long before = System.nanoTime();
+                    replay(client, base, requests, clients, nanos);
+                    double seconds = (System.nanoTime() - before) / 1e9;
+                    double allocated = (double) (serverAllocatedBytes() - allocatedBefore) / nanos.length;
+                    double throughput = nanos.length / seconds;
+                    if (clients == 1) {
+                        baseline = throughput;
+                    }
+                    Arrays.sort(nanos);
+                    System.out.printf("  %3d clients  %9.1f req/s  speedup %5.2f   p50 %8.3f ms   p99 %8.3f ms   %s%n",
+                            clients, throughput, throughput / baseline,
+                            RouteBenchmark.percentile(nanos, 0.50) / 1e6, RouteBenchmark.percentile(nanos, 0.99) / 1e6,
+                            spec.equals("virtual") ? "" : String.format("%9.0f B/req", allocated));
+                }
+                HttpRequest stats = HttpRequest.newBuilder(URI.create(base + "/stats")).build();
+                System.out.println("  " + client.send(stats, HttpResponse.BodyHandlers.ofString()).body());
+            }
+            finally {
+                server.stop(0);
+                if (executor != null) {
+                    executor.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes allocated so far by the live threads that run the server's handlers.
+     */
+    private static long serverAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && (info.getThreadName().startsWith(BeaverMaps.HANDLER_THREAD_NAME)
+                    || info.getThreadName().startsWith("HTTP-Dispatcher"))) {
+                total += threads.getThreadAllocatedBytes(info.getThreadId());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Builds the request mix: one request per entry of each trace file the region has.
+     */
+    static List<String> loadRequests(BeaverMapsGraph graph, String prefix) throws IOException {
+        List<String> requests = new ArrayList<>();
+        for (JsonObject query : readTrace(prefix + ".paths_trace.json")) {
+            requests.add("/pathfinder?start=x&start-id=" + query.get("start").getAsLong()
+                    + "&end=x&end-id=" + query.get("target").getAsLong());
+        }
+        for (JsonObject query : readTrace(prefix + ".closest_trace.json")) {
+            Location center = graph.getLocationByID(query.get("center").getAsLong());
+            if (center != null) {
+                requests.add("/nearest?lat=" + center.lat + "&lon=" + center.lon);
+            }
+            Location closest = graph.getLocationByID(query.get("closest").getAsLong());
+            if (closest != null && closest.name != null) {
+                String letters = closest.name.substring(0, Math.min(AUTOCOMPLETE_LETTERS, closest.name.length()));
+                requests.add("/autocomplete?query=" + URLEncoder.encode(letters, StandardCharsets.UTF_8));
+            }
+        }
+        for (JsonObject query : readTrace(prefix + ".radius_trace.json")) {
+            requests.add("/nearby?name=x&id=" + query.get("center").getAsLong()
+                    + "&distance=" + query.get("radius").getAsDouble());
+        }
+        String endpoints = System.getProperty(ENDPOINTS_PROPERTY);
+        if (endpoints != null) {
+            List<String> only = Arrays.asList(endpoints.split(","));
+            requests.removeIf(r -> !only.contains(r.substring(0, r.indexOf('?'))));
+        }
+        return requests;
+    }
+
+    private static List<JsonObject> readTrace(String traceFile) throws IOException {
+        List<JsonObject> entries = new ArrayList<>();
+        if (new File(traceFile).exists()) {
+            try (FileReader reader = new FileReader(traceFile)) {
+                for (JsonElement e : JsonParser.parseReader(reader).getAsJsonArray()) {
+                    entries.add(e.getAsJsonObject());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Sends nanos.length requests, cycling through the mix, from the given number of client threads
+     * that each wait for one response before sending the next; records each request's latency in nanos.
+     */
+    private static void replay(HttpClient client, String base, List<String> requests, int clients, long[] nanos)
+            throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            threads[c] = new Thread(() -> {
+                for (int i = next.getAndIncrement(); i < nanos.length; i = next.getAndIncrement()) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(base + requests.get(i % requests.size()))).build();
+                    long before = System.nanoTime();
+                    try {
+                        if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    catch (IOException | InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                    nanos[i] = System.nanoTime() - before;
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failures.get() > 0) {
+            System.out.println("  " + failures.get() + " requests failed");
+        }
+    }
+}
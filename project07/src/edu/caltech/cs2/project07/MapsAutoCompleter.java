@@ -2,113 +2,467 @@ package edu.caltech.cs2.project07;
 
 import edu.caltech.cs2.datastructures.LinkedDeque;
 import edu.caltech.cs2.datastructures.Location;
-import edu.caltech.cs2.datastructures.TrieMap;
 import edu.caltech.cs2.interfaces.IDeque;
 import edu.caltech.cs2.interfaces.ISet;
-import edu.caltech.cs2.interfaces.ITrieMap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Completes partly typed building names for /autocomplete.
+ *
+ * The index is a compressed (radix) trie over lowercased keys: each building's full name, every
+ * suffix of its name that starts at a word, and every such suffix of its address. So "lake av"
+ * finds "South Lake Avenue" as well as names that start with "lake av". Each node stores the
+ * best TOP_K buildings anywhere below it, worked out once when the index is built, so a query
+ * only walks down the trie and returns that list.
+ *
+ * Buildings are ranked by how they match (full name first, then a later word of the name, then
+ * the address), then by shorter name, then alphabetically. The index is immutable once built
+ * and is swapped in whole, so any number of threads may call complete() at once.
+ *
+ * A client that sends one request per keystroke can pass a session token to complete(session, term),
+ * which continues from where the session's previous term left off in the trie.
+ */
 public class MapsAutoCompleter {
-    private static ITrieMap<String, IDeque<String>, IDeque<Location>> locs = new TrieMap<>((IDeque<String> s) -> s);
+    // the most completions complete() returns
+    public static final int TOP_K = BeaverMaps.NUMBER_OF_OPTIONS;
+    private static final int MATCHES_NAME = 0;
+    private static final int MATCHES_NAME_WORD = 1;
+    private static final int MATCHES_ADDRESS = 2;
+
+    // the most typing sessions kept, and how long one is kept after its last request
+    public static final int MAX_SESSIONS = 10000;
+    public static final long SESSION_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(5);
+    // trie cursors (see Index.walk)
+    private static final long ROOT = 0;
+    private static final long NO_MATCH = -1;
+
+    private static volatile Index index = new Index(new Location[0]);
+    // access order, so iteration starts at the least recently used session
+    private static final LinkedHashMap<String, Session> SESSIONS = new LinkedHashMap<>(16, 0.75f, true);
+    private static final LongAdder CONTINUED = new LongAdder();
+    private static final LongAdder RESTARTED = new LongAdder();
+
+    // guarded by SESSIONS
+    private static class Session {
+        Index index;
+        String query;
+        long cursor;
+        long lastUsed;
+    }
 
     public static void populateLocations(ISet<Location> locations) {
-        locs.clear();
+        List<Location> named = new ArrayList<>();
         for (Location l : locations) {
-            if (l.name == null) {
-                continue;
+            if (l.name != null && !normalize(l.name).isEmpty()) {
+                named.add(l);
             }
+        }
+        index = new Index(named.toArray(new Location[0]));
+    }
 
-            String[] words = l.name.toLowerCase().split(" ");
-            char[] charArr = l.name.toLowerCase().toCharArray();
-            String[] strCharArr = new String[charArr.length];
+    /**
+     * Returns the ids of the best (at most TOP_K) buildings whose name or address has a word
+     * sequence starting with term, best first.
+     * @param term the text typed so far
+     * @return the ids of the completions
+     */
+    public static IDeque<Long> complete(String term) {
+        Index current = index;
+        return current.completions(current.walk(ROOT, query(term), 0));
+    }
 
-            for (int i = 0; i < charArr.length; i++) {
-                strCharArr[i] = Character.toString(charArr[i]);
+    /**
+     * Like complete(term), for a client that sends one request per keystroke. The trie position
+     * reached for the session's previous term is kept, so when term extends that term only the
+     * new characters are walked; otherwise the walk starts over from the root.
+     * At most MAX_SESSIONS sessions are kept, and one unused for SESSION_TIMEOUT_NANOS is dropped.
+     * @param session a token that identifies the client, e.g. one per page load
+     * @param term the text typed so far
+     * @return the ids of the completions
+     */
+    public static IDeque<Long> complete(String session, String term) {
+        Index current = index;
+        String query = query(term);
+        long now = System.nanoTime();
+        long cursor;
+        // the walk is a few array reads, so it is done under the lock rather than in two steps
+        synchronized (SESSIONS) {
+            Session s = SESSIONS.get(session);
+            if (s != null && s.index == current && now - s.lastUsed < SESSION_TIMEOUT_NANOS
+                    && query.startsWith(s.query)) {
+                cursor = current.walk(s.cursor, query, s.query.length());
+                CONTINUED.increment();
             }
-
-            for (int i = 1; i <= l.name.length(); i++) {
-                String[] subarr = Arrays.copyOfRange(strCharArr, 0, i);
-                IDeque<String> iterableSubarr = listFromArray(subarr);
-
-                if (!locs.containsKey(iterableSubarr)) {
-                    locs.put(iterableSubarr, new LinkedDeque<>());
+            else {
+                cursor = current.walk(ROOT, query, 0);
+                RESTARTED.increment();
+                if (s == null) {
+                    s = new Session();
+                    SESSIONS.put(session, s);
                 }
+            }
+            s.index = current;
+            s.query = query;
+            s.cursor = cursor;
+            s.lastUsed = now;
 
-                locs.get(iterableSubarr).add(l);
+            // access order puts the least recently used session first
+            Iterator<Session> eldest = SESSIONS.values().iterator();
+            while (eldest.hasNext()) {
+                Session e = eldest.next();
+                if (SESSIONS.size() <= MAX_SESSIONS && now - e.lastUsed < SESSION_TIMEOUT_NANOS) {
+                    break;
+                }
+                eldest.remove();
             }
+        }
+        return current.completions(cursor);
+    }
+
+    /**
+     * @return the number of sessions and how many session requests continued or restarted a walk, as a JSON object
+     */
+    public static String sessionStats() {
+        int size;
+        synchronized (SESSIONS) {
+            size = SESSIONS.size();
+        }
+        return "{\"sessions\": " + size + ", \"continued\": " + CONTINUED.sum() + ", \"restarted\": " + RESTARTED.sum() + "}";
+    }
 
-            for (int i = 0; i < words.length; i++) {
-                String[] subarr = Arrays.copyOfRange(words, i, words.length);
-                IDeque<String> iterableSubarr = listFromArray(subarr);
+    /**
+     * @return the approximate number of bytes held by the index (excluding the Location objects)
+     */
+    public static long memoryFootprint() {
+        return index.memoryFootprint();
+    }
 
-                if (!locs.containsKey(iterableSubarr)) {
-                    locs.put(iterableSubarr, new LinkedDeque<>());
+    /**
+     * Normalizes term, keeping one trailing space so that "south " only matches the whole word.
+     */
+    private static String query(String term) {
+        String query = normalize(term);
+        if (!query.isEmpty() && Character.isWhitespace(term.charAt(term.length() - 1))) {
+            query += " ";
+        }
+        return query;
+    }
+
+    /**
+     * Lowercases s and turns each run of whitespace into one space, dropping any at the ends.
+     */
+    private static String normalize(String s) {
+        String lower = s.strip().toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(lower.length());
+        boolean space = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+            }
+            else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
                 }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static class Index {
+        private final long[] ids;
+        // radix trie; node 0 is the root and the children of a node are consecutive, sorted by first character
+        // (these are only written by the constructor)
+        private char[] labels;
+        private int[] labelStart;
+        private int[] labelEnd;
+        private int[] firstChild;
+        private int[] childCount;
+        // rank = match kind * ids.length + position in ids, best first and one per building
+        private int[][] top;
 
-                locs.get(iterableSubarr).add(l);
+        // only used while building
+        private String[] keys;
+        private int[][] postings;
+        private StringBuilder labelBuilder;
+        private int nodeCount;
+        private int[] seen;
+        private int stamp;
+
+        Index(Location[] locations) {
+            // a building's position in ids orders it among buildings that match the same way
+            Location[] byRank = locations.clone();
+            Arrays.sort(byRank, Comparator.comparingInt((Location l) -> l.name.length())
+                    .thenComparing(l -> l.name).thenComparingLong(l -> l.id));
+            int n = byRank.length;
+            this.ids = new long[n];
+            for (int p = 0; p < n; p++) {
+                this.ids[p] = byRank[p].id;
             }
 
-            if (l.address == null) {
-                continue;
+            this.seen = new int[n];
+            List<String> keyList = new ArrayList<>();
+            List<Integer> rankList = new ArrayList<>();
+            for (int p = 0; p < n; p++) {
+                String name = normalize(byRank[p].name);
+                addWordSuffixes(keyList, rankList, name, MATCHES_NAME * n + p, MATCHES_NAME_WORD * n + p);
+                if (byRank[p].address != null) {
+                    String address = normalize(byRank[p].address);
+                    addWordSuffixes(keyList, rankList, address, MATCHES_ADDRESS * n + p, MATCHES_ADDRESS * n + p);
+                }
             }
+            this.groupKeys(keyList, rankList);
 
-            words = l.address.toLowerCase().split(" ");
-            for (int i = 0; i < words.length; i++) {
-                String[] subarr = Arrays.copyOfRange(words, i, words.length);
-                IDeque<String> iterableSubarr = listFromArray(subarr);
+            // a radix trie over k keys has at most 2k nodes, counting the root
+            int maxNodes = 2 * this.keys.length + 1;
+            this.labelStart = new int[maxNodes];
+            this.labelEnd = new int[maxNodes];
+            this.firstChild = new int[maxNodes];
+            this.childCount = new int[maxNodes];
+            int[][] tops = new int[maxNodes][];
+            this.labelBuilder = new StringBuilder();
+            this.nodeCount = 1;
+            this.build(0, 0, this.keys.length, 0, tops);
+            this.labels = this.labelBuilder.toString().toCharArray();
+            this.labelStart = Arrays.copyOf(this.labelStart, this.nodeCount);
+            this.labelEnd = Arrays.copyOf(this.labelEnd, this.nodeCount);
+            this.firstChild = Arrays.copyOf(this.firstChild, this.nodeCount);
+            this.childCount = Arrays.copyOf(this.childCount, this.nodeCount);
+            this.top = Arrays.copyOf(tops, this.nodeCount);
 
-                if (!locs.containsKey(iterableSubarr)) {
-                    locs.put(iterableSubarr, new LinkedDeque<>());
-                }
+            this.keys = null;
+            this.postings = null;
+            this.labelBuilder = null;
+            this.seen = null;
+        }
 
-                locs.get(iterableSubarr).add(l);
+        /**
+         * Adds text and each suffix of it that starts at a word. Every key ends with a space, so
+         * a query with a trailing space ("sloan ") also matches a word at the end of the text.
+         */
+        private static void addWordSuffixes(List<String> keys, List<Integer> ranks, String text, int firstRank, int laterRank) {
+            if (text.isEmpty()) {
+                return;
+            }
+            String key = text + " ";
+            keys.add(key);
+            ranks.add(firstRank);
+            for (int i = text.indexOf(' '); i >= 0; i = text.indexOf(' ', i + 1)) {
+                keys.add(key.substring(i + 1));
+                ranks.add(laterRank);
             }
         }
-    }
 
-    private static IDeque<String> listFromArray(String[] arr) {
-        IDeque<String> lst = new LinkedDeque<>();
-
-        for (String s: arr) {
-            lst.addBack(s);
+        /**
+         * Sorts the keys and merges repeats, so keys holds each key once and postings[k] the
+         * ranks of keys[k], best first and one per building.
+         */
+        private void groupKeys(List<String> keyList, List<Integer> rankList) {
+            Integer[] order = new Integer[keyList.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing((Integer i) -> keyList.get(i)).thenComparing(rankList::get));
+            List<String> distinct = new ArrayList<>();
+            List<int[]> lists = new ArrayList<>();
+            int n = this.ids.length;
+            for (int from = 0; from < order.length; ) {
+                String key = keyList.get(order[from]);
+                int to = from;
+                while (to < order.length && keyList.get(order[to]).equals(key)) {
+                    to++;
+                }
+                int[] ranks = new int[to - from];
+                int count = 0;
+                this.stamp++;
+                for (int i = from; i < to; i++) {
+                    int rank = rankList.get(order[i]);
+                    // ranks are ascending, so a building's best rank comes first
+                    if (this.seen[rank % n] != this.stamp) {
+                        this.seen[rank % n] = this.stamp;
+                        ranks[count++] = rank;
+                    }
+                }
+                distinct.add(key);
+                lists.add(Arrays.copyOf(ranks, count));
+                from = to;
+            }
+            this.keys = distinct.toArray(new String[0]);
+            this.postings = lists.toArray(new int[0][]);
         }
 
-        return lst;
-    }
+        /**
+         * Builds the subtree of node, whose keys are keys[lo..hi) and whose label ends at depth.
+         */
+        private void build(int node, int lo, int hi, int depth, int[][] tops) {
+            int terminal = -1;
+            int from = lo;
+            if (from < hi && this.keys[from].length() == depth) {
+                terminal = from;
+                from++;
+            }
 
-    public static IDeque<String> charArrToStringIterable(char[] ca) {
-        IDeque<String> d = new LinkedDeque<>();
+            // children are numbered together, in character order, before any of them is built
+            int groups = 0;
+            for (int i = from; i < hi; i = this.groupEnd(i, hi, depth)) {
+                groups++;
+            }
+            int first = this.nodeCount;
+            this.firstChild[node] = first;
+            this.childCount[node] = groups;
+            this.nodeCount += groups;
+            int child = first;
+            for (int i = from; i < hi; i = this.groupEnd(i, hi, depth)) {
+                int end = commonPrefix(this.keys[i], this.keys[this.groupEnd(i, hi, depth) - 1]);
+                this.labelStart[child] = this.labelBuilder.length();
+                this.labelBuilder.append(this.keys[i], depth, end);
+                this.labelEnd[child] = this.labelBuilder.length();
+                child++;
+            }
+            child = first;
+            for (int i = from; i < hi; ) {
+                int to = this.groupEnd(i, hi, depth);
+                this.build(child, i, to, depth + this.labelEnd[child] - this.labelStart[child], tops);
+                child++;
+                i = to;
+            }
 
-        for (int i = 0; i < ca.length; i++) {
-            d.addBack(Character.toString(ca[i]));
+            // the best TOP_K of this node's own postings and its children's lists
+            int total = terminal < 0 ? 0 : this.postings[terminal].length;
+            for (int c = first; c < first + groups; c++) {
+                total += tops[c].length;
+            }
+            int[] candidates = new int[total];
+            int count = 0;
+            if (terminal >= 0) {
+                for (int rank : this.postings[terminal]) {
+                    candidates[count++] = rank;
+                }
+            }
+            for (int c = first; c < first + groups; c++) {
+                for (int rank : tops[c]) {
+                    candidates[count++] = rank;
+                }
+            }
+            Arrays.sort(candidates);
+            this.stamp++;
+            int[] best = new int[Math.min(TOP_K, total)];
+            int kept = 0;
+            for (int i = 0; i < total && kept < best.length; i++) {
+                int building = candidates[i] % this.ids.length;
+                if (this.seen[building] != this.stamp) {
+                    this.seen[building] = this.stamp;
+                    best[kept++] = candidates[i];
+                }
+            }
+            tops[node] = kept == best.length ? best : Arrays.copyOf(best, kept);
         }
 
-        return d;
-    }
-
-    public static IDeque<Long> complete(String term) {
-        String[] keyPath = term.strip().toLowerCase().split("\\s");
-        IDeque<String> kpIterable = listFromArray(keyPath);
+        /**
+         * @return the end of the run of keys starting at i that have the same character at depth
+         */
+        private int groupEnd(int i, int hi, int depth) {
+            char c = this.keys[i].charAt(depth);
+            int j = i + 1;
+            while (j < hi && this.keys[j].charAt(depth) == c) {
+                j++;
+            }
+            return j;
+        }
 
-        IDeque<IDeque<Location>> options = locs.getCompletions(kpIterable);
-        options.addAll(locs.getCompletions(charArrToStringIterable(term.toLowerCase().toCharArray())));
+        private static int commonPrefix(String a, String b) {
+            int length = Math.min(a.length(), b.length());
+            int i = 0;
+            while (i < length && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
 
-        Set<Long> opts = new HashSet<>();
+        /**
+         * Continues a walk down the trie from cursor over query[from..]. A cursor is the node
+         * reached so far in the high 32 bits and how many characters of its label have been
+         * matched in the low 32 bits; ROOT is the empty prefix and NO_MATCH a prefix no key has.
+         * @return the cursor after query
+         */
+        long walk(long cursor, String query, int from) {
+            if (cursor == NO_MATCH) {
+                return NO_MATCH;
+            }
+            int node = (int) (cursor >>> 32);
+            int matched = (int) cursor;
+            for (int pos = from; pos < query.length(); pos++) {
+                char c = query.charAt(pos);
+                if (this.labelStart[node] + matched < this.labelEnd[node]) {
+                    if (this.labels[this.labelStart[node] + matched] != c) {
+                        return NO_MATCH;
+                    }
+                    matched++;
+                }
+                else {
+                    node = this.findChild(node, c);
+                    if (node < 0) {
+                        return NO_MATCH;
+                    }
+                    matched = 1;
+                }
+            }
+            return (long) node << 32 | matched;
+        }
 
-        for (IDeque<Location> val : options) {
-            for (Location o : val) {
-                opts.add(o.id);
+        /**
+         * @return the ids of the best completions of the prefix that led to cursor, best first
+         */
+        IDeque<Long> completions(long cursor) {
+            IDeque<Long> completions = new LinkedDeque<>();
+            if (cursor != NO_MATCH) {
+                for (int rank : this.top[(int) (cursor >>> 32)]) {
+                    completions.add(this.ids[rank % this.ids.length]);
+                }
             }
+            return completions;
         }
 
-        IDeque<Long> completions = new LinkedDeque<>();
-        for (Long o : opts) {
-            completions.add(o);
+        /**
+         * @return the child of node whose label starts with c, or -1 if there is none
+         */
+        private int findChild(int node, char c) {
+            int lo = this.firstChild[node];
+            int hi = lo + this.childCount[node];
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                char first = this.labels[this.labelStart[mid]];
+                if (first < c) {
+                    lo = mid + 1;
+                }
+                else if (first > c) {
+                    hi = mid;
+                }
+                else {
+                    return mid;
+                }
+            }
+            return -1;
         }
 
-        return completions;
+        long memoryFootprint() {
+            long bytes = 8L * this.ids.length + 2L * this.labels.length + 4 * 4L * this.labelStart.length;
+            for (int[] list : this.top) {
+                // array header plus the reference to it
+                bytes += 16 + 8 + 4L * list.length;
+            }
+            return bytes;
+        }
     }
 }
@@ -0,0 +1,206 @@
+package edu.caltech.cs2.project07;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable UTF-8 byte buffer for building HTTP responses without intermediate Strings.
+ *
+ * Each handler thread has one writer, which get() hands out cleared, so building a response
+ * allocates nothing once the buffer has grown to fit. Strings are encoded straight into the
+ * buffer, and longs and doubles are written digit by digit. The finished response is sent
+ * with a Content-Length instead of chunked encoding.
+ */
+final class ResponseWriter {
+    private static final int INITIAL_CAPACITY = 8192;
+    // a thread drops a buffer that grew past this, so one huge response doesn't pin memory forever
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+    private static final ThreadLocal<ResponseWriter> WRITERS = ThreadLocal.withInitial(ResponseWriter::new);
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L};
+    // doubles with at most this many decimals are written without Double.toString
+    private static final int DECIMALS = 7;
+    private static final long SCALE = POWERS_OF_TEN[DECIMALS];
+
+    private byte[] bytes;
+    private int size;
+
+    private ResponseWriter() {
+        this.bytes = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return this thread's writer, emptied
+     */
+    static ResponseWriter get() {
+        ResponseWriter writer = WRITERS.get();
+        if (writer.bytes.length > MAX_RETAINED_CAPACITY) {
+            writer.bytes = new byte[INITIAL_CAPACITY];
+        }
+        writer.size = 0;
+        return writer;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (this.size + extra > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(2 * this.bytes.length, this.size + extra));
+        }
+    }
+
+    ResponseWriter append(char c) {
+        if (c < 0x80) {
+            this.ensureCapacity(1);
+            this.bytes[this.size++] = (byte) c;
+            return this;
+        }
+        return this.appendCodePoint(c);
+    }
+
+    /**
+     * Appends s encoded as UTF-8 ("null" if s is null, as string concatenation would).
+     */
+    ResponseWriter append(String s) {
+        if (s == null) {
+            return this.append("null");
+        }
+        this.ensureCapacity(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                this.ensureCapacity(1);
+                this.bytes[this.size++] = (byte) c;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                this.appendCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+            }
+            else {
+                this.appendCodePoint(Character.isSurrogate(c) ? '?' : c);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends s with every double quote and backslash escaped, for use inside a JSON string.
+     */
+    ResponseWriter appendEscaped(String s) {
+        if (s == null) {
+            return this.append("null");
+        }
+        int from = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                this.append(s, from, i).append('\\').append(c);
+                from = i + 1;
+            }
+        }
+        return this.append(s, from, s.length());
+    }
+
+    private ResponseWriter append(String s, int from, int to) {
+        if (from == 0 && to == s.length()) {
+            return this.append(s);
+        }
+        for (int i = from; i < to; i++) {
+            this.append(s.charAt(i));
+        }
+        return this;
+    }
+
+    private ResponseWriter appendCodePoint(int cp) {
+        this.ensureCapacity(4);
+        if (cp < 0x800) {
+            this.bytes[this.size++] = (byte) (0xC0 | (cp >> 6));
+        }
+        else if (cp < 0x10000) {
+            this.bytes[this.size++] = (byte) (0xE0 | (cp >> 12));
+            this.bytes[this.size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        }
+        else {
+            this.bytes[this.size++] = (byte) (0xF0 | (cp >> 18));
+            this.bytes[this.size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            this.bytes[this.size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        }
+        this.bytes[this.size++] = (byte) (0x80 | (cp & 0x3F));
+        return this;
+    }
+
+    ResponseWriter append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return this.append(Long.toString(value));
+        }
+        this.ensureCapacity(20);
+        if (value < 0) {
+            this.bytes[this.size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = this.size + digits - 1; i >= this.size; i--) {
+            this.bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        this.size += digits;
+        return this;
+    }
+
+    /**
+     * Appends value exactly as Double.toString would. Values with at most DECIMALS decimals
+     * (such as the coordinates of every waypoint in the map data) are written digit by digit;
+     * anything else falls back to Double.toString.
+     */
+    ResponseWriter append(double value) {
+        double magnitude = Math.abs(value);
+        long units = Math.round(magnitude * SCALE);
+        // Double.toString switches to scientific notation outside [1e-3, 1e7)
+        if (!(magnitude == 0 || (magnitude >= 1e-3 && magnitude < 1e7)) || units / (double) SCALE != magnitude) {
+            return this.append(Double.toString(value));
+        }
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            this.append('-');
+        }
+        this.append(units / SCALE).append('.');
+        long fraction = units % SCALE;
+        int shown = DECIMALS;
+        while (shown > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            shown--;
+        }
+        // leading zeros of the fraction
+        for (long p = POWERS_OF_TEN[shown - 1]; p > 1 && fraction < p; p /= 10) {
+            this.append('0');
+        }
+        return this.append(fraction);
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(this.bytes, this.size);
+    }
+
+    /**
+     * Sends the contents of this writer as a 200 response with a Content-Length, and closes the exchange.
+     */
+    void send(HttpExchange t) throws IOException {
+        send(t, this.bytes, this.size);
+    }
+
+    /**
+     * Sends the first length bytes of response as a 200 response with a Content-Length, and closes the exchange.
+     */
+    static void send(HttpExchange t, byte[] response, int length) throws IOException {
+        // a length of 0 would mean chunked encoding; -1 means no body
+        t.sendResponseHeaders(200, length == 0 ? -1 : length);
+        OutputStream os = t.getResponseBody();
+        os.write(response, 0, length);
+        os.close();
+    }
+}
@@ -0,0 +1,249 @@
+package edu.caltech.cs2.project07;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.ContractionHierarchy;
+import edu.caltech.cs2.datastructures.Location;
+import edu.caltech.cs2.datastructures.Route;
+import edu.caltech.cs2.datastructures.RoutingEngine;
+import edu.caltech.cs2.interfaces.IDeque;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Replays a *.paths_trace.json workload against the routing implementations, checks that
+ * each one agrees with dijkstra(), and prints p50/p99 latency and settled-vertex counts.
+ * If the region has a *.radius_trace.json, the /nearby searches are timed the same way.
+ *
+ * Usage: RouteBenchmark [region] [rounds], e.g. "RouteBenchmark caltech 5".
+ * The region defaults to pasadena and is read from data/region/region.*.json; the contraction
+ * hierarchy is loaded from data/region/region.ch if BuildContractionHierarchy has written one.
+ */
+public class RouteBenchmark {
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MATRIX_SIZE = 200;
+
+    public static void main(String[] args) throws IOException {
+        String region = args.length > 0 ? args[0] : "pasadena";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String prefix = "data/" + region + "/" + region;
+
+        BeaverMapsGraph graph = new BeaverMapsGraph(prefix + ".buildings.json",
+                prefix + ".waypoints.json", prefix + ".roads.json");
+        List<Location[]> queries = loadQueries(graph, prefix + ".paths_trace.json");
+        System.out.println(region + ": " + graph.compactGraph().size() + " vertices, "
+                + graph.compactGraph().edgeCount() + " edges, " + queries.size() + " queries");
+
+        long start = System.currentTimeMillis();
+        if (new File(prefix + ".ch").exists()) {
+            graph.router().setHierarchy(ContractionHierarchy.read(prefix + ".ch", graph.compactGraph()));
+        }
+        ContractionHierarchy hierarchy = graph.router().hierarchy();
+        System.out.println("Contraction hierarchy ready in " + (System.currentTimeMillis() - start) + " millis ("
+                + hierarchy.shortcutCount() + " shortcuts)");
+
+        compare(graph, queries);
+        run("dijkstra()", queries, rounds, graph::dijkstra);
+        for (RoutingEngine.Algorithm algorithm : RoutingEngine.Algorithm.values()) {
+            run("RoutingEngine " + algorithm, queries, rounds, (s, t) -> graph.router().route(s, t, algorithm).path);
+        }
+        for (RoutingEngine.Algorithm algorithm : RoutingEngine.Algorithm.values()) {
+            printSettled(graph.router(), algorithm, queries);
+        }
+
+        runMatrix(graph, queries);
+
+        if (new File(prefix + ".radius_trace.json").exists()) {
+            List<Object[]> searches = loadRadiusSearches(graph, prefix + ".radius_trace.json");
+            System.out.println(searches.size() + " radius searches");
+            runRadius("dfs() /nearby", searches, rounds, (l, r) -> {
+                // what /nearby did before: a dfs over twice the radius, then filtered to buildings
+                int count = 0;
+                for (Location loc : graph.dfs(l, 2 * r)) {
+                    count += loc != l && l.getDistance(loc) < r && loc.type == Location.Type.BUILDING ? 1 : 0;
+                }
+                return count;
+            });
+            runRadius("isochrone()", searches, rounds, (l, r) -> graph.isochrone(l, r).size());
+        }
+    }
+
+    /**
+     * Times distanceMatrix on the first MATRIX_SIZE starts and targets of the trace, and checks
+     * a sample of its entries against dijkstra().
+     */
+    static void runMatrix(BeaverMapsGraph graph, List<Location[]> queries) {
+        int size = Math.min(MATRIX_SIZE, queries.size());
+        Location[] sources = new Location[size];
+        Location[] targets = new Location[size];
+        for (int i = 0; i < size; i++) {
+            sources[i] = queries.get(i)[0];
+            targets[i] = queries.get(i)[1];
+        }
+        graph.distanceMatrix(sources, targets);
+        long before = System.nanoTime();
+        double[][] matrix = graph.distanceMatrix(sources, targets);
+        long nanos = System.nanoTime() - before;
+
+        int mismatches = 0;
+        for (int i = 0; i < size; i += 10) {
+            for (int j = 0; j < size; j += 10) {
+                IDeque<Location> expected = graph.dijkstra(sources[i], targets[j]);
+                double length = expected == null ? Double.POSITIVE_INFINITY : length(graph, expected);
+                mismatches += Math.abs(length - matrix[i][j]) > 1e-6 && length != matrix[i][j] ? 1 : 0;
+            }
+        }
+        System.out.printf("%-28s %d x %d in %9.3f ms (%d cores), %d sampled entries differ from dijkstra()%n",
+                "distanceMatrix()", size, size, nanos / 1e6, Runtime.getRuntime().availableProcessors(), mismatches);
+    }
+
+    /**
+     * Reads the (center, radius) pairs of a radius trace.
+     */
+    static List<Object[]> loadRadiusSearches(BeaverMapsGraph graph, String traceFile) throws IOException {
+        List<Object[]> searches = new ArrayList<>();
+        try (FileReader reader = new FileReader(traceFile)) {
+            for (JsonElement e : JsonParser.parseReader(reader).getAsJsonArray()) {
+                JsonObject search = e.getAsJsonObject();
+                Location center = graph.getLocationByID(search.get("center").getAsLong());
+                if (center != null) {
+                    searches.add(new Object[]{center, search.get("radius").getAsDouble()});
+                }
+            }
+        }
+        return searches;
+    }
+
+    /**
+     * Times every radius search for the given number of rounds (after a warm-up) and prints percentiles.
+     */
+    static void runRadius(String name, List<Object[]> searches, int rounds,
+                          BiFunction<Location, Double, Integer> search) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (Object[] q : searches) {
+                search.apply((Location) q[0], (Double) q[1]);
+            }
+        }
+
+        long[] nanos = new long[searches.size() * rounds];
+        long found = 0;
+        int i = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (Object[] q : searches) {
+                long before = System.nanoTime();
+                found += search.apply((Location) q[0], (Double) q[1]);
+                nanos[i++] = System.nanoTime() - before;
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-28s p50 %9.3f ms   p99 %9.3f ms   mean %.1f buildings%n", name,
+                percentile(nanos, 0.50) / 1e6, percentile(nanos, 0.99) / 1e6, (double) found / nanos.length);
+    }
+
+    /**
+     * Checks every engine algorithm against dijkstra() on each query and prints how many
+     * answers disagree (a missing/extra path or a length that differs by more than 1e-6 ft).
+     */
+    static void compare(BeaverMapsGraph graph, List<Location[]> queries) {
+        for (RoutingEngine.Algorithm algorithm : RoutingEngine.Algorithm.values()) {
+            int mismatches = 0;
+            for (Location[] q : queries) {
+                IDeque<Location> expected = graph.dijkstra(q[0], q[1]);
+                Route actual = graph.router().route(q[0], q[1], algorithm);
+                if (expected == null || actual.path == null) {
+                    mismatches += (expected == null) == (actual.path == null) ? 0 : 1;
+                }
+                else if (Math.abs(length(graph, expected) - actual.length) > 1e-6) {
+                    mismatches++;
+                }
+            }
+            System.out.printf("%-28s %d of %d routes differ from dijkstra()%n", algorithm, mismatches, queries.size());
+        }
+    }
+
+    /**
+     * Sums the edge weights along path.
+     */
+    static double length(BeaverMapsGraph graph, IDeque<Location> path) {
+        double total = 0;
+        Location prev = null;
+        for (Location l : path) {
+            if (prev != null) {
+                total += graph.adjacent(prev.id, l.id);
+            }
+            prev = l;
+        }
+        return total;
+    }
+
+    /**
+     * Prints the mean and maximum number of settled vertices per query.
+     */
+    static void printSettled(RoutingEngine router, RoutingEngine.Algorithm algorithm, List<Location[]> queries) {
+        long total = 0;
+        int max = 0;
+        for (Location[] q : queries) {
+            int settled = router.route(q[0], q[1], algorithm).settled;
+            total += settled;
+            max = Math.max(max, settled);
+        }
+        System.out.printf("%-28s settled mean %9.1f   max %7d%n", algorithm,
+                (double) total / Math.max(1, queries.size()), max);
+    }
+
+    /**
+     * Reads the (start, target) pairs of a paths trace.
+     */
+    static List<Location[]> loadQueries(BeaverMapsGraph graph, String traceFile) throws IOException {
+        List<Location[]> queries = new ArrayList<>();
+        try (FileReader reader = new FileReader(traceFile)) {
+            for (JsonElement e : JsonParser.parseReader(reader).getAsJsonArray()) {
+                JsonObject query = e.getAsJsonObject();
+                Location start = graph.getLocationByID(query.get("start").getAsLong());
+                Location target = graph.getLocationByID(query.get("target").getAsLong());
+                if (start != null && target != null) {
+                    queries.add(new Location[]{start, target});
+                }
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Times every query for the given number of rounds (after a warm-up) and prints percentiles.
+     */
+    static void run(String name, List<Location[]> queries, int rounds,
+                    BiFunction<Location, Location, IDeque<Location>> router) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (Location[] q : queries) {
+                router.apply(q[0], q[1]);
+            }
+        }
+
+        long[] nanos = new long[queries.size() * rounds];
+        int i = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (Location[] q : queries) {
+                long before = System.nanoTime();
+                router.apply(q[0], q[1]);
+                nanos[i++] = System.nanoTime() - before;
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-28s p50 %9.3f ms   p99 %9.3f ms   max %9.3f ms%n", name,
+                percentile(nanos, 0.50) / 1e6, percentile(nanos, 0.99) / 1e6, nanos[nanos.length - 1] / 1e6);
+    }
+
+    static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
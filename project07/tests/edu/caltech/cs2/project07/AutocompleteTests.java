@@ -0,0 +1,171 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.Location;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class AutocompleteTests {
+
+    private static String normalize(String s) {
+        return s.strip().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    /**
+     * @return 0 if loc's name starts with query, 1 if a later word of its name does, 2 if a word
+     *         of its address does, and 3 otherwise
+     */
+    private static int matchKind(Location loc, String query) {
+        String name = normalize(loc.name) + " ";
+        if (name.startsWith(query)) {
+            return 0;
+        }
+        if (name.contains(" " + query)) {
+            return 1;
+        }
+        if (loc.address != null) {
+            String address = " " + normalize(loc.address) + " ";
+            if (address.contains(" " + query)) {
+                return 2;
+            }
+        }
+        return 3;
+    }
+
+    @DisplayName("complete() returns the best matches of every name prefix, best first")
+    @ParameterizedTest(name = "Test complete() on {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json",
+    })
+    @Order(0)
+    public void completePrefixesTest(String buildingsFile, String waypointsFile, String roadsFile) {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        MapsAutoCompleter.populateLocations(bmg.getBuildings());
+        List<Location> named = new ArrayList<>();
+        for (Location loc : bmg.getBuildings()) {
+            if (loc.name != null) {
+                named.add(loc);
+            }
+        }
+
+        List<String> queries = new ArrayList<>(List.of("lake av", "  SOUTH   lake ", "pasadena"));
+        for (Location loc : named) {
+            for (int i = 1; i <= loc.name.length(); i++) {
+                queries.add(loc.name.substring(0, i));
+            }
+        }
+        for (String term : queries) {
+            String query = normalize(term) + (Character.isWhitespace(term.charAt(term.length() - 1)) ? " " : "");
+            Set<Long> expected = new HashSet<>();
+            for (Location loc : named) {
+                if (matchKind(loc, query) < 3) {
+                    expected.add(loc.id);
+                }
+            }
+
+            List<Long> actual = new ArrayList<>();
+            for (long id : MapsAutoCompleter.complete(term)) {
+                actual.add(id);
+            }
+            assertEquals(actual.size(), new HashSet<>(actual).size(), "Duplicate completions of \"" + term + "\"");
+            assertEquals(Math.min(expected.size(), MapsAutoCompleter.TOP_K), actual.size(), "Completions of \"" + term + "\"");
+            assertTrue(expected.containsAll(actual), "Completions of \"" + term + "\" that do not match");
+            int previousKind = 0;
+            int previousLength = 0;
+            for (long id : actual) {
+                Location loc = bmg.getLocationByID(id);
+                int kind = matchKind(loc, query);
+                assertTrue(kind > previousKind || (kind == previousKind && loc.name.length() >= previousLength),
+                        "Completions of \"" + term + "\" out of order at " + loc.name);
+                previousKind = kind;
+                previousLength = loc.name.length();
+            }
+            // nothing that was left out ranks better than the last completion
+            if (expected.size() > actual.size()) {
+                Location last = bmg.getLocationByID(actual.get(actual.size() - 1));
+                for (Location loc : named) {
+                    if (expected.contains(loc.id) && !actual.contains(loc.id)) {
+                        int kind = matchKind(loc, query);
+                        int lastKind = matchKind(last, query);
+                        assertTrue(kind > lastKind || (kind == lastKind && loc.name.length() >= last.name.length()),
+                                "\"" + loc.name + "\" should complete \"" + term + "\" before \"" + last.name + "\"");
+                    }
+                }
+            }
+        }
+    }
+
+    @DisplayName("complete() returns nothing for text no building matches")
+    @Test
+    @Order(1)
+    public void completeNoMatchTest() {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/caltech/caltech.buildings.json", "data/caltech/caltech.waypoints.json", "data/caltech/caltech.roads.json");
+        MapsAutoCompleter.populateLocations(bmg.getBuildings());
+        assertEquals(0, MapsAutoCompleter.complete("zzzz no such place").size());
+        assertEquals(0, MapsAutoCompleter.complete("lake avenuex").size());
+    }
+
+    @DisplayName("complete(session, term) matches complete(term) while typing, deleting and jumping")
+    @Test
+    @Order(2)
+    public void completeSessionTest() {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/caltech/caltech.buildings.json", "data/caltech/caltech.waypoints.json", "data/caltech/caltech.roads.json");
+        MapsAutoCompleter.populateLocations(bmg.getBuildings());
+        List<String> typed = new ArrayList<>();
+        for (Location loc : bmg.getBuildings()) {
+            if (loc.name != null) {
+                // type the name, delete back to its first letter, then type "zz" (no match) and more after it
+                for (int i = 1; i <= loc.name.length(); i++) {
+                    typed.add(loc.name.substring(0, i));
+                }
+                for (int i = loc.name.length() - 1; i >= 1; i--) {
+                    typed.add(loc.name.substring(0, i));
+                }
+                typed.add(loc.name.charAt(0) + "zz");
+                typed.add(loc.name.charAt(0) + "zzz");
+                typed.add(loc.name + " ");
+            }
+        }
+        for (String term : typed) {
+            assertEquals(toList(MapsAutoCompleter.complete(term)), toList(MapsAutoCompleter.complete("test", term)),
+                    "Completions of \"" + term + "\" in a session");
+        }
+
+        // a session from before the index was rebuilt is not continued
+        MapsAutoCompleter.complete("rebuilt", "lake");
+        MapsAutoCompleter.populateLocations(bmg.getBuildings());
+        assertEquals(toList(MapsAutoCompleter.complete("lake av")), toList(MapsAutoCompleter.complete("rebuilt", "lake av")));
+    }
+
+    @DisplayName("complete(session, term) keeps at most MAX_SESSIONS sessions")
+    @Test
+    @Order(3)
+    public void completeSessionLimitTest() {
+        for (int i = 0; i < MapsAutoCompleter.MAX_SESSIONS + 100; i++) {
+            MapsAutoCompleter.complete("limit-" + i, "a");
+        }
+        assertTrue(MapsAutoCompleter.sessionStats().contains("\"sessions\": " + MapsAutoCompleter.MAX_SESSIONS + ","),
+                MapsAutoCompleter.sessionStats());
+    }
+
+    private static List<Long> toList(Iterable<Long> ids) {
+        List<Long> list = new ArrayList<>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,151 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.ChainingHashDictionary;
+import edu.caltech.cs2.datastructures.MoveToFrontDictionary;
+import edu.caltech.cs2.interfaces.IDictionary;
+import org.junit.jupiter.api.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ChainingHashDictionaryTests {
+
+    private static <K> void assertSameContents(Map<K, Integer> expected, IDictionary<K, Integer> actual) {
+        assertEquals(expected.size(), actual.size(), "Dictionary has the wrong size");
+        Set<K> keys = new HashSet<>();
+        for (K key : actual) {
+            assertTrue(keys.add(key), "Key iterated twice");
+        }
+        assertEquals(expected.keySet(), keys, "Dictionary has the wrong keys");
+        assertEquals(expected.size(), actual.values().size(), "Dictionary has the wrong number of values");
+        for (Map.Entry<K, Integer> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), "Wrong value for a key");
+        }
+    }
+
+    @Order(0)
+    @DisplayName("ChainingHashDictionary matches HashMap while resizes are in progress")
+    @Test
+    public void incrementalResizeTest() {
+        Random r = new Random(7919);
+        IDictionary<Integer, Integer> dictionary = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            // mostly puts, so the dictionary keeps growing and is often part way through a resize
+            Integer key = r.nextInt(60000) - 30000;
+            int op = r.nextInt(5);
+            if (op < 3) {
+                assertEquals(expected.put(key, i), dictionary.put(key, i), "put returned the wrong previous value");
+            }
+            else if (op == 3) {
+                assertEquals(expected.remove(key), dictionary.remove(key), "remove returned the wrong value");
+            }
+            else {
+                assertEquals(expected.get(key), dictionary.get(key), "get returned the wrong value");
+            }
+            if (i % 10007 == 0) {
+                assertSameContents(expected, dictionary);
+            }
+        }
+        assertSameContents(expected, dictionary);
+    }
+
+    @Order(1)
+    @DisplayName("ChainingHashDictionary iterates values, entries and forEach in key order")
+    @Test
+    public void iterationTest() {
+        Random r = new Random(104729);
+        IDictionary<Integer, Integer> dictionary = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            Integer key = r.nextInt(40000);
+            expected.put(key, i);
+            dictionary.put(key, i);
+            if (i % 9973 == 0) {
+                Iterator<Integer> keys = dictionary.iterator();
+                Iterator<Integer> values = dictionary.valueIterator();
+                Iterator<IDictionary.Entry<Integer, Integer>> entries = dictionary.entryIterator();
+                Map<Integer, Integer> seen = new HashMap<>();
+                while (keys.hasNext()) {
+                    Integer k = keys.next();
+                    IDictionary.Entry<Integer, Integer> entry = entries.next();
+                    assertEquals(k, entry.key, "Entries are not in key order");
+                    assertEquals(values.next(), entry.value, "Values are not in key order");
+                    assertNull(seen.put(k, entry.value), "Key iterated twice");
+                }
+                assertFalse(values.hasNext(), "Values outlast the keys");
+                assertFalse(entries.hasNext(), "Entries outlast the keys");
+                assertThrows(NoSuchElementException.class, keys::next, "next past the end did not throw");
+                assertEquals(expected, seen, "Entries do not match the dictionary");
+
+                Map<Integer, Integer> visited = new HashMap<>();
+                dictionary.forEach(visited::put);
+                assertEquals(expected, visited, "forEach does not match the dictionary");
+            }
+        }
+    }
+
+    @Order(2)
+    @DisplayName("computeIfAbsent and merge match HashMap, and peek does not reorder chains")
+    @Test
+    public void computeAndMergeTest() {
+        Random r = new Random(15485863);
+        IDictionary<Integer, Integer> dictionary = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            Integer key = r.nextInt(20000);
+            int value = i;
+            if (r.nextBoolean()) {
+                assertEquals(expected.computeIfAbsent(key, k -> value), dictionary.computeIfAbsent(key, k -> value),
+                        "computeIfAbsent returned the wrong value");
+            }
+            else {
+                // every so often the remapping removes the key
+                assertEquals(expected.merge(key, 1, (a, b) -> a % 5 == 0 ? null : a + b),
+                        dictionary.merge(key, 1, (a, b) -> a % 5 == 0 ? null : a + b),
+                        "merge returned the wrong value");
+            }
+            assertEquals(expected.size(), dictionary.size(), "Dictionary has the wrong size");
+        }
+        assertSameContents(expected, dictionary);
+
+        IDictionary<Integer, Integer> chain = new MoveToFrontDictionary<>();
+        for (int i = 0; i < 10; i++) {
+            chain.put(i, i);
+        }
+        assertEquals(0, chain.peek(0));
+        assertTrue(chain.containsKey(1));
+        assertEquals(9, chain.iterator().next(), "peek or containsKey moved a key to the front");
+        assertEquals(0, chain.get(0));
+        assertEquals(0, chain.iterator().next(), "get did not move the key to the front");
+    }
+
+    @Order(3)
+    @DisplayName("ChainingHashDictionary grows past a million keys")
+    @Test
+    public void largeTest() {
+        IDictionary<Integer, Integer> dictionary = new ChainingHashDictionary<>(MoveToFrontDictionary::new);
+        int n = 1500000;
+        for (int i = 0; i < n; i++) {
+            dictionary.put(i * 7, i);
+        }
+        assertEquals(n, dictionary.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, dictionary.get(i * 7));
+        }
+        assertNull(dictionary.get(1));
+        for (int i = 0; i < n; i += 2) {
+            assertEquals(i, dictionary.remove(i * 7));
+        }
+        assertEquals(n / 2, dictionary.size());
+        assertEquals(n / 2, dictionary.keys().size());
+    }
+}
@@ -0,0 +1,109 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.LongDoubleMap;
+import edu.caltech.cs2.datastructures.LongIntMap;
+import edu.caltech.cs2.datastructures.LongObjectMap;
+import org.junit.jupiter.api.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class LongMapTests {
+
+    /**
+     * @return a key drawn from a small pool that includes 0 (the empty-slot marker), negative ids and
+     * ids that differ only in their high bits, so keys repeat and runs collide
+     */
+    private static long key(Random r) {
+        int k = r.nextInt(4000);
+        if (k == 0) {
+            return 0;
+        }
+        return k % 2 == 0 ? (long) k << 40 : -k;
+    }
+
+    private static <V> void assertSameContents(Map<Long, V> expected, LongObjectMap<V> actual) {
+        assertEquals(expected.size(), actual.size(), "Map has the wrong size");
+        Map<Long, V> visited = new HashMap<>();
+        actual.forEach((key, value) -> assertNull(visited.put(key, value), "Key visited twice"));
+        assertEquals(expected, visited, "forEach does not match the map");
+        long[] keys = actual.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(expected.keySet().stream().mapToLong(Long::longValue).sorted().toArray(), keys,
+                "Map has the wrong keys");
+    }
+
+    @Order(0)
+    @DisplayName("LongObjectMap matches HashMap under random puts, gets and removes")
+    @Test
+    public void longObjectMapTest() {
+        Random r = new Random(8191);
+        LongObjectMap<Integer> map = new LongObjectMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            long key = key(r);
+            int op = r.nextInt(4);
+            if (op == 0) {
+                assertEquals(expected.put(key, i), map.put(key, i), "put returned the wrong previous value");
+            }
+            else if (op == 1) {
+                assertEquals(expected.remove(key), map.remove(key), "remove returned the wrong value");
+            }
+            else if (op == 2) {
+                int value = i;
+                assertEquals(expected.computeIfAbsent(key, k -> value), map.computeIfAbsent(key, k -> value),
+                        "computeIfAbsent returned the wrong value");
+            }
+            else {
+                assertEquals(expected.get(key), map.get(key), "get returned the wrong value");
+            }
+            if (i % 20011 == 0) {
+                assertSameContents(expected, map);
+            }
+        }
+        assertSameContents(expected, map);
+    }
+
+    @Order(1)
+    @DisplayName("LongDoubleMap and LongIntMap match HashMap, returning their missing value for absent keys")
+    @Test
+    public void primitiveValueMapsTest() {
+        Random r = new Random(131071);
+        LongDoubleMap doubles = new LongDoubleMap();
+        LongIntMap ints = new LongIntMap(10, Integer.MIN_VALUE);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            long key = key(r);
+            Integer previous = r.nextBoolean() ? expected.put(key, i) : expected.remove(key);
+            double previousDouble = expected.containsKey(key) ? doubles.put(key, i) : doubles.remove(key);
+            int previousInt = expected.containsKey(key) ? ints.put(key, i) : ints.remove(key);
+            if (previous == null) {
+                assertTrue(Double.isNaN(previousDouble), "LongDoubleMap did not return NaN for an absent key");
+                assertEquals(Integer.MIN_VALUE, previousInt, "LongIntMap did not return its missing value");
+            }
+            else {
+                assertEquals((double) previous, previousDouble, "LongDoubleMap returned the wrong previous value");
+                assertEquals((int) previous, previousInt, "LongIntMap returned the wrong previous value");
+            }
+            assertEquals(expected.size(), doubles.size(), "LongDoubleMap has the wrong size");
+            assertEquals(expected.size(), ints.size(), "LongIntMap has the wrong size");
+        }
+        for (long key = -4000; key < 4000; key++) {
+            long k = key % 2 == 0 ? key << 40 : key;
+            assertEquals(expected.containsKey(k), doubles.containsKey(k), "LongDoubleMap containsKey is wrong");
+            assertEquals(expected.containsKey(k), ints.containsKey(k), "LongIntMap containsKey is wrong");
+            assertEquals((int) expected.getOrDefault(k, Integer.MIN_VALUE), ints.get(k), "LongIntMap get is wrong");
+        }
+        Map<Long, Double> visited = new HashMap<>();
+        doubles.forEach(visited::put);
+        assertEquals(expected.size(), visited.size());
+        for (Map.Entry<Long, Integer> e : expected.entrySet()) {
+            assertEquals((double) e.getValue(), visited.get(e.getKey()), "LongDoubleMap forEach is wrong");
+        }
+    }
+}
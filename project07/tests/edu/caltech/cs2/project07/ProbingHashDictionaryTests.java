@@ -0,0 +1,139 @@
+package edu.caltech.cs2.project07;
+
+import edu.caltech.cs2.datastructures.ProbingHashDictionary;
+import edu.caltech.cs2.interfaces.IDictionary;
+import org.junit.jupiter.api.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ProbingHashDictionaryTests {
+
+    /**
+     * A key whose hash code is chosen by the test, so many keys can share a home slot.
+     */
+    private static class Key {
+        private final int id;
+        private final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == this.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    private static <K> void assertSameContents(Map<K, Integer> expected, IDictionary<K, Integer> actual) {
+        assertEquals(expected.size(), actual.size(), "Dictionary has the wrong size");
+        Set<K> keys = new HashSet<>();
+        for (K key : actual) {
+            assertTrue(keys.add(key), "Key iterated twice");
+        }
+        assertEquals(expected.keySet(), keys, "Dictionary has the wrong keys");
+        for (Map.Entry<K, Integer> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), "Wrong value for a key");
+        }
+    }
+
+    @Order(0)
+    @DisplayName("ProbingHashDictionary matches HashMap under random puts, gets and removes")
+    @Test
+    public void randomOperationsTest() {
+        Random r = new Random(1618);
+        ProbingHashDictionary<Long, Integer> dictionary = new ProbingHashDictionary<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            // keys that differ only in their high bits, like large OSM ids
+            Long key = (long) r.nextInt(5000) << 32;
+            int op = r.nextInt(3);
+            if (op == 0) {
+                assertEquals(expected.put(key, i), dictionary.put(key, i), "put returned the wrong previous value");
+            }
+            else if (op == 1) {
+                assertEquals(expected.remove(key), dictionary.remove(key), "remove returned the wrong value");
+            }
+            else {
+                assertEquals(expected.containsKey(key), dictionary.containsKey(key), "containsKey is wrong");
+            }
+        }
+        assertSameContents(expected, dictionary);
+    }
+
+    @Order(1)
+    @DisplayName("Removing from long runs of colliding keys keeps every other key reachable")
+    @Test
+    public void collidingRemoveTest() {
+        Random r = new Random(2357);
+        for (int test = 0; test < 200; test++) {
+            // a few hash codes shared by many keys, so runs overlap and wrap around the end of the table
+            ProbingHashDictionary<Key, Integer> dictionary = new ProbingHashDictionary<>();
+            Map<Key, Integer> expected = new HashMap<>();
+            int hashes = 1 + r.nextInt(4);
+            int count = 2 + r.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                int id = r.nextInt(60);
+                Key key = new Key(id, (id % hashes) * 0x61C88647);
+                assertEquals(expected.put(key, i), dictionary.put(key, i));
+            }
+            for (int i = 0; i < 30; i++) {
+                int id = r.nextInt(60);
+                Key key = new Key(id, (id % hashes) * 0x61C88647);
+                assertEquals(expected.remove(key), dictionary.remove(key));
+                assertSameContents(expected, dictionary);
+            }
+            assertSameContents(expected, dictionary);
+        }
+    }
+
+    @Order(2)
+    @DisplayName("A presized ProbingHashDictionary holds its expected size and more")
+    @Test
+    public void presizedTest() {
+        ProbingHashDictionary<Integer, Integer> dictionary = new ProbingHashDictionary<>(1000);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            dictionary.put(i * 31, i);
+            expected.put(i * 31, i);
+        }
+        assertSameContents(expected, dictionary);
+        assertTrue(dictionary.containsValue(4999));
+        assertFalse(dictionary.containsValue(5000));
+        assertEquals(5000, dictionary.values().size());
+    }
+
+    @Order(3)
+    @DisplayName("Iterators throw NoSuchElementException once they are exhausted")
+    @Test
+    public void exhaustedIteratorTest() {
+        ProbingHashDictionary<Integer, Integer> dictionary = new ProbingHashDictionary<>();
+        for (int size = 0; size < 20; size++) {
+            for (Iterator<?> iterator : new Iterator<?>[]{dictionary.iterator(), dictionary.valueIterator(),
+                    dictionary.entryIterator()}) {
+                for (int i = 0; i < size; i++) {
+                    assertTrue(iterator.hasNext(), "Iterator ended early");
+                    iterator.next();
+                }
+                assertFalse(iterator.hasNext(), "Iterator did not end");
+                assertThrows(NoSuchElementException.class, iterator::next, "next past the end did not throw");
+            }
+            dictionary.put(size * 7919, size);
+        }
+    }
+}
@@ -0,0 +1,761 @@
+package edu.caltech.cs2.project07;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.CompactGraph;
+import edu.caltech.cs2.datastructures.ContractionHierarchy;
+import edu.caltech.cs2.datastructures.Graph;
+import edu.caltech.cs2.datastructures.GraphView;
+import edu.caltech.cs2.datastructures.Location;
+import edu.caltech.cs2.datastructures.Route;
+import edu.caltech.cs2.datastructures.RouteCache;
+import edu.caltech.cs2.datastructures.RoutingEngine;
+import edu.caltech.cs2.datastructures.ShortestPathTree;
+import edu.caltech.cs2.helpers.Reflection;
+import edu.caltech.cs2.interfaces.IDeque;
+import edu.caltech.cs2.interfaces.IGraph;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.collection.IsIterableContainingInOrder;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("A")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class RoutingTests {
+
+    private static JsonElement fromFile(String filename) {
+        try (FileReader reader = new FileReader(filename)) {
+            return JsonParser.parseReader(reader);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static double pathLength(BeaverMapsGraph bmg, IDeque<Location> path) {
+        double pathLen = 0;
+        Location prev = null;
+        for (Location l : path) {
+            if (prev != null) {
+                pathLen += bmg.adjacent(prev.id, l.id);
+            }
+            prev = l;
+        }
+        return pathLen;
+    }
+
+    private static void assertSameLength(BeaverMapsGraph bmg, IDeque<Location> expected, IDeque<Location> actual,
+                                         String what) {
+        if (expected == null) {
+            assertNull(actual, what + " found a path where dijkstra() found none");
+        }
+        else {
+            assertNotNull(actual, what + " found no path where dijkstra() found one");
+            assertEquals(pathLength(bmg, expected), pathLength(bmg, actual), 1e-6,
+                    what + " path length differs from dijkstra()");
+        }
+    }
+
+    @Order(0)
+    @DisplayName("Every RoutingEngine algorithm agrees with dijkstra() on random graphs")
+    @Test
+    public void routerRandomGraphTest() {
+        Random r = new Random(2718);
+        for (int test = 0; test < 50; test++) {
+            IGraph<Integer, Integer> refg = new Graph<>();
+            int numVertices = 2 + r.nextInt(60);
+            for (int i = 0; i < numVertices; i++) {
+                refg.addVertex(i);
+            }
+            for (int i = 0; i < 3 * numVertices; i++) {
+                refg.addEdge(r.nextInt(numVertices), r.nextInt(numVertices), r.nextInt(100));
+            }
+            BeaverMapsGraph bmg = GraphMaker.transformToLocations(refg);
+            for (int q = 0; q < 20; q++) {
+                Location start = new Location(r.nextInt(numVertices));
+                Location target = new Location(r.nextInt(numVertices));
+                IDeque<Location> expected = bmg.dijkstra(start, target);
+                for (RoutingEngine.Algorithm algorithm : RoutingEngine.Algorithm.values()) {
+                    assertSameLength(bmg, expected, bmg.router().route(start, target, algorithm).path,
+                            algorithm.toString());
+                }
+            }
+        }
+    }
+
+    @Order(1)
+    @DisplayName("RoutingEngine sees edges added after the compact graph was built")
+    @Test
+    public void routerMutationTest() {
+        BeaverMapsGraph bmg = GraphMaker.transformToLocations(GraphMaker.linearGraph(10));
+        assertNull(bmg.router().route(new Location(9), new Location(0)), "No path should exist yet");
+        bmg.addEdge(9L, 0L, 1.0);
+        assertNotNull(bmg.router().route(new Location(9), new Location(0)), "Path should use the new edge");
+    }
+
+    @DisplayName("RoutingEngine returns the expected paths on the trace")
+    @ParameterizedTest(name = "Test RoutingEngine on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.paths_trace.json",
+    })
+    @Order(2)
+    public void routerTraceTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile) {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        JsonElement s = fromFile("data/" + traceFile);
+        for (JsonElement b : s.getAsJsonArray()) {
+            JsonObject curr = b.getAsJsonObject();
+            Location start = bmg.getLocationByID(curr.get("start").getAsLong());
+            Location target = bmg.getLocationByID(curr.get("target").getAsLong());
+
+            JsonArray pathList = curr.get("path").getAsJsonArray();
+            List<Long> expectedPathIDs = new ArrayList<>();
+            for (JsonElement e : pathList) {
+                expectedPathIDs.add(e.getAsLong());
+            }
+
+            IDeque<Location> actualPath = bmg.router().route(start, target);
+            if (expectedPathIDs.size() == 0) {
+                assertNull(actualPath, "Path does not exist from " + start.id + " to " + target.id + " but was found");
+            }
+            else {
+                assertNotNull(actualPath, "Path exists from " + start.id + " to " + target.id + " but was not found");
+                List<Long> actualPathIDs = new ArrayList<>();
+                for (Location l : actualPath) {
+                    actualPathIDs.add(l.id);
+                }
+                MatcherAssert.assertThat(actualPathIDs,
+                        IsIterableContainingInOrder.contains(expectedPathIDs.toArray()));
+            }
+        }
+    }
+
+    @DisplayName("A* agrees with the Dijkstra traces")
+    @ParameterizedTest(name = "Graph: {0}, start: {1}, end: {2}, trace file: {3}")
+    @CsvSource({
+            "simpleGraph, 1, 3, simple_1_3",
+            "linearGraph, 0, 1, line_0_1",
+            "linearGraph, 0, 99, line_0_99",
+            "linearGraph, 1, 0, line_1_0",
+            "tournamentGraph, 0, 1, graph3_0_1",
+            "tournamentGraph, 99, 0, graph3_99_0"
+    })
+    @Order(3)
+    public void astarDijkstraTraceTest(String graphName, int start, int end, String traceFile)
+            throws IllegalAccessException, InvocationTargetException, FileNotFoundException {
+        BeaverMapsGraph bmg;
+        if (graphName.equals("simpleGraph")) {
+            bmg = GraphMaker.transformToLocations(GraphMaker.simpleGraph());
+        }
+        else {
+            Method graphGen = Reflection.getMethod(GraphMaker.class, graphName, int.class);
+            bmg = GraphMaker.transformToLocations((IGraph<Integer, Integer>) graphGen.invoke(null, 100));
+        }
+
+        Route route = bmg.router().route(new Location(start), new Location(end), RoutingEngine.Algorithm.ASTAR);
+        String line = new Scanner(new File("data/dijkstra/" + traceFile)).nextLine();
+        if (line.equals("null")) {
+            assertNull(route.path, "Path does not exist from " + start + " to " + end + " but a path was found");
+        }
+        else {
+            assertNotNull(route.path, "Path exists from " + start + " to " + end + " but a path was not found");
+            assertEquals(Double.parseDouble(line), pathLength(bmg, route.path), "Path lengths are not equivalent");
+            assertEquals(route.length, pathLength(bmg, route.path), 1e-6, "Reported length does not match path");
+        }
+    }
+
+    @DisplayName("A* matches dijkstra() path lengths and settles no more vertices")
+    @ParameterizedTest(name = "Test A* on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.paths_trace.json",
+    })
+    @Order(4)
+    public void astarTraceTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile) {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        JsonElement s = fromFile("data/" + traceFile);
+        long dijkstraSettled = 0;
+        long astarSettled = 0;
+        for (JsonElement b : s.getAsJsonArray()) {
+            JsonObject curr = b.getAsJsonObject();
+            Location start = bmg.getLocationByID(curr.get("start").getAsLong());
+            Location target = bmg.getLocationByID(curr.get("target").getAsLong());
+
+            Route dijkstra = bmg.router().route(start, target, RoutingEngine.Algorithm.DIJKSTRA);
+            Route astar = bmg.router().route(start, target, RoutingEngine.Algorithm.ASTAR);
+            assertSameLength(bmg, bmg.dijkstra(start, target), astar.path, "A*");
+            dijkstraSettled += dijkstra.settled;
+            astarSettled += astar.settled;
+        }
+        assertTrue(astarSettled < dijkstraSettled,
+                "A* settled " + astarSettled + " vertices, Dijkstra settled " + dijkstraSettled);
+    }
+
+    @DisplayName("Bidirectional Dijkstra matches dijkstra() and avoids intermediate buildings")
+    @ParameterizedTest(name = "Test bidirectional Dijkstra on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.paths_trace.json",
+    })
+    @Order(5)
+    public void bidirectionalTraceTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile) {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        JsonElement s = fromFile("data/" + traceFile);
+        for (JsonElement b : s.getAsJsonArray()) {
+            JsonObject curr = b.getAsJsonObject();
+            Location start = bmg.getLocationByID(curr.get("start").getAsLong());
+            Location target = bmg.getLocationByID(curr.get("target").getAsLong());
+
+            Route route = bmg.router().route(start, target, RoutingEngine.Algorithm.BIDIRECTIONAL);
+            assertSameLength(bmg, bmg.dijkstra(start, target), route.path, "Bidirectional Dijkstra");
+            if (route.path == null) {
+                continue;
+            }
+            assertEquals(start, route.path.peekFront(), "Path should begin at the start");
+            assertEquals(target, route.path.peekBack(), "Path should end at the target");
+            for (Location loc : route.path) {
+                if (loc.id != start.id && loc.id != target.id) {
+                    assertNotEquals(Location.Type.BUILDING, loc.type, "Location " + loc.id + " in path is a building");
+                }
+            }
+        }
+    }
+
+    @Order(6)
+    @DisplayName("Every RoutingEngine algorithm agrees with dijkstra() on random graphs with buildings")
+    @Test
+    public void routerRandomBuildingGraphTest() {
+        Random r = new Random(31415);
+        for (int test = 0; test < 50; test++) {
+            BeaverMapsGraph bmg = new BeaverMapsGraph();
+            int numVertices = 2 + r.nextInt(60);
+            for (int i = 0; i < numVertices; i++) {
+                String type = r.nextInt(4) == 0 ? "building" : "waypoint";
+                bmg.addVertex(new Location(i, 0, 0, null, null, null, null, type));
+            }
+            for (int i = 0; i < 3 * numVertices; i++) {
+                bmg.addEdge((long) r.nextInt(numVertices), (long) r.nextInt(numVertices), (double) r.nextInt(100));
+            }
+            for (int q = 0; q < 20; q++) {
+                Location start = bmg.getLocationByID(r.nextInt(numVertices));
+                Location target = bmg.getLocationByID(r.nextInt(numVertices));
+                IDeque<Location> expected = bmg.dijkstra(start, target);
+                for (RoutingEngine.Algorithm algorithm : RoutingEngine.Algorithm.values()) {
+                    assertSameLength(bmg, expected, bmg.router().route(start, target, algorithm).path,
+                            algorithm.toString());
+                }
+            }
+        }
+    }
+
+    @DisplayName("Contraction hierarchies match dijkstra() before and after a save/load round trip")
+    @ParameterizedTest(name = "Test contraction hierarchies on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.paths_trace.json",
+    })
+    @Order(7)
+    public void hierarchyTraceTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile)
+            throws IOException {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        ContractionHierarchy built = ContractionHierarchy.build(bmg.compactGraph());
+        File file = File.createTempFile("hierarchy", ".ch");
+        file.deleteOnExit();
+        built.write(file.getPath());
+        ContractionHierarchy loaded = ContractionHierarchy.read(file.getPath(), bmg.compactGraph());
+        assertEquals(built.edgeCount(), loaded.edgeCount(), "Loaded hierarchy has a different number of edges");
+
+        JsonElement s = fromFile("data/" + traceFile);
+        for (JsonElement b : s.getAsJsonArray()) {
+            JsonObject curr = b.getAsJsonObject();
+            Location start = bmg.getLocationByID(curr.get("start").getAsLong());
+            Location target = bmg.getLocationByID(curr.get("target").getAsLong());
+            IDeque<Location> expected = bmg.dijkstra(start, target);
+
+            for (ContractionHierarchy hierarchy : List.of(built, loaded)) {
+                Route route = hierarchy.route(start, target);
+                assertSameLength(bmg, expected, route.path, "Contraction hierarchy");
+                if (route.path == null) {
+                    continue;
+                }
+                assertEquals(route.length, pathLength(bmg, route.path), 1e-6, "Reported length does not match path");
+                assertEquals(start, route.path.peekFront(), "Path should begin at the start");
+                assertEquals(target, route.path.peekBack(), "Path should end at the target");
+                for (Location loc : route.path) {
+                    if (loc.id != start.id && loc.id != target.id) {
+                        assertNotEquals(Location.Type.BUILDING, loc.type, "Location " + loc.id + " in path is a building");
+                    }
+                }
+            }
+        }
+    }
+
+    @Order(8)
+    @DisplayName("A hierarchy file cannot be loaded for a different graph")
+    @Test
+    public void hierarchyWrongGraphTest() throws IOException {
+        BeaverMapsGraph bmg = GraphMaker.transformToLocations(GraphMaker.linearGraph(10));
+        File file = File.createTempFile("hierarchy", ".ch");
+        file.deleteOnExit();
+        ContractionHierarchy.build(bmg.compactGraph()).write(file.getPath());
+        BeaverMapsGraph other = GraphMaker.transformToLocations(GraphMaker.linearGraph(11));
+        assertThrows(IOException.class, () -> ContractionHierarchy.read(file.getPath(), other.compactGraph()));
+    }
+
+    @Order(9)
+    @DisplayName("isochrone() returns exactly the buildings dijkstra() reaches within the distance")
+    @Test
+    public void isochroneRandomGraphTest() {
+        Random r = new Random(1729);
+        for (int test = 0; test < 50; test++) {
+            BeaverMapsGraph bmg = new BeaverMapsGraph();
+            int numVertices = 2 + r.nextInt(60);
+            for (int i = 0; i < numVertices; i++) {
+                String type = r.nextInt(3) == 0 ? "building" : "waypoint";
+                bmg.addVertex(new Location(i, 0, 0, null, null, null, null, type));
+            }
+            for (int i = 0; i < 3 * numVertices; i++) {
+                bmg.addEdge((long) r.nextInt(numVertices), (long) r.nextInt(numVertices), (double) r.nextInt(100));
+            }
+            for (int q = 0; q < 10; q++) {
+                Location start = bmg.getLocationByID(r.nextInt(numVertices));
+                double distance = r.nextInt(300);
+                Set<Long> expected = new HashSet<>();
+                for (Location building : bmg.getBuildings()) {
+                    IDeque<Location> path = bmg.dijkstra(start, building);
+                    if (building.id != start.id && path != null && pathLength(bmg, path) <= distance) {
+                        expected.add(building.id);
+                    }
+                }
+                Set<Long> actual = new HashSet<>();
+                double prev = 0;
+                for (Location building : bmg.isochrone(start, distance)) {
+                    actual.add(building.id);
+                    double length = pathLength(bmg, bmg.dijkstra(start, building));
+                    assertTrue(length >= prev, "Buildings are not in increasing order of walking distance");
+                    prev = length;
+                }
+                assertEquals(expected, actual, "Wrong buildings within " + distance + " of " + start.id);
+            }
+        }
+    }
+
+    @DisplayName("isochrone() finds a subset of the radius trace at the right walking distances")
+    @ParameterizedTest(name = "Test isochrone() on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.radius_trace.json",
+    })
+    @Order(10)
+    public void isochroneTraceTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile) {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        JsonElement s = fromFile("data/" + traceFile);
+        for (JsonElement b : s.getAsJsonArray()) {
+            JsonObject curr = b.getAsJsonObject();
+            Location center = bmg.getLocationByID(curr.get("center").getAsLong());
+            double distance = curr.get("radius").getAsDouble();
+            Set<Long> traced = new HashSet<>();
+            for (JsonElement e : curr.get("locations").getAsJsonArray()) {
+                traced.add(e.getAsLong());
+            }
+
+            // walking distance is never shorter than the straight line, so every hit lies inside the traced ball
+            for (Location building : bmg.isochrone(center, distance)) {
+                assertEquals(Location.Type.BUILDING, building.type, "Location " + building.id + " is not a building");
+                assertTrue(traced.contains(building.id), "Building " + building.id + " is outside the radius");
+                assertTrue(pathLength(bmg, bmg.dijkstra(center, building)) <= distance + 1e-6,
+                        "Building " + building.id + " is too far to walk");
+            }
+        }
+    }
+
+    @DisplayName("A GraphView answers the same from many threads at once as from one")
+    @ParameterizedTest(name = "Test concurrent GraphView queries on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.paths_trace.json",
+    })
+    @Order(11)
+    public void concurrentViewTraceTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile)
+            throws InterruptedException, ExecutionException {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        GraphView view = bmg.view();
+        List<Location[]> queries = new ArrayList<>();
+        for (JsonElement b : fromFile("data/" + traceFile).getAsJsonArray()) {
+            JsonObject curr = b.getAsJsonObject();
+            queries.add(new Location[]{view.getLocationByID(curr.get("start").getAsLong()),
+                    view.getLocationByID(curr.get("target").getAsLong())});
+        }
+
+        // answers computed on this thread alone
+        int n = queries.size();
+        RoutingEngine.Algorithm[] algorithms = RoutingEngine.Algorithm.values();
+        double[][] lengths = new double[algorithms.length][n];
+        Location[] closest = new Location[n];
+        int[] nearby = new int[n];
+        for (int i = 0; i < n; i++) {
+            Location[] q = queries.get(i);
+            for (int a = 0; a < algorithms.length; a++) {
+                lengths[a][i] = view.route(q[0], q[1], algorithms[a]).length;
+            }
+            closest[i] = view.getClosestBuilding(q[1].lat, q[1].lon);
+            nearby[i] = view.dfs(q[0], 1000).size();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int offset = t;
+                results.add(pool.submit(() -> {
+                    // every thread walks the trace from a different starting point
+                    for (int k = 0; k < n; k++) {
+                        int i = (k + offset * n / 8) % n;
+                        Location[] q = queries.get(i);
+                        for (int a = 0; a < algorithms.length; a++) {
+                            assertEquals(lengths[a][i], view.route(q[0], q[1], algorithms[a]).length,
+                                    algorithms[a] + " route " + i + " changed under concurrency");
+                        }
+                        assertEquals(closest[i], view.getClosestBuilding(q[1].lat, q[1].lon));
+                        assertEquals(nearby[i], view.dfs(q[0], 1000).size());
+                        assertEquals(q[0], view.getLocationByID(q[0].id));
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Order(12)
+    @DisplayName("RouteCache stays within its budgets, evicts least recently used entries and empties when the graph changes")
+    @Test
+    public void routeCacheTest() {
+        BeaverMapsGraph bmg = new BeaverMapsGraph();
+        bmg.addVertex(new Location(1, 0, 0, null, null, null, null, "waypoint"));
+        // room for two entries per segment
+        RouteCache<String> cache = new RouteCache<>(bmg, 32, 1 << 20);
+        cache.put(-1, -1, "kept", 10);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("kept", cache.get(-1, -1), "The most recently used entry was evicted");
+            cache.put(i, i + 1, "route " + i, 10);
+        }
+        assertTrue(cache.size() <= 32, "Cache holds " + cache.size() + " entries");
+        assertEquals(1001 - cache.size(), cache.evictions());
+        assertEquals(10L * cache.size(), cache.bytes());
+        assertEquals(1000, cache.hits());
+        assertNull(cache.get(0, 1));
+        assertEquals(1, cache.misses());
+
+        RouteCache<String> small = new RouteCache<>(bmg, 1000, 16 * 100);
+        for (int i = 0; i < 1000; i++) {
+            small.put(i, -i, "route " + i, 60);
+        }
+        assertTrue(small.bytes() <= 16 * 100, "Cache holds " + small.bytes() + " bytes");
+
+        bmg.addVertex(new Location(2, 0, 1, null, null, null, null, "waypoint"));
+        assertNull(cache.get(-1, -1), "Entries survived a new vertex");
+        assertEquals(0, cache.size());
+        cache.put(1, 2, "route", 10);
+        bmg.addEdge(1L, 2L, 1.0);
+        assertNull(cache.get(1, 2), "Entries survived a new edge");
+        assertEquals(2, cache.invalidations());
+    }
+
+    @DisplayName("Shortest-path trees answer every target like dijkstra() and are reused per start")
+    @ParameterizedTest(name = "Test shortest-path trees on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.paths_trace.json",
+    })
+    @Order(13)
+    public void shortestPathTreeTraceTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile) {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        JsonArray trace = fromFile("data/" + traceFile).getAsJsonArray();
+        Location start = bmg.getLocationByID(trace.get(0).getAsJsonObject().get("start").getAsLong());
+        ShortestPathTree tree = bmg.shortestPathTree(start);
+        assertSame(tree, bmg.shortestPathTree(start), "The tree of a repeated start should be reused");
+
+        // one start against every target of the trace
+        for (JsonElement b : trace) {
+            Location target = bmg.getLocationByID(b.getAsJsonObject().get("target").getAsLong());
+            IDeque<Location> expected = bmg.dijkstra(start, target);
+            IDeque<Location> actual = tree.pathTo(target);
+            assertSameLength(bmg, expected, actual, "Shortest-path tree");
+            if (actual == null) {
+                assertEquals(Double.POSITIVE_INFINITY, tree.distanceTo(target));
+                continue;
+            }
+            assertEquals(pathLength(bmg, expected), tree.distanceTo(target), 1e-6);
+            assertEquals(start, actual.peekFront(), "Path should begin at the start");
+            assertEquals(target, actual.peekBack(), "Path should end at the target");
+            for (Location loc : actual) {
+                if (loc.id != start.id && loc.id != target.id) {
+                    assertNotEquals(Location.Type.BUILDING, loc.type, "Location " + loc.id + " in path is a building");
+                }
+            }
+        }
+
+        // and every start of the trace against its own target
+        for (JsonElement b : trace) {
+            JsonObject curr = b.getAsJsonObject();
+            Location from = bmg.getLocationByID(curr.get("start").getAsLong());
+            Location to = bmg.getLocationByID(curr.get("target").getAsLong());
+            assertSameLength(bmg, bmg.dijkstra(from, to), bmg.shortestPathTree(from).pathTo(to), "Shortest-path tree");
+        }
+
+        Location other = bmg.getLocationByID(trace.get(0).getAsJsonObject().get("target").getAsLong());
+        bmg.addVertex(new Location(-1, start.lat, start.lon, null, null, null, null, "waypoint"));
+        bmg.addUndirectedEdge(start.id, -1L, 1.0);
+        ShortestPathTree changed = bmg.shortestPathTree(start);
+        assertNotSame(tree, changed, "Trees should be rebuilt after the graph changes");
+        assertEquals(1.0, changed.distanceTo(bmg.getLocationByID(-1)));
+        assertEquals(tree.distanceTo(other), changed.distanceTo(other), 1e-6);
+    }
+
+    @DisplayName("distanceMatrix() matches repeated dijkstra() calls")
+    @ParameterizedTest(name = "Test distanceMatrix() on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.paths_trace.json",
+    })
+    @Order(14)
+    public void distanceMatrixTraceTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile) {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        JsonArray trace = fromFile("data/" + traceFile).getAsJsonArray();
+        // 30 sources and 20 targets from the trace; a start reused as a target and a repeated target
+        Location[] sources = new Location[30];
+        Location[] targets = new Location[22];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = bmg.getLocationByID(trace.get(i).getAsJsonObject().get("start").getAsLong());
+        }
+        for (int j = 0; j < 20; j++) {
+            targets[j] = bmg.getLocationByID(trace.get(100 + j).getAsJsonObject().get("target").getAsLong());
+        }
+        targets[20] = sources[0];
+        targets[21] = targets[3];
+
+        double[][] matrix = bmg.distanceMatrix(sources, targets);
+        assertEquals(sources.length, matrix.length);
+        for (int i = 0; i < sources.length; i++) {
+            assertEquals(targets.length, matrix[i].length);
+            for (int j = 0; j < targets.length; j++) {
+                IDeque<Location> expected = bmg.dijkstra(sources[i], targets[j]);
+                double expectedLength = expected == null ? Double.POSITIVE_INFINITY : pathLength(bmg, expected);
+                assertEquals(expectedLength, matrix[i][j], 1e-6, "Distance from " + sources[i].id + " to " + targets[j].id);
+            }
+        }
+    }
+
+    @DisplayName("getLocationByName() matches a scan of every location, before and after addVertex()")
+    @ParameterizedTest(name = "Test getLocationByName() on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json",
+    })
+    @Order(15)
+    public void nameIndexTest(String buildingsFile, String waypointsFile, String roadsFile) {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        assertNamesIndexed(bmg);
+        assertEquals(0, bmg.getLocationByName("no such place").size());
+        assertEquals(0, bmg.view().getLocationByName(null).size());
+
+        Location existing = null;
+        for (Location loc : bmg.getBuildings()) {
+            if (loc.name != null) {
+                existing = loc;
+                break;
+            }
+        }
+        Location twin = new Location(1, existing.lat, existing.lon, existing.name, null, null, null, "building");
+        Location fresh = new Location(2, existing.lat, existing.lon, "A brand new building", null, null, null, "building");
+        assertTrue(bmg.addVertex(twin));
+        assertTrue(bmg.addVertex(fresh));
+        assertFalse(bmg.addVertex(fresh));
+        assertNamesIndexed(bmg);
+        assertTrue(ids(bmg.getLocationByName(existing.name)).contains(1L));
+        assertEquals(Set.of(2L), ids(bmg.view().getLocationByName("A brand new building")));
+    }
+
+    @Order(16)
+    @DisplayName("Routing on chain-contracted road grids agrees with dijkstra() from and to every waypoint")
+    @Test
+    public void chainContractionRandomGraphTest() {
+        Random r = new Random(2718);
+        for (int test = 0; test < 30; test++) {
+            BeaverMapsGraph bmg = roadGrid(r, 2 + r.nextInt(4));
+            List<Location> all = new ArrayList<>(bmg.vertices().size());
+            for (Long id : bmg.vertices()) {
+                all.add(bmg.getLocationByID(id));
+            }
+            Location[] sources = new Location[8];
+            Location[] targets = new Location[8];
+            for (int q = 0; q < sources.length; q++) {
+                sources[q] = all.get(r.nextInt(all.size()));
+                targets[q] = all.get(r.nextInt(all.size()));
+            }
+            double[][] matrix = bmg.distanceMatrix(sources, targets);
+            for (int i = 0; i < sources.length; i++) {
+                Location start = sources[i];
+                ShortestPathTree tree = bmg.shortestPathTree(start);
+                for (int j = 0; j < targets.length; j++) {
+                    Location target = targets[j];
+                    IDeque<Location> expected = bmg.dijkstra(start, target);
+                    double expectedLength = expected == null ? Double.POSITIVE_INFINITY : pathLength(bmg, expected);
+                    for (RoutingEngine.Algorithm algorithm : RoutingEngine.Algorithm.values()) {
+                        Route route = bmg.router().route(start, target, algorithm);
+                        assertSameLength(bmg, expected, route.path, algorithm.toString());
+                        assertEquals(expectedLength, route.length, 1e-6, algorithm + " reported length");
+                        assertWalkable(start, target, route.path, algorithm.toString());
+                    }
+                    assertSameLength(bmg, expected, tree.pathTo(target), "ShortestPathTree");
+                    assertWalkable(start, target, tree.pathTo(target), "ShortestPathTree");
+                    assertEquals(expectedLength, tree.distanceTo(target), 1e-6, "ShortestPathTree distance");
+                    assertEquals(expectedLength, matrix[i][j], 1e-6, "distanceMatrix() entry");
+                }
+
+                double distance = r.nextInt(400);
+                Set<Long> expected = new HashSet<>();
+                for (Location building : bmg.getBuildings()) {
+                    IDeque<Location> path = bmg.dijkstra(start, building);
+                    if (building.id != start.id && path != null && pathLength(bmg, path) <= distance) {
+                        expected.add(building.id);
+                    }
+                }
+                assertEquals(expected, ids(bmg.isochrone(start, distance)), "Wrong buildings within " + distance);
+            }
+        }
+    }
+
+    @Order(17)
+    @DisplayName("A hierarchy file cannot be loaded once an edge weight has changed")
+    @Test
+    public void hierarchyChangedWeightTest() throws IOException {
+        BeaverMapsGraph bmg = GraphMaker.transformToLocations(GraphMaker.linearGraph(10));
+        File file = File.createTempFile("hierarchy", ".ch");
+        file.deleteOnExit();
+        ContractionHierarchy.build(bmg.compactGraph()).write(file.getPath());
+        int edges = bmg.compactGraph().edgeCount();
+        assertFalse(bmg.addEdge(3L, 4L, 100.0), "Edge 3 -> 4 should already exist");
+        assertEquals(edges, bmg.compactGraph().edgeCount(), "Changing a weight should not change the edge count");
+        assertThrows(IOException.class, () -> ContractionHierarchy.read(file.getPath(), bmg.compactGraph()));
+    }
+
+    /**
+     * A size by size grid of intersections (some of them buildings) whose streets are runs of waypoints;
+     * most streets go both ways, some with different weights each way, a few only one way, and some
+     * intersections have a loop of waypoints hanging off them.
+     */
+    private static BeaverMapsGraph roadGrid(Random r, int size) {
+        BeaverMapsGraph bmg = new BeaverMapsGraph();
+        for (int i = 0; i < size * size; i++) {
+            String type = r.nextInt(4) == 0 ? "building" : "waypoint";
+            bmg.addVertex(new Location(i, 0, 0, null, null, null, null, type));
+        }
+        long next = size * size;
+        for (int i = 0; i < size * size; i++) {
+            for (int neighbor : new int[]{i % size + 1 < size ? i + 1 : -1, i + size < size * size ? i + size : -1}) {
+                if (neighbor < 0 || r.nextInt(6) == 0) {
+                    continue;
+                }
+                int kind = r.nextInt(6);
+                long previous = i;
+                int waypoints = r.nextInt(5);
+                for (int k = 0; k <= waypoints; k++) {
+                    long current = k == waypoints ? neighbor : next++;
+                    if (current != neighbor) {
+                        bmg.addVertex(new Location(current, 0, 0, null, null, null, null, "waypoint"));
+                    }
+                    double weight = 1 + r.nextInt(100);
+                    bmg.addEdge(previous, current, weight);
+                    if (kind != 0) {
+                        bmg.addEdge(current, previous, kind == 1 ? 1 + r.nextInt(100) : weight);
+                    }
+                    previous = current;
+                }
+            }
+            if (r.nextInt(5) == 0) {
+                long previous = i;
+                int waypoints = 2 + r.nextInt(3);
+                for (int k = 0; k <= waypoints; k++) {
+                    long current = k == waypoints ? i : next++;
+                    if (current != i) {
+                        bmg.addVertex(new Location(current, 0, 0, null, null, null, null, "waypoint"));
+                    }
+                    bmg.addUndirectedEdge(previous, current, 1.0 + r.nextInt(100));
+                    previous = current;
+                }
+            }
+        }
+        return bmg;
+    }
+
+    /**
+     * Checks that path goes from start to target without passing through a building.
+     */
+    private static void assertWalkable(Location start, Location target, IDeque<Location> path, String what) {
+        if (path == null) {
+            return;
+        }
+        assertEquals(start.id, path.peekFront().id, what + " path does not begin at the start");
+        assertEquals(target.id, path.peekBack().id, what + " path does not end at the target");
+        int i = 0;
+        for (Location loc : path) {
+            assertTrue(i == 0 || i == path.size() - 1 || loc.type != Location.Type.BUILDING,
+                    what + " path passes through building " + loc.id);
+            i++;
+        }
+    }
+
+    private static void assertNamesIndexed(BeaverMapsGraph bmg) {
+        CompactGraph g = bmg.compactGraph();
+        Map<String, Set<Long>> expected = new HashMap<>();
+        for (int i = 0; i < g.size(); i++) {
+            Location loc = g.location(i);
+            if (loc != null && loc.name != null) {
+                expected.computeIfAbsent(loc.name, k -> new HashSet<>()).add(loc.id);
+            }
+        }
+        for (Map.Entry<String, Set<Long>> e : expected.entrySet()) {
+            assertEquals(e.getValue(), ids(bmg.getLocationByName(e.getKey())), "Locations named " + e.getKey());
+            assertEquals(e.getValue(), ids(bmg.view().getLocationByName(e.getKey())), "Locations named " + e.getKey());
+        }
+    }
+
+    private static Set<Long> ids(IDeque<Location> locations) {
+        Set<Long> ids = new HashSet<>();
+        for (Location loc : locations) {
+            assertTrue(ids.add(loc.id), "Location " + loc.id + " returned twice");
+        }
+        return ids;
+    }
+}
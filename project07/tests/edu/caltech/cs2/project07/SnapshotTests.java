@@ -0,0 +1,184 @@
+package edu.caltech.cs2.project07;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.GraphSnapshot;
+import edu.caltech.cs2.datastructures.Location;
+import edu.caltech.cs2.interfaces.IDeque;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.collection.IsIterableContainingInAnyOrder;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("A")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class SnapshotTests {
+
+    private static JsonElement fromFile(String filename) {
+        try (FileReader reader = new FileReader(filename)) {
+            return JsonParser.parseReader(reader);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static List<Long> ids(Iterable<Location> locations) {
+        List<Long> ids = new ArrayList<>();
+        for (Location loc : locations) {
+            ids.add(loc.id);
+        }
+        return ids;
+    }
+
+    private static List<Long> toList(Iterable<Long> values) {
+        List<Long> list = new ArrayList<>();
+        for (long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * Asserts that two graphs have the same vertices, locations, buildings and weighted edges.
+     */
+    static void assertSameGraph(BeaverMapsGraph expected, BeaverMapsGraph actual) {
+        MatcherAssert.assertThat(actual.vertices(),
+                IsIterableContainingInAnyOrder.containsInAnyOrder(toList(expected.vertices()).toArray()));
+        MatcherAssert.assertThat(ids(actual.getBuildings()),
+                IsIterableContainingInAnyOrder.containsInAnyOrder(ids(expected.getBuildings()).toArray()));
+        for (long id : expected.vertices()) {
+            Location e = expected.getLocationByID(id);
+            Location a = actual.getLocationByID(id);
+            assertEquals(e.lat, a.lat, "Latitude of " + id + " differs");
+            assertEquals(e.lon, a.lon, "Longitude of " + id + " differs");
+            assertEquals(e.type, a.type, "Type of " + id + " differs");
+            assertEquals(e.name, a.name, "Name of " + id + " differs");
+            assertEquals(e.address, a.address, "Address of " + id + " differs");
+            assertEquals(e.amenity, a.amenity, "Amenity of " + id + " differs");
+            assertEquals(e.shop, a.shop, "Shop of " + id + " differs");
+
+            MatcherAssert.assertThat(actual.neighbors(id),
+                    IsIterableContainingInAnyOrder.containsInAnyOrder(toList(expected.neighbors(id)).toArray()));
+            for (long neighbor : expected.neighbors(id)) {
+                assertEquals(expected.adjacent(id, neighbor), actual.adjacent(id, neighbor),
+                        "Weight of edge " + id + " -> " + neighbor + " differs");
+            }
+        }
+    }
+
+    @DisplayName("A snapshot loads back into the same graph and the same routes")
+    @ParameterizedTest(name = "Test snapshot round trip on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.paths_trace.json",
+    })
+    @Order(0)
+    public void snapshotRoundTripTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile)
+            throws IOException {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        File file = File.createTempFile("beavermaps", ".snapshot");
+        file.deleteOnExit();
+        GraphSnapshot.write(bmg, file.getPath());
+        BeaverMapsGraph loaded = GraphSnapshot.read(file.getPath());
+        assertSameGraph(bmg, loaded);
+
+        JsonElement s = fromFile("data/" + traceFile);
+        for (JsonElement b : s.getAsJsonArray()) {
+            JsonObject curr = b.getAsJsonObject();
+            Location start = bmg.getLocationByID(curr.get("start").getAsLong());
+            Location target = bmg.getLocationByID(curr.get("target").getAsLong());
+            IDeque<Location> expected = bmg.dijkstra(start, target);
+            IDeque<Location> actual = loaded.dijkstra(start, target);
+            if (expected == null) {
+                assertNull(actual, "Loaded graph found a path from " + start.id + " to " + target.id);
+            }
+            else {
+                assertNotNull(actual, "Loaded graph found no path from " + start.id + " to " + target.id);
+                assertEquals(ids(expected), ids(actual), "Loaded graph found a different path");
+            }
+        }
+    }
+
+    @Order(1)
+    @DisplayName("A snapshot keeps vertices without a location and survives later edits")
+    @Test
+    public void snapshotGraphMakerTest() throws IOException {
+        BeaverMapsGraph bmg = GraphMaker.transformToLocations(GraphMaker.tournamentGraph(30));
+        bmg.addVertex(1000L);
+        File file = File.createTempFile("beavermaps", ".snapshot");
+        file.deleteOnExit();
+        GraphSnapshot.write(bmg, file.getPath());
+        BeaverMapsGraph loaded = GraphSnapshot.read(file.getPath());
+        assertTrue(loaded.vertices().contains(1000L), "Vertex without a location was lost");
+        assertNull(loaded.getLocationByID(1000L), "Vertex without a location gained one");
+
+        loaded.addEdge(29L, 1000L, 1.0);
+        assertNotNull(loaded.dijkstra(new Location(29), new Location(1000)), "Path should use the new edge");
+    }
+
+    @Order(2)
+    @DisplayName("Reading a file that is not a snapshot fails")
+    @Test
+    public void snapshotBadFileTest() {
+        assertThrows(IOException.class, () -> GraphSnapshot.read("data/caltech/caltech.buildings.json"));
+    }
+
+    @DisplayName("Loading roads in several partitions gives the same graph as one partition")
+    @ParameterizedTest(name = "Test partitioned loading on graph {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.paths_trace.json",
+    })
+    @Order(3)
+    public void partitionedLoadTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile) {
+        String property = "beavermaps.loader.partitions";
+        try {
+            System.setProperty(property, "1");
+            BeaverMapsGraph sequential = new BeaverMapsGraph(
+                    "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+            System.setProperty(property, "7");
+            BeaverMapsGraph partitioned = new BeaverMapsGraph(
+                    "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+            assertSameGraph(sequential, partitioned);
+
+            JsonElement s = fromFile("data/" + traceFile);
+            for (JsonElement b : s.getAsJsonArray()) {
+                JsonObject curr = b.getAsJsonObject();
+                Location start = sequential.getLocationByID(curr.get("start").getAsLong());
+                Location target = sequential.getLocationByID(curr.get("target").getAsLong());
+                IDeque<Location> expected = sequential.dijkstra(start, target);
+                IDeque<Location> actual = partitioned.dijkstra(start, target);
+                assertEquals(expected == null ? null : ids(expected), actual == null ? null : ids(actual),
+                        "Partitioned graph found a different path from " + start.id + " to " + target.id);
+            }
+        }
+        finally {
+            System.clearProperty(property);
+        }
+    }
+
+    @Order(4)
+    @DisplayName("A road through an unknown location is rejected")
+    @Test
+    public void unknownRoadLocationTest() throws IOException {
+        File roads = File.createTempFile("roads", ".json");
+        roads.deleteOnExit();
+        try (FileWriter writer = new FileWriter(roads)) {
+            writer.write("[[\"1\", \"2\"]]");
+        }
+        assertThrows(IllegalArgumentException.class, () -> new BeaverMapsGraph(
+                "data/caltech/caltech.buildings.json", "data/caltech/caltech.waypoints.json", roads.getPath()));
+    }
+}
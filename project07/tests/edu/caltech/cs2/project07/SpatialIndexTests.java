@@ -0,0 +1,146 @@
+package edu.caltech.cs2.project07;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import edu.caltech.cs2.datastructures.BeaverMapsGraph;
+import edu.caltech.cs2.datastructures.Location;
+import edu.caltech.cs2.datastructures.SpatialIndex;
+import edu.caltech.cs2.interfaces.IDeque;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.collection.IsIterableContainingInAnyOrder;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("A")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class SpatialIndexTests {
+
+    private static JsonElement fromFile(String filename) {
+        try (FileReader reader = new FileReader(filename)) {
+            return JsonParser.parseReader(reader);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Location[] randomLocations(Random r, int n) {
+        Location[] locations = new Location[n];
+        for (int i = 0; i < n; i++) {
+            // a few duplicate coordinates to exercise tie-breaking
+            double lat = 34.13 + (r.nextInt(10) == 0 ? 0 : r.nextDouble() * 0.05);
+            double lon = -118.15 + (r.nextInt(10) == 0 ? 0 : r.nextDouble() * 0.05);
+            locations[i] = new Location(i, lat, lon, null, null, null, null, "building");
+        }
+        return locations;
+    }
+
+    /**
+     * The k closest locations by linear scan, ties broken by array position.
+     */
+    private static List<Location> scan(Location[] locations, double lat, double lon, int k) {
+        List<Location> sorted = new ArrayList<>(List.of(locations));
+        sorted.sort((a, b) -> Double.compare(a.getDistance(lat, lon), b.getDistance(lat, lon)));
+        return sorted.subList(0, Math.min(k, sorted.size()));
+    }
+
+    @Order(0)
+    @DisplayName("nearest() and k-nearest agree with a linear scan on random points")
+    @Test
+    public void nearestRandomTest() {
+        Random r = new Random(1618);
+        for (int test = 0; test < 30; test++) {
+            Location[] locations = randomLocations(r, 1 + r.nextInt(500));
+            SpatialIndex index = new SpatialIndex(locations);
+            for (int q = 0; q < 50; q++) {
+                double lat = 34.12 + r.nextDouble() * 0.07;
+                double lon = -118.16 + r.nextDouble() * 0.07;
+                int k = 1 + r.nextInt(20);
+                List<Location> expected = scan(locations, lat, lon, k);
+                assertEquals(expected.get(0), index.nearest(lat, lon), "nearest() differs from a linear scan");
+
+                IDeque<Location> actual = index.nearest(lat, lon, k);
+                assertEquals(expected.size(), actual.size(), "k-nearest returned the wrong number of locations");
+                int i = 0;
+                for (Location loc : actual) {
+                    assertEquals(expected.get(i).getDistance(lat, lon), loc.getDistance(lat, lon),
+                            "k-nearest result " + i + " is at the wrong distance");
+                    i++;
+                }
+            }
+        }
+    }
+
+    @Order(1)
+    @DisplayName("within() returns exactly the points inside the box")
+    @Test
+    public void withinRandomTest() {
+        Random r = new Random(4669);
+        Location[] locations = randomLocations(r, 2000);
+        SpatialIndex index = new SpatialIndex(locations);
+        for (int q = 0; q < 100; q++) {
+            double minLat = 34.12 + r.nextDouble() * 0.07;
+            double minLon = -118.16 + r.nextDouble() * 0.07;
+            double maxLat = minLat + r.nextDouble() * 0.03;
+            double maxLon = minLon + r.nextDouble() * 0.03;
+            List<Location> expected = new ArrayList<>();
+            for (Location loc : locations) {
+                if (minLat <= loc.lat && loc.lat <= maxLat && minLon <= loc.lon && loc.lon <= maxLon) {
+                    expected.add(loc);
+                }
+            }
+            List<Location> actual = new ArrayList<>();
+            for (Location loc : index.within(minLat, minLon, maxLat, maxLon)) {
+                actual.add(loc);
+            }
+            MatcherAssert.assertThat(actual, IsIterableContainingInAnyOrder.containsInAnyOrder(expected.toArray()));
+        }
+    }
+
+    @Order(2)
+    @DisplayName("An empty index finds nothing")
+    @Test
+    public void emptyIndexTest() {
+        SpatialIndex index = new SpatialIndex(new Location[0]);
+        assertNull(index.nearest(34.13, -118.12));
+        assertEquals(0, index.nearest(34.13, -118.12, 5).size());
+        assertEquals(0, index.within(-90, -180, 90, 180).size());
+    }
+
+    @DisplayName("getClosestBuildings() starts with getClosestBuilding() on the trace")
+    @ParameterizedTest(name = "Test getClosestBuildings() on {0}")
+    @CsvSource({
+            "caltech/caltech.buildings.json, caltech/caltech.waypoints.json, caltech/caltech.roads.json, caltech/caltech.closest_trace.json",
+    })
+    @Order(3)
+    public void closestBuildingsTraceTest(String buildingsFile, String waypointsFile, String roadsFile, String traceFile) {
+        BeaverMapsGraph bmg = new BeaverMapsGraph(
+                "data/" + buildingsFile, "data/" + waypointsFile, "data/" + roadsFile);
+        JsonElement bs = fromFile("data/" + traceFile);
+        for (JsonElement b : bs.getAsJsonArray()) {
+            JsonObject curr = b.getAsJsonObject();
+            Location center = bmg.getLocationByID(curr.get("center").getAsLong());
+            Location closestExpected = bmg.getLocationByID(curr.get("closest").getAsLong());
+            IDeque<Location> closest = bmg.getClosestBuildings(center.lat, center.lon, 5);
+            assertEquals(5, closest.size(), "Expected five buildings");
+            assertEquals(closestExpected.getDistance(center), closest.peekFront().getDistance(center),
+                    "Closest building is at the wrong distance");
+            double prev = 0;
+            for (Location loc : closest) {
+                assertEquals(Location.Type.BUILDING, loc.type, "Location " + loc.id + " is not a building");
+                assertTrue(loc.getDistance(center) >= prev, "Buildings are not in increasing order of distance");
+                prev = loc.getDistance(center);
+            }
+        }
+    }
+}